@@ -0,0 +1,40 @@
+package by.aleksabrakor.tzForBookvoed.jmh;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.entity.Book;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+//Тестовые данные для бенчмарков: книги с заполненными полями, как в реальном каталоге
+final class BenchmarkBooks {
+
+    private BenchmarkBooks() {
+    }
+
+    static Book book(long id) {
+        Book book = new Book();
+        book.setId(id);
+        book.setVendorCode("JMH-" + id);
+        book.setTitle("Мастер и Маргарита, том " + id);
+        book.setBrand("М.А. Булгаков");
+        book.setYear(1966 + (int) (id % 50));
+        book.setStock((int) (id % 100));
+        book.setPrice(BigDecimal.valueOf(100 + id % 900, 2));
+        book.setCreatedAt(LocalDateTime.of(2024, 1, 1, 12, 0));
+        book.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 12, 0).plusSeconds(id));
+        return book;
+    }
+
+    static BookDto bookDto(long id) {
+        Book book = book(id);
+        return new BookDto(null, book.getVendorCode(), book.getTitle(), book.getBrand(), book.getYear(),
+                book.getStock(), book.getPrice(), null, null);
+    }
+
+    static List<Book> books(int count) {
+        return IntStream.range(0, count).mapToObj(BenchmarkBooks::book).toList();
+    }
+}
@@ -0,0 +1,49 @@
+package by.aleksabrakor.tzForBookvoed.jmh;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.mapper.BookMapperImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация списков BookDto в JSON тем же набором модулей Jackson, что и в приложении.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookJsonBenchmark {
+
+    @Param({"20", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter listWriter;
+    private List<BookDto> books;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, BookDto.class));
+        books = new BookMapperImpl().toDtoList(BenchmarkBooks.books(size));
+    }
+
+    @Benchmark
+    public byte[] writeListWithObjectMapper() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] writeListWithTypedWriter() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(books);
+    }
+}
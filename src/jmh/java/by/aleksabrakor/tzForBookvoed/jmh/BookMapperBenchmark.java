@@ -0,0 +1,56 @@
+package by.aleksabrakor.tzForBookvoed.jmh;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.entity.Book;
+import by.aleksabrakor.tzForBookvoed.mapper.BookMapper;
+import by.aleksabrakor.tzForBookvoed.mapper.BookMapperImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг сущностей в BookDto (MapStruct) для одной книги, списка и страницы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookMapperBenchmark {
+
+    @Param({"20", "1000"})
+    private int size;
+
+    private final BookMapper bookMapper = new BookMapperImpl();
+
+    private Book book;
+    private List<Book> books;
+    private Page<Book> page;
+
+    @Setup
+    public void setUp() {
+        book = BenchmarkBooks.book(1);
+        books = BenchmarkBooks.books(size);
+        page = new PageImpl<>(books, PageRequest.of(0, size), 400_000);
+    }
+
+    @Benchmark
+    public BookDto entityToDto() {
+        return bookMapper.entityToDto(book);
+    }
+
+    @Benchmark
+    public List<BookDto> toDtoList() {
+        return bookMapper.toDtoList(books);
+    }
+
+    @Benchmark
+    public Page<BookDto> toDtoPage() {
+        return bookMapper.toDtoPage(page);
+    }
+}
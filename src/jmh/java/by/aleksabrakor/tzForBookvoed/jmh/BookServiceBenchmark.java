@@ -0,0 +1,78 @@
+package by.aleksabrakor.tzForBookvoed.jmh;
+
+import by.aleksabrakor.tzForBookvoed.config.CacheConfig;
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.CursorPageDto;
+import by.aleksabrakor.tzForBookvoed.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пути чтения и записи BookService против локального PostgreSQL (см. BookvoedContext).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private BookService bookService;
+    private Cache booksCache;
+    private Long fixtureId;
+
+    @Setup
+    public void setUp(BookvoedContext context) {
+        bookService = context.getBean(BookService.class);
+        booksCache = context.getBean(CacheManager.class).getCache(CacheConfig.BOOKS_CACHE);
+        fixtureId = bookService.saveBook(BenchmarkBooks.bookDto(0)).getId();
+    }
+
+    @Benchmark
+    public BookDto findBookByIdCached() {
+        return bookService.findBookById(fixtureId);
+    }
+
+    @Benchmark
+    public BookDto findBookByIdFromDatabase() {
+        booksCache.evict(fixtureId);
+        return bookService.findBookById(fixtureId);
+    }
+
+    @Benchmark
+    public Page<BookDto> findAllBooksPageWithCount() {
+        return bookService.findAllBooks(null, null, null, 0, 20);
+    }
+
+    @Benchmark
+    public Slice<BookDto> findBooksSlice() {
+        return bookService.findBooksSlice(null, null, null, 0, 20);
+    }
+
+    @Benchmark
+    public CursorPageDto<BookDto> findBooksAfter() {
+        return bookService.findBooksAfter(null, null, null, null, 20);
+    }
+
+    @Benchmark
+    public BookDto updateBook() {
+        BookDto change = new BookDto();
+        change.setStock((int) (sequence.incrementAndGet() % 100));
+        return bookService.updateBook(fixtureId, change);
+    }
+
+    @Benchmark
+    public void saveAndDeleteBook() {
+        BookDto saved = bookService.saveBook(BenchmarkBooks.bookDto(1_000_000 + sequence.incrementAndGet()));
+        bookService.deleteBook(saved.getId());
+    }
+}
@@ -0,0 +1,54 @@
+package by.aleksabrakor.tzForBookvoed.jmh;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.util.BookValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Валидация книги: аннотации BookDto (@Valid) и проверка уникальности VendorCode через BookValidator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookValidationBenchmark {
+
+    private Validator validator;
+    private BookValidator bookValidator;
+    private BookDto validBook;
+    private BookDto invalidBook;
+
+    @Setup
+    public void setUp(BookvoedContext context) {
+        validator = context.getBean(Validator.class);
+        bookValidator = context.getBean(BookValidator.class);
+        validBook = BenchmarkBooks.bookDto(1);
+        invalidBook = new BookDto();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<BookDto>> beanValidationValid() {
+        return validator.validate(validBook);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<BookDto>> beanValidationInvalid() {
+        return validator.validate(invalidBook);
+    }
+
+    @Benchmark
+    public Errors bookValidatorVendorCodeLookup() {
+        Errors errors = new BeanPropertyBindingResult(validBook, "book");
+        bookValidator.validate(validBook, errors);
+        return errors;
+    }
+}
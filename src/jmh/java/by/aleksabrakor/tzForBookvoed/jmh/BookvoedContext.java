@@ -0,0 +1,51 @@
+package by.aleksabrakor.tzForBookvoed.jmh;
+
+import by.aleksabrakor.tzForBookvoed.BookvoedApplication;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+/**
+ * Контекст приложения без веб-сервера поверх локального PostgreSQL из application.yaml.
+ * Другую базу можно указать переменными окружения SPRING_DATASOURCE_URL / _USERNAME / _PASSWORD.
+ */
+@State(Scope.Benchmark)
+public class BookvoedContext {
+
+    static final String VENDOR_CODE_PREFIX = "JMH-";
+
+    private ConfigurableApplicationContext context;
+
+    @Setup
+    public void start() {
+        SpringApplication application = new SpringApplication(BookvoedApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setDefaultProperties(Map.of(
+                "spring.jpa.show-sql", "false",
+                "logging.level.root", "WARN"));
+        context = application.run();
+        cleanUp();
+    }
+
+    @TearDown
+    public void stop() {
+        cleanUp();
+        context.close();
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    //Книги, созданные бенчмарками, не должны оставаться в каталоге
+    private void cleanUp() {
+        context.getBean(JdbcTemplate.class).update("DELETE FROM books WHERE vendor_code LIKE ?", VENDOR_CODE_PREFIX + "%");
+    }
+}
@@ -0,0 +1,125 @@
+package by.aleksabrakor.tzForBookvoed.loadtest;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * HTTP-клиент со своей сессией (cookie); для веб-форм хранит CSRF-токен из отрисованной страницы,
+ * для изменений через api/** — Bearer-токен.
+ */
+class BooksClient {
+
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+    private static final Pattern ACCESS_TOKEN = Pattern.compile("\"accessToken\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private String csrfToken;
+    private String bearerToken;
+
+    BooksClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager(null, CookiePolicy.ACCEPT_ALL))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+    }
+
+    HttpClient httpClient() {
+        return httpClient;
+    }
+
+    HttpRequest.Builder request(String pathAndQuery) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery)).timeout(Duration.ofMinutes(5));
+        if (bearerToken != null && pathAndQuery.startsWith("/api/")) {
+            builder.header("Authorization", "Bearer " + bearerToken);
+        }
+        return builder;
+    }
+
+    HttpRequest get(String pathAndQuery) {
+        return request(pathAndQuery).GET().build();
+    }
+
+    HttpRequest postJson(String path, String json) {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    HttpRequest putJson(String path, String json) {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    HttpRequest delete(String path) {
+        return request(path).DELETE().build();
+    }
+
+    //Отправка формы Thymeleaf: CSRF-токен добавляется автоматически
+    HttpRequest postForm(String path, Map<String, String> fields) {
+        String body = fields.entrySet().stream()
+                .map(field -> encode(field.getKey()) + "=" + encode(field.getValue()))
+                .collect(Collectors.joining("&", "_csrf=" + encode(csrfToken) + "&", ""));
+        return request(path)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    //Вход через форму; после входа токен CSRF меняется, поэтому берем его заново со страницы формы
+    void login(String username, String password) throws IOException, InterruptedException {
+        csrfToken = fetchCsrfToken("/login");
+        HttpResponse<Void> response = httpClient.send(
+                postForm("/login", Map.of("username", username, "password", password)),
+                HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")) {
+            throw new IllegalStateException("Не удалось войти как " + username + ": " + response.statusCode() + " " + location);
+        }
+        csrfToken = fetchCsrfToken("/books/new");
+    }
+
+    //Токен для api/**: пароль проверяется один раз, дальше запросы идут с заголовком Authorization
+    void obtainToken(String username, String password) throws IOException, InterruptedException {
+        String credentials = "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}";
+        HttpResponse<String> response = httpClient.send(postJson("/api/auth/token", credentials),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = ACCESS_TOKEN.matcher(response.body());
+        if (response.statusCode() != 200 || !matcher.find()) {
+            throw new IllegalStateException("Не удалось получить токен для " + username + ": " + response.statusCode());
+        }
+        bearerToken = matcher.group(1);
+    }
+
+    private String fetchCsrfToken(String page) throws IOException, InterruptedException {
+        String html = httpClient.send(get(page), HttpResponse.BodyHandlers.ofString()).body();
+        Matcher matcher = CSRF_INPUT.matcher(html);
+        if (!matcher.find()) {
+            throw new IllegalStateException("На странице " + page + " нет CSRF-токена");
+        }
+        return matcher.group(1);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,295 @@
+package by.aleksabrakor.tzForBookvoed.loadtest;
+
+import by.aleksabrakor.tzForBookvoed.BookvoedApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Нагрузочный прогон маршрутов BooksRestController и BooksWebController.
+ * Поднимает приложение на локальном PostgreSQL из application.yaml (или работает с --base-url),
+ * досеивает каталог книгами LOAD-*, по очереди нагружает каждый маршрут с целевым RPS
+ * и пишет отчет в JSON.
+ * Запуск: mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--rps=200 --duration=30"
+ */
+public class BooksLoadTest {
+
+    private static final String SEED_PREFIX = "LOAD-";
+    private static final String WRITE_PREFIX = "LOAD-W-";
+    private static final String SEED_BRAND = "LoadTest";
+    private static final int SEED_CHUNK = 10_000;
+    private static final int SAMPLE_IDS = 20_000;
+    private static final double FULL_CATALOG_RATE = 0.01;
+    private static final double BATCH_RATE = 0.1;
+    private static final int BATCH_SIZE = 100;
+
+    private static final String[] TITLES = {"Война и мир", "Мастер и Маргарита", "Преступление и наказание",
+            "Евгений Онегин", "Мертвые души", "Отцы и дети", "Горе от ума", "Тихий Дон", "Обломов", "Идиот"};
+    private static final String[] AUTHORS = {"Толстой", "Булгаков", "Достоевский", "Пушкин", "Гоголь",
+            "Тургенев", "Грибоедов", "Шолохов", "Гончаров", "Чехов"};
+
+    private final LoadTestOptions options;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+    private final AtomicLong writeSequence = new AtomicLong(System.currentTimeMillis());
+    private final ConcurrentLinkedQueue<Long> createdIds = new ConcurrentLinkedQueue<>();
+    private final List<Long> seededIds = new ArrayList<>();
+
+    private BooksLoadTest(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new BooksLoadTest(LoadTestOptions.parse(args)).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        ConfigurableApplicationContext context = options.baseUrl() == null ? startApplication() : null;
+        String baseUrl = context == null
+                ? options.baseUrl()
+                : "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        try {
+            BooksClient anonymous = new BooksClient(baseUrl);
+            BooksClient admin = new BooksClient(baseUrl);
+            admin.login(options.adminUsername(), options.adminPassword());
+            admin.obtainToken(options.adminUsername(), options.adminPassword());
+
+            seedCatalog(admin);
+            sampleSeededIds(anonymous);
+
+            Instant startedAt = Instant.now();
+            OpenModelRunner runner = new OpenModelRunner(options.warmup(), options.duration(), options.maxInFlight());
+            List<ScenarioResult> results = new ArrayList<>();
+            for (Scenario scenario : scenarios(anonymous, admin)) {
+                if (!options.scenarios().matcher(scenario.name()).matches()) {
+                    continue;
+                }
+                double rps = Math.max(1, options.rps() * scenario.rateFactor());
+                System.out.printf("Сценарий %s: %s %s, %.1f rps%n", scenario.name(), scenario.method(), scenario.route(), rps);
+                results.add(runner.run(scenario, rps));
+            }
+
+            LoadReport report = new LoadReport(startedAt, baseUrl, options.rps(), options.warmup().toSeconds(),
+                    options.duration().toSeconds(), options.catalogSize(), results);
+            writeReport(report);
+            printSummary(results);
+        } finally {
+            if (context != null) {
+                context.getBean(JdbcTemplate.class).update("DELETE FROM books WHERE vendor_code LIKE ?", WRITE_PREFIX + "%");
+                context.close();
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication() {
+        SpringApplication application = new SpringApplication(BookvoedApplication.class);
+        application.setDefaultProperties(Map.of(
+                "server.port", "0",
+                "spring.jpa.show-sql", "false",
+                "logging.level.root", "WARN"));
+        return application.run();
+    }
+
+    //Досеивание каталога пакетами: повторный прогон получает DUPLICATE и ничего не вставляет
+    private void seedCatalog(BooksClient client) throws IOException, InterruptedException {
+        for (int from = 0; from < options.catalogSize(); from += SEED_CHUNK) {
+            List<Map<String, Object>> chunk = new ArrayList<>(SEED_CHUNK);
+            for (int i = from; i < Math.min(from + SEED_CHUNK, options.catalogSize()); i++) {
+                chunk.add(book(SEED_PREFIX + i, i));
+            }
+            HttpResponse<String> response = client.httpClient().send(
+                    client.postJson("/api/books/batch", objectMapper.writeValueAsString(chunk)),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Не удалось засеять каталог: " + response.statusCode() + " " + response.body());
+            }
+        }
+        System.out.printf("Каталог засеян: %d книг %s*%n", options.catalogSize(), SEED_PREFIX);
+    }
+
+    //id засеянных книг для чтения и изменения: обход keyset-страниц по brand засеянных книг
+    private void sampleSeededIds(BooksClient client) throws IOException, InterruptedException {
+        String after = "";
+        while (seededIds.size() < SAMPLE_IDS) {
+            JsonNode page = objectMapper.readTree(client.httpClient().send(
+                    client.get("/api/books/page?size=1000&brand=" + SEED_BRAND + "&after=" + after),
+                    HttpResponse.BodyHandlers.ofString()).body());
+            page.get("content").forEach(book -> seededIds.add(book.get("id").asLong()));
+            if (!page.get("hasNext").asBoolean()) {
+                break;
+            }
+            after = page.get("nextCursor").asText();
+        }
+        if (seededIds.isEmpty()) {
+            throw new IllegalStateException("В каталоге нет засеянных книг");
+        }
+    }
+
+    private List<Scenario> scenarios(BooksClient anonymous, BooksClient admin) {
+        List<Scenario> scenarios = new ArrayList<>();
+        // REST API
+        scenarios.add(new Scenario("rest-get-by-id", "GET", "/api/books/{id}", 1, anonymous,
+                () -> anonymous.get("/api/books/" + randomSeededId())));
+        scenarios.add(new Scenario("rest-slice", "GET", "/api/books/slice", 1, anonymous,
+                () -> anonymous.get("/api/books/slice?size=20&page=" + random(50))));
+        scenarios.add(new Scenario("rest-slice-filtered", "GET", "/api/books/slice?title=", 1, anonymous,
+                () -> anonymous.get("/api/books/slice?size=20&title=" + encode(randomTitle()))));
+        scenarios.add(new Scenario("rest-keyset-page", "GET", "/api/books/page", 1, anonymous,
+                () -> anonymous.get("/api/books/page?size=20&brand=" + SEED_BRAND)));
+        scenarios.add(new Scenario("rest-search", "GET", "/api/books/search", 1, anonymous,
+                () -> anonymous.get("/api/books/search?size=20&q=" + encode(randomTitle()))));
+        scenarios.add(new Scenario("rest-list-all", "GET", "/api/books", FULL_CATALOG_RATE, anonymous,
+                () -> anonymous.get("/api/books")));
+        scenarios.add(new Scenario("rest-stream-ndjson", "GET", "/api/books (NDJSON)", FULL_CATALOG_RATE, anonymous,
+                () -> anonymous.request("/api/books").header("Accept", "application/x-ndjson").GET().build()));
+        scenarios.add(new Scenario("rest-stream-array", "GET", "/api/books/stream", FULL_CATALOG_RATE, anonymous,
+                () -> anonymous.get("/api/books/stream")));
+        scenarios.add(new Scenario("rest-create", "POST", "/api/books", 1, admin,
+                () -> admin.postJson("/api/books", json(book(nextWriteVendorCode(), random(10)))),
+                this::rememberCreatedBook));
+        scenarios.add(new Scenario("rest-batch", "POST", "/api/books/batch", BATCH_RATE, admin,
+                () -> admin.postJson("/api/books/batch", json(batch())),
+                this::rememberCreatedBatch));
+        scenarios.add(new Scenario("rest-update", "PUT", "/api/books/{id}", 1, admin,
+                () -> admin.putJson("/api/books/" + randomSeededId(), json(Map.of("stock", random(100))))));
+        scenarios.add(new Scenario("rest-delete", "DELETE", "/api/books/{id}", 1, admin,
+                () -> nextCreatedId(id -> admin.delete("/api/books/" + id))));
+        // Веб-интерфейс: анонимный просмотр и действия администратора через формы
+        scenarios.add(new Scenario("web-list", "GET", "/books", 1, anonymous,
+                () -> anonymous.get("/books?page=" + random(50))));
+        scenarios.add(new Scenario("web-list-filtered", "GET", "/books?title=", 1, anonymous,
+                () -> anonymous.get("/books?title=" + encode(randomTitle()))));
+        scenarios.add(new Scenario("web-edit-form", "GET", "/books/edit/{id}", 1, admin,
+                () -> admin.get("/books/edit/" + randomSeededId())));
+        scenarios.add(new Scenario("web-save", "POST", "/books/save", 1, admin,
+                () -> admin.postForm("/books/save", formFields(book(nextWriteVendorCode(), random(10))))));
+        scenarios.add(new Scenario("web-update", "POST", "/books/update/{id}", 1, admin,
+                () -> admin.postForm("/books/update/" + randomSeededId(), Map.of("stock", String.valueOf(random(100))))));
+        scenarios.add(new Scenario("web-delete", "GET", "/books/delete/{id}", 1, admin,
+                () -> nextCreatedId(id -> admin.get("/books/delete/" + id))));
+        return scenarios;
+    }
+
+    private Map<String, Object> book(String vendorCode, int seed) {
+        Map<String, Object> book = new LinkedHashMap<>();
+        book.put("vendorCode", vendorCode);
+        book.put("title", TITLES[seed % TITLES.length] + " " + seed);
+        book.put("brand", SEED_BRAND + " " + AUTHORS[seed % AUTHORS.length]);
+        book.put("year", 1850 + seed % 170);
+        book.put("stock", seed % 100);
+        book.put("price", (100 + seed % 900) + ".50");
+        return book;
+    }
+
+    private List<Map<String, Object>> batch() {
+        List<Map<String, Object>> books = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            books.add(book(nextWriteVendorCode(), random(10)));
+        }
+        return books;
+    }
+
+    private static Map<String, String> formFields(Map<String, Object> book) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        book.forEach((name, value) -> fields.put(name, String.valueOf(value)));
+        return fields;
+    }
+
+    private void rememberCreatedBook(HttpResponse<String> response) {
+        try {
+            createdIds.add(objectMapper.readTree(response.body()).get("id").asLong());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void rememberCreatedBatch(HttpResponse<String> response) {
+        try {
+            objectMapper.readTree(response.body()).get("items").forEach(item -> {
+                if (item.hasNonNull("id")) {
+                    createdIds.add(item.get("id").asLong());
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HttpRequest nextCreatedId(LongFunction<HttpRequest> request) {
+        Long id = createdIds.poll();
+        return id == null ? null : request.apply(id);
+    }
+
+    private String nextWriteVendorCode() {
+        return WRITE_PREFIX + writeSequence.incrementAndGet();
+    }
+
+    private long randomSeededId() {
+        return seededIds.get(ThreadLocalRandom.current().nextInt(seededIds.size()));
+    }
+
+    private static String randomTitle() {
+        return TITLES[ThreadLocalRandom.current().nextInt(TITLES.length)];
+    }
+
+    private static int random(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeReport(LoadReport report) throws IOException {
+        if (report.scenarios().isEmpty()) {
+            System.out.println("Ни один сценарий не подошел под --scenarios=" + options.scenarios());
+        }
+        if (options.report().getParent() != null) {
+            Files.createDirectories(options.report().getParent());
+        }
+        objectMapper.writeValue(options.report().toFile(), report);
+        System.out.println("Отчет: " + options.report().toAbsolutePath());
+    }
+
+    private static void printSummary(List<ScenarioResult> results) {
+        System.out.printf("%-22s %8s %8s %7s %7s %9s %9s %9s %9s%n",
+                "scenario", "rps", "req", "err", "drop", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (ScenarioResult result : results) {
+            System.out.printf("%-22s %8.1f %8d %7d %7d %9.2f %9.2f %9.2f %9.2f%n",
+                    result.name(), result.throughputRps(), result.requests(), result.errors(), result.dropped(),
+                    result.latencyMillis().p50(), result.latencyMillis().p99(), result.latencyMillis().p999(),
+                    result.latencyMillis().max());
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package by.aleksabrakor.tzForBookvoed.loadtest;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Машиночитаемый отчет прогона: сравнивается между сборками как обычный JSON.
+ */
+record LoadReport(
+        Instant startedAt,
+        String baseUrl,
+        double targetRps,
+        long warmupSeconds,
+        long durationSeconds,
+        int catalogSize,
+        List<ScenarioResult> scenarios) {
+}
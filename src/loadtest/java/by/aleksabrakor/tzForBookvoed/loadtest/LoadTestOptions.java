@@ -0,0 +1,45 @@
+package by.aleksabrakor.tzForBookvoed.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Параметры прогона из аргументов вида --rps=200 --duration=30 --catalog-size=100000.
+ */
+record LoadTestOptions(
+        String baseUrl,
+        double rps,
+        Duration warmup,
+        Duration duration,
+        int catalogSize,
+        int maxInFlight,
+        Pattern scenarios,
+        Path report,
+        String adminUsername,
+        String adminPassword) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ожидается аргумент вида --name=value: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(
+                values.get("base-url"),
+                Double.parseDouble(values.getOrDefault("rps", "200")),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "5"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "30"))),
+                Integer.parseInt(values.getOrDefault("catalog-size", "100000")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "2000")),
+                Pattern.compile(values.getOrDefault("scenarios", ".*")),
+                Path.of(values.getOrDefault("report", "target/loadtest-report.json")),
+                values.getOrDefault("admin-username", "admin"),
+                values.getOrDefault("admin-password", "password"));
+    }
+}
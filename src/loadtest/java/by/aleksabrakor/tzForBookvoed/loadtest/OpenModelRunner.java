@@ -0,0 +1,120 @@
+package by.aleksabrakor.tzForBookvoed.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Открытая модель нагрузки: запросы уходят по расписанию с постоянным RPS, не дожидаясь ответов.
+ * Задержка считается от запланированного момента отправки, поэтому очередь на стороне сервера
+ * не прячется (coordinated omission).
+ */
+class OpenModelRunner {
+
+    private static final long DRAIN_TIMEOUT_SECONDS = 120;
+
+    private final Duration warmup;
+    private final Duration duration;
+    private final int maxInFlight;
+
+    OpenModelRunner(Duration warmup, Duration duration, int maxInFlight) {
+        this.warmup = warmup;
+        this.duration = duration;
+        this.maxInFlight = maxInFlight;
+    }
+
+    ScenarioResult run(Scenario scenario, double rps) throws InterruptedException {
+        Histogram histogram = new ConcurrentHistogram(3);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong dropped = new AtomicLong();
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rps);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            boolean measured = intended >= measureFrom;
+            // Ограничение на число запросов в полете: перегруженный сервер не должен уронить сам генератор
+            if (inFlight.get() >= maxInFlight) {
+                if (measured) {
+                    dropped.incrementAndGet();
+                }
+                continue;
+            }
+            inFlight.incrementAndGet();
+            send(scenario).whenComplete((status, failure) -> {
+                if (measured) {
+                    histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                    completed.incrementAndGet();
+                    if (failure != null || status >= 400) {
+                        errors.incrementAndGet();
+                    }
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+
+        double seconds = (System.nanoTime() - measureFrom) / 1e9;
+        return new ScenarioResult(scenario.name(), scenario.method(), scenario.route(), rps,
+                completed.get(), errors.get(), dropped.get(), completed.get() / seconds, latency(histogram));
+    }
+
+    private CompletableFuture<Integer> send(Scenario scenario) {
+        HttpRequest request = scenario.request().get();
+        if (request == null) {
+            // Сценарию нечего отправлять (например, закончились книги для удаления)
+            return CompletableFuture.completedFuture(599);
+        }
+        if (scenario.onResponse() == null) {
+            return scenario.client().httpClient()
+                    .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(HttpResponse::statusCode);
+        }
+        return scenario.client().httpClient()
+                .sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() < 400) {
+                        scenario.onResponse().accept(response);
+                    }
+                    return response.statusCode();
+                });
+    }
+
+    private static ScenarioResult.Latency latency(Histogram histogram) {
+        return new ScenarioResult.Latency(
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()),
+                Math.round(histogram.getMean()) / 1000.0);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,25 @@
+package by.aleksabrakor.tzForBookvoed.loadtest;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Один маршрут под нагрузкой. rateFactor — доля от целевого RPS (тяжелые выгрузки всего каталога идут реже).
+ * onResponse нужен сценариям, которые читают тело ответа (например, чтобы запомнить id созданной книги).
+ */
+record Scenario(
+        String name,
+        String method,
+        String route,
+        double rateFactor,
+        BooksClient client,
+        Supplier<HttpRequest> request,
+        Consumer<HttpResponse<String>> onResponse) {
+
+    Scenario(String name, String method, String route, double rateFactor, BooksClient client,
+             Supplier<HttpRequest> request) {
+        this(name, method, route, rateFactor, client, request, null);
+    }
+}
@@ -0,0 +1,19 @@
+package by.aleksabrakor.tzForBookvoed.loadtest;
+
+/**
+ * Итог сценария для отчета; задержки в миллисекундах, отсчитываются от запланированного момента отправки.
+ */
+record ScenarioResult(
+        String name,
+        String method,
+        String route,
+        double targetRps,
+        long requests,
+        long errors,
+        long dropped,
+        double throughputRps,
+        Latency latencyMillis) {
+
+    record Latency(double p50, double p90, double p99, double p999, double max, double mean) {
+    }
+}
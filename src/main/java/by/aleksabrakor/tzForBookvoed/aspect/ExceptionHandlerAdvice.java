@@ -1,11 +1,18 @@
 package by.aleksabrakor.tzForBookvoed.aspect;
 
 
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
 import by.aleksabrakor.tzForBookvoed.exception.ErrorResponse;
+import by.aleksabrakor.tzForBookvoed.exception.GoneException;
+import by.aleksabrakor.tzForBookvoed.exception.InsufficientStockException;
 import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
 import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
+import by.aleksabrakor.tzForBookvoed.exception.PreconditionFailedException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -38,6 +45,72 @@ public class ExceptionHandlerAdvice {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(BadRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    private ResponseEntity<ErrorResponse> handException(BadRequestException e) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Bad request: " + e.getMessage(),
+                Timestamp.valueOf(LocalDateTime.now())
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    private ResponseEntity<ErrorResponse> handException(PreconditionFailedException e) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Precondition failed: " + e.getMessage(),
+                Timestamp.valueOf(LocalDateTime.now())
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    //Курсор ленты изменений старше срока хранения удалений: клиенту нужна полная синхронизация
+    @ExceptionHandler(GoneException.class)
+    @ResponseStatus(HttpStatus.GONE)
+    private ResponseEntity<ErrorResponse> handException(GoneException e) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Gone: " + e.getMessage(),
+                Timestamp.valueOf(LocalDateTime.now())
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.GONE);
+    }
+
+    //Параллельная правка: версия из тела запроса устарела или строку изменили между чтением и UPDATE
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    private ResponseEntity<ErrorResponse> handException(OptimisticLockingFailureException e) {
+        String message = e instanceof ObjectOptimisticLockingFailureException lockingFailure
+                ? "Книга с id: " + lockingFailure.getIdentifier() + " была изменена другим пользователем"
+                : e.getMessage();
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Conflict: " + message,
+                Timestamp.valueOf(LocalDateTime.now())
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    private ResponseEntity<ErrorResponse> handException(InsufficientStockException e) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Insufficient stock: " + e.getMessage(),
+                Timestamp.valueOf(LocalDateTime.now())
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
+    //Неверный логин или пароль при запросе токена api/auth/token
+    @ExceptionHandler(AuthenticationException.class)
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    private ResponseEntity<ErrorResponse> handException(AuthenticationException e) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Authentication failed: Неверный логин или пароль",
+                Timestamp.valueOf(LocalDateTime.now())
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.UNAUTHORIZED);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<ErrorResponse> handleValidationException(MethodArgumentNotValidException e) {
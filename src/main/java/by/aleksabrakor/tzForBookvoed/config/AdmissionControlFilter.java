@@ -0,0 +1,122 @@
+package by.aleksabrakor.tzForBookvoed.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение числа одновременно обрабатываемых запросов. На виртуальных потоках Tomcat принимает
+ * тысячи запросов сразу, и без этого фильтра все они встали бы в очередь к пулу соединений PostgreSQL.
+ * Сверх лимита запрос ждет разрешения не дольше acquireTimeout, затем получает 503.
+ */
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutNanos;
+    private final Counter rejected;
+
+    public AdmissionControlFilter(int maxConcurrent, Duration acquireTimeout, MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        Gauge.builder("books.admission.active", permits, semaphore -> maxConcurrent - semaphore.availablePermits())
+                .description("Запросы, допущенные к обработке")
+                .register(meterRegistry);
+        Gauge.builder("books.admission.waiting", permits, Semaphore::getQueueLength)
+                .description("Запросы, ожидающие допуска")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("books.admission.rejected")
+                .description("Запросы, отклоненные с 503 из-за превышения лимита")
+                .register(meterRegistry);
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        // api/v2 не держит поток на время ответа, его параллелизм ограничен пулом R2DBC
+        return path.startsWith("/actuator/") || path.startsWith("/webjars/") || path.startsWith("/api/v2/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!acquire()) {
+            rejected.increment();
+            log.warn("Запрос {} {} отклонен: заняты все {} слотов", request.getMethod(), request.getRequestURI(),
+                    maxConcurrent);
+            // Ответ пишем сами: sendError ушел бы на /error через фильтры безопасности
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("Сервер перегружен, повторите запрос позже");
+            return;
+        }
+        boolean releaseOnAsyncCompletion = false;
+        try {
+            filterChain.doFilter(request, response);
+            // Потоковые ответы (StreamingResponseBody) продолжаются асинхронно: слот освобождается по их завершении
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener());
+                releaseOnAsyncCompletion = true;
+            }
+        } finally {
+            if (!releaseOnAsyncCompletion) {
+                permits.release();
+            }
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private class ReleasingListener implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permits.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Повторный startAsync заменяет список слушателей, регистрируемся снова
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
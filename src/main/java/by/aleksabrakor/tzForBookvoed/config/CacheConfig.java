@@ -0,0 +1,42 @@
+package by.aleksabrakor.tzForBookvoed.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+// Кэш-интерсептор стоит снаружи транзакционного: попадание в кэш не открывает транзакцию и не берет соединение из пула,
+// а @CachePut/@CacheEvict выполняются уже после коммита
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String BOOKS_CACHE = "books";
+    public static final String BOOK_LIST_FRAGMENTS_CACHE = "bookListFragments";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${books.cache.books-spec}") String booksSpec,
+                                     @Value("${books.cache.list-fragments-spec:maximumSize=1000,expireAfterWrite=5m,recordStats}")
+                                     String listFragmentsSpec) {
+        // Caffeine: вытеснение W-TinyLFU по размеру + TTL, recordStats дает метрики hit/miss/eviction в actuator
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(BOOKS_CACHE) {
+            @Override
+            protected org.springframework.cache.Cache adaptCaffeineCache(String name, Cache<Object, Object> cache) {
+                // Фрагменты /books дольше всего собираются до записи в кэш, поэтому им нужна защита от гонки со сбросом
+                return BOOK_LIST_FRAGMENTS_CACHE.equals(name)
+                        ? new GenerationalCaffeineCache(name, cache, isAllowNullValues())
+                        : super.adaptCaffeineCache(name, cache);
+            }
+        };
+        cacheManager.setCacheSpecification(booksSpec);
+        cacheManager.setAllowNullValues(false);
+        // Отрисованные фрагменты /books; TTL ограничивает устаревание приблизительного числа книг
+        cacheManager.registerCustomCache(BOOK_LIST_FRAGMENTS_CACHE, Caffeine.from(listFragmentsSpec).build());
+        return cacheManager;
+    }
+}
@@ -0,0 +1,46 @@
+package by.aleksabrakor.tzForBookvoed.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//Caffeine-кэш со счетчиком сбросов. invalidateAll не отменяет уже идущее вычисление get(key, loader):
+//значение, выбранное из БД до коммита записи, попало бы в кэш после сброса и жило бы до истечения TTL.
+//Читатели добавляют поколение к ключу, поэтому такое значение остается под старым ключом и больше не читается
+public class GenerationalCaffeineCache extends CaffeineCache {
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public GenerationalCaffeineCache(String name, Cache<Object, Object> cache, boolean allowNullValues) {
+        super(name, cache, allowNullValues);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    @Override
+    public void evict(Object key) {
+        generation.incrementAndGet();
+        super.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        generation.incrementAndGet();
+        return super.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        generation.incrementAndGet();
+        super.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        generation.incrementAndGet();
+        return super.invalidate();
+    }
+}
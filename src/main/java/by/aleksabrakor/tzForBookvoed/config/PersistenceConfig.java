@@ -0,0 +1,89 @@
+package by.aleksabrakor.tzForBookvoed.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Блокирующий доступ (JPA, JdbcTemplate, Flyway) рядом с R2DBC для api/v2.
+//Автоконфигурация Spring Boot отключает DataSource и JpaTransactionManager, как только в контексте есть
+//ConnectionFactory и ReactiveTransactionManager, поэтому оба объявлены явно с прежними настройками spring.datasource
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class PersistenceConfig {
+
+    @Bean(defaultCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    //Реплики из books.replicas.urls с настройками пула primary; без них все запросы идут в primary
+    @Bean(defaultCandidate = false)
+    public ReplicaRoutingDataSource replicaDataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                                      @Value("${books.replicas.urls:}") List<String> urls,
+                                                      @Value("${books.replicas.max-lag:10s}") Duration maxLag,
+                                                      ReadYourWritesTracker readYourWritesTracker,
+                                                      MeterRegistry meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setJdbcUrl(url.strip());
+            config.setPoolName("books-replica-" + (replicas.size() + 1));
+            config.setReadOnly(true);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put("replica-" + (replicas.size() + 1), new HikariDataSource(config));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag, readYourWritesTracker, meterRegistry);
+    }
+
+    //Соединение берется при первом запросе, когда уже известно, readOnly ли транзакция:
+    //readOnly уходит на реплику, остальное (в том числе Flyway и записи) — в primary
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") ReplicaRoutingDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        if (replicaDataSource.hasReplicas()) {
+            dataSource.setReadOnlyDataSource(replicaDataSource);
+        }
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(@Value("${books.replicas.read-your-writes:5s}") Duration window) {
+        return new ReadYourWritesTracker(window);
+    }
+
+    @Bean
+    @Primary
+    public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+                                                    ReadYourWritesTracker readYourWritesTracker) {
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        transactionManager.addListener(readYourWritesTracker);
+        return transactionManager;
+    }
+}
@@ -0,0 +1,40 @@
+package by.aleksabrakor.tzForBookvoed.config;
+
+import by.aleksabrakor.tzForBookvoed.controller.BooksReactiveHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ServletHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+@Configuration
+public class ReactiveApiConfig {
+
+    public static final String API_V2_MAPPING = "/api/v2/*";
+
+    // WebFlux-роутер api/v2 работает в том же Tomcat через неблокирующий ввод-вывод Servlet 3.1: поток не занят,
+    // пока клиент медленно читает ответ. Фильтры Spring Security применяются так же, как к api/books
+    @Bean
+    public ServletRegistrationBean<ServletHttpHandlerAdapter> reactiveApiServlet(BooksReactiveHandler booksReactiveHandler,
+                                                                                 ObjectMapper objectMapper) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(booksReactiveHandler.routes(), strategies);
+
+        ServletRegistrationBean<ServletHttpHandlerAdapter> registration =
+                new ServletRegistrationBean<>(new ServletHttpHandlerAdapter(httpHandler), API_V2_MAPPING);
+        registration.setName("booksReactiveApi");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+}
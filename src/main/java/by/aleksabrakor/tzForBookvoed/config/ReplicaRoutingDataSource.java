@@ -0,0 +1,175 @@
+package by.aleksabrakor.tzForBookvoed.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Соединения для readOnly-транзакций: реплики по кругу, поэтому пропускная способность чтения растет
+ * с числом реплик. Реплика, отстающая больше maxLag или не ответившая на проверку, исключается до следующей
+ * успешной проверки. Если подходящих реплик нет, пользователь только что сам изменил данные или результат
+ * чтения будет закэширован (readFromPrimary), соединение берется из primary.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public static final String PRIMARY = "primary";
+
+    // На primary (не в режиме восстановления) и у догнавшей реплики отставание нулевое;
+    // иначе — время с последней примененной транзакции
+    private static final String LAG_SQL = """
+            SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END""";
+
+    // Чтения, результат которых попадает в кэш: кэш живет дольше отставания реплики, и значение, прочитанное
+    // с реплики сразу после сброса кэша, оставалось бы устаревшим до истечения TTL
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    private final List<Replica> replicas;
+    private final ReadYourWritesTracker readYourWrites;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, Counter> routed = new HashMap<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+                                    ReadYourWritesTracker readYourWrites, MeterRegistry meterRegistry) {
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.putAll(replicas);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        this.replicas = replicas.entrySet().stream()
+                .map(replica -> new Replica(replica.getKey(), replica.getValue()))
+                .toList();
+        this.readYourWrites = readYourWrites;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        for (Replica replica : this.replicas) {
+            Gauge.builder("books.replica.lag", replica, r -> r.lagSeconds)
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .description("Отставание реплики от primary; NaN — реплика не ответила на проверку")
+                    .register(meterRegistry);
+        }
+        for (Object target : targets.keySet()) {
+            routed.put((String) target, Counter.builder("books.datasource.routed")
+                    .tag("target", (String) target)
+                    .description("Соединения readOnly-транзакций по источникам")
+                    .register(meterRegistry));
+        }
+    }
+
+    //Соединения, взятые внутри reads, идут в primary. С LazyConnectionDataSourceProxy источник выбирается
+    //при первом запросе к БД, поэтому транзакция может быть открыта и до вызова
+    public static <T> T readFromPrimary(Supplier<T> reads) {
+        if (PRIMARY_READS.get() != null) {
+            return reads.get();
+        }
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            PRIMARY_READS.remove();
+        }
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String target = chooseTarget();
+        routed.get(target).increment();
+        return target;
+    }
+
+    private String chooseTarget() {
+        if (replicas.isEmpty() || PRIMARY_READS.get() != null || readYourWrites.isPinnedToPrimary()) {
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            // NaN (реплика недоступна) сравнение не проходит
+            if (replica.lagSeconds <= maxLagSeconds) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Scheduled(fixedDelayString = "${books.replicas.lag-check-interval:5s}")
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            double lag;
+            try {
+                Double measured = replica.jdbcTemplate.queryForObject(LAG_SQL, Double.class);
+                lag = measured == null ? 0 : measured;
+            } catch (DataAccessException e) {
+                if (!Double.isNaN(replica.lagSeconds)) {
+                    log.warn("Реплика {} не ответила на проверку отставания: {}", replica.name, e.getMessage());
+                }
+                lag = Double.NaN;
+            }
+            updateLag(replica.name, lag);
+        }
+    }
+
+    public void updateLag(String name, double lagSeconds) {
+        for (Replica replica : replicas) {
+            if (replica.name.equals(name)) {
+                boolean wasUsable = replica.lagSeconds <= maxLagSeconds;
+                replica.lagSeconds = lagSeconds;
+                boolean usable = lagSeconds <= maxLagSeconds;
+                if (wasUsable && !usable) {
+                    log.warn("Реплика {} исключена из чтения, отставание: {} с", name, lagSeconds);
+                } else if (!wasUsable && usable) {
+                    log.info("Реплика {} снова принимает чтение, отставание: {} с", name, lagSeconds);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile double lagSeconds;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.jdbcTemplate.setQueryTimeout(2);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package by.aleksabrakor.tzForBookvoed.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+@Configuration
+@Slf4j
+public class ThreadingConfig {
+
+    // Виртуальные потоки для Tomcat и асинхронных задач включаются spring.threads.virtual.enabled (только на Java 21+);
+    // лимит допуска действует в обоих режимах
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            @Value("${books.admission.max-concurrent:0}") int maxConcurrent,
+            @Value("${books.admission.acquire-timeout:2s}") Duration acquireTimeout,
+            @Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+            MeterRegistry meterRegistry) {
+        // 0 — по размеру пула primary: допущенный запрос сразу получает соединение, а лишние получают 503
+        // от фильтра, а не ждут connection-timeout в очереди Hikari и не заканчиваются 500
+        int poolSize = primaryDataSource.getMaximumPoolSize();
+        int permits = maxConcurrent > 0 ? maxConcurrent : poolSize;
+        if (permits > poolSize) {
+            log.warn("books.admission.max-concurrent ({}) больше пула соединений ({}): лишние запросы будут ждать " +
+                    "соединение до {} мс и получат 500 вместо 503", permits, poolSize, primaryDataSource.getConnectionTimeout());
+        }
+        if (acquireTimeout.toMillis() >= primaryDataSource.getConnectionTimeout()) {
+            log.warn("books.admission.acquire-timeout ({} мс) не меньше connection-timeout пула ({} мс)",
+                    acquireTimeout.toMillis(), primaryDataSource.getConnectionTimeout());
+        }
+        FilterRegistrationBean<AdmissionControlFilter> registration =
+                new FilterRegistrationBean<>(new AdmissionControlFilter(permits, acquireTimeout, meterRegistry));
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void logThreadingMode(ApplicationReadyEvent event) {
+        Environment environment = event.getApplicationContext().getEnvironment();
+        boolean requested = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        boolean supported = Runtime.version().feature() >= 21;
+        AdmissionControlFilter admissionControlFilter = (AdmissionControlFilter) event.getApplicationContext()
+                .getBean("admissionControlFilter", FilterRegistrationBean.class).getFilter();
+        log.info("Виртуальные потоки: {} (Java {}), лимит одновременных запросов: {}, пул соединений: {}",
+                requested && supported ? "включены" : requested ? "запрошены, но недоступны" : "выключены",
+                Runtime.version().feature(),
+                admissionControlFilter.getMaxConcurrent(),
+                environment.getProperty("spring.datasource.hikari.maximum-pool-size", "10"));
+    }
+}
@@ -0,0 +1,46 @@
+package by.aleksabrakor.tzForBookvoed.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+//Время отрисовки Thymeleaf-шаблона: от postHandle (модель готова) до afterCompletion (страница записана в ответ)
+@RequiredArgsConstructor
+public class ViewRenderTimingInterceptor implements HandlerInterceptor {
+
+    public static final String METRIC_NAME = "books.view.render";
+
+    private static final String SAMPLE_ATTRIBUTE = ViewRenderTimingInterceptor.class.getName() + ".sample";
+    private static final String VIEW_ATTRIBUTE = ViewRenderTimingInterceptor.class.getName() + ".view";
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        // REST-ответы и редиректы шаблон не отрисовывают
+        if (modelAndView == null || modelAndView.getViewName() == null
+                || modelAndView.getViewName().startsWith("redirect:")) {
+            return;
+        }
+        request.setAttribute(VIEW_ATTRIBUTE, modelAndView.getViewName());
+        request.setAttribute(SAMPLE_ATTRIBUTE, Timer.start(meterRegistry));
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (!(request.getAttribute(SAMPLE_ATTRIBUTE) instanceof Timer.Sample sample)) {
+            return;
+        }
+        sample.stop(Timer.builder(METRIC_NAME)
+                .description("Время отрисовки шаблона")
+                .tag("view", (String) request.getAttribute(VIEW_ATTRIBUTE))
+                .tag("exception", ex == null ? "none" : ex.getClass().getSimpleName())
+                .register(meterRegistry));
+    }
+}
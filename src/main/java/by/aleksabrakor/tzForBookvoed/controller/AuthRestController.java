@@ -0,0 +1,36 @@
+package by.aleksabrakor.tzForBookvoed.controller;
+
+import by.aleksabrakor.tzForBookvoed.dto.TokenRequestDto;
+import by.aleksabrakor.tzForBookvoed.dto.TokenResponseDto;
+import by.aleksabrakor.tzForBookvoed.security.TokenService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@Timed("books.controller")
+@RequestMapping("api/auth")
+@RequiredArgsConstructor
+@Slf4j
+public class AuthRestController {
+
+    private final AuthenticationManager authenticationManager;
+    private final TokenService tokenService;
+
+    //Единственная дорогая операция: проверка пароля BCrypt, дальше запросы идут с токеном
+    @PostMapping("/token")
+    public TokenResponseDto issueToken(@RequestBody @Valid TokenRequestDto tokenRequestDto) {
+        log.info("POST api/auth/token — выдача токена для {}", tokenRequestDto.getUsername());
+        Authentication authentication = authenticationManager.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated(tokenRequestDto.getUsername(), tokenRequestDto.getPassword()));
+        return tokenService.issueToken(authentication);
+    }
+}
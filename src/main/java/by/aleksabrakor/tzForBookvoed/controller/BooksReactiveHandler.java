@@ -0,0 +1,98 @@
+package by.aleksabrakor.tzForBookvoed.controller;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
+import by.aleksabrakor.tzForBookvoed.exception.ErrorResponse;
+import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
+import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
+import by.aleksabrakor.tzForBookvoed.service.ReactiveBookService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+//api/v2/books: неблокирующая выгрузка каталога для партнерских интеграций (R2DBC + WebFlux-роутер)
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BooksReactiveHandler {
+
+    private final ReactiveBookService reactiveBookService;
+
+    //Пути относительно /api/v2 — префикс задает регистрация сервлета в ReactiveApiConfig
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .GET("/books", this::findBooks)
+                .GET("/books/{id}", this::findBookById)
+                .POST("/books", this::createBook)
+                .onError(NotFoundException.class, (e, request) ->
+                        errorResponse(HttpStatus.NOT_FOUND, "Object was not found: " + e.getMessage()))
+                .onError(NotCreatedException.class, (e, request) ->
+                        errorResponse(HttpStatus.BAD_REQUEST, "Was not create:  " + e.getMessage()))
+                .onError(BadRequestException.class, (e, request) ->
+                        errorResponse(HttpStatus.BAD_REQUEST, "Bad request: " + e.getMessage()))
+                .build();
+    }
+
+    //Поток NDJSON: следующая книга читается из БД, когда клиент принял предыдущие.
+    //Параметры разбираются внутри Mono, чтобы ошибка дошла до onError, а не стала 500
+    public Mono<ServerResponse> findBooks(ServerRequest request) {
+        log.info("GET api/v2/books — потоковая выгрузка списка книг");
+        return Mono.fromCallable(() -> reactiveBookService.findBooks(
+                        request.queryParam("title").orElse(null),
+                        request.queryParam("brand").orElse(null),
+                        numberParam(request, "year", Integer::valueOf),
+                        numberParam(request, "after", Long::valueOf),
+                        numberParam(request, "limit", Long::valueOf)))
+                .flatMap(books -> ServerResponse.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body(books, BookDto.class));
+    }
+
+    public Mono<ServerResponse> findBookById(ServerRequest request) {
+        log.info("GET api/v2/books/{id} — получение книги по ID");
+        return Mono.fromCallable(() -> parseNumber("id", request.pathVariable("id"), Long::valueOf))
+                .flatMap(reactiveBookService::findBookById)
+                .flatMap(book -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(book));
+    }
+
+    public Mono<ServerResponse> createBook(ServerRequest request) {
+        log.info("POST api/v2/books — добавление новой книги");
+        return request.bodyToMono(BookDto.class)
+                .switchIfEmpty(Mono.error(() -> new BadRequestException("Тело запроса не должно быть пустым")))
+                .flatMap(reactiveBookService::saveBook)
+                .flatMap(book -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(book));
+    }
+
+    private static <T> T numberParam(ServerRequest request, String name, Function<String, T> parser) {
+        return request.queryParam(name)
+                .filter(StringUtils::hasText)
+                .map(value -> parseNumber(name, value, parser))
+                .orElse(null);
+    }
+
+    private static <T> T parseNumber(String name, String value, Function<String, T> parser) {
+        try {
+            return parser.apply(value.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Параметр " + name + " должен быть числом");
+        }
+    }
+
+    private static Mono<ServerResponse> errorResponse(HttpStatus status, String message) {
+        return ServerResponse.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ErrorResponse(message, Timestamp.valueOf(LocalDateTime.now())));
+    }
+}
@@ -1,59 +1,373 @@
 package by.aleksabrakor.tzForBookvoed.controller;
 
 
+import by.aleksabrakor.tzForBookvoed.dto.BookBatchResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkUpdateDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookChangesDto;
 import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFacetsDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.dto.CursorPageDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookSuggestIndexDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookSuggestionsDto;
+import by.aleksabrakor.tzForBookvoed.dto.SliceDto;
+import by.aleksabrakor.tzForBookvoed.dto.StockDecrementDto;
 import by.aleksabrakor.tzForBookvoed.service.BookService;
+import by.aleksabrakor.tzForBookvoed.service.BookSuggestIndex;
+import by.aleksabrakor.tzForBookvoed.util.BookETag;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
+@Timed("books.controller")
 @RequestMapping("api/books")
 @RequiredArgsConstructor
 @Slf4j
 public class BooksRestController {
 
+    private static final long STREAM_FLUSH_EVERY = 1000;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
     private final BookService bookService;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
     @PreAuthorize("permitAll()")
-    public List<BookDto> getAllBooks() {
+    public List<BookDto> getAllBooks(WebRequest webRequest) {
         log.info("GET api/books— получение списка всех книг");
+        if (catalogNotModified(webRequest, null)) {
+            return null;
+        }
         return bookService.findAllBooks();
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<StreamingResponseBody> streamAllBooks(WebRequest webRequest) {
+        log.info("GET api/books (NDJSON) — потоковая выгрузка всех книг");
+        if (catalogNotModified(webRequest, "ndjson")) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(streamBooks(false));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<StreamingResponseBody> streamAllBooksAsArray(WebRequest webRequest) {
+        log.info("GET api/books/stream — потоковая выгрузка всех книг JSON-массивом");
+        if (catalogNotModified(webRequest, null)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(streamBooks(true));
+    }
+
+    //CSV для выгрузок: COPY ... TO STDOUT пишет прямо в ответ, при Accept-Encoding: gzip — сжатый поток
+    @GetMapping(value = "/export.csv", produces = "text/csv")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<StreamingResponseBody> exportCsv(
+            @ModelAttribute BookFilterDto filter,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) {
+        log.info("GET api/books/export.csv — выгрузка CSV по фильтру {}", filter);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        // Сжатый и несжатый ответ — разные представления с разными байтами, поэтому и строгие ETag у них разные
+        String eTag = bookService.catalogETag();
+        if (webRequest.checkNotModified(gzip ? BookETag.withVariant(eTag, "gzip") : eTag)) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(TEXT_CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("books.csv").build().toString())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (!gzip) {
+            return response.body(out -> bookService.exportCsv(filter, out));
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body(out -> {
+                    // Поток ответа закрывает сам Spring, GZIPOutputStream только дописывает трейлер
+                    try (GZIPOutputStream gzipOut = new GZIPOutputStream(StreamUtils.nonClosing(out), GZIP_BUFFER_SIZE)) {
+                        bookService.exportCsv(filter, gzipOut);
+                    }
+                });
+    }
+
+    //Счетчики brand и year для текущего фильтра; витрина обновляется раз в books.facets.refresh-interval
+    @GetMapping("/facets")
+    @PreAuthorize("permitAll()")
+    public BookFacetsDto findFacets(@ModelAttribute BookFilterDto filter,
+                                    @RequestParam(defaultValue = "10") int limit) {
+        log.info("GET api/books/facets — фасеты по фильтру {}", filter);
+        return bookService.findFacets(filter, limit);
+    }
+
+    //Автодополнение по началу названия и автора из индекса в памяти, без запроса к БД
+    @GetMapping("/suggest")
+    @PreAuthorize("permitAll()")
+    public BookSuggestionsDto suggest(@RequestParam(required = false) String prefix,
+                                      @RequestParam(defaultValue = "10") int limit) {
+        log.debug("GET api/books/suggest — подсказки для {}", prefix);
+        return bookSuggestIndex.suggest(prefix, limit);
+    }
+
+    @PostMapping("/suggest/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public BookSuggestIndexDto rebuildSuggestIndex() {
+        log.info("POST api/books/suggest/rebuild — перестройка индекса подсказок");
+        return bookSuggestIndex.rebuild();
+    }
+
+    //Изменения каталога после курсора для синхронизации внешних систем; без since — весь каталог с начала ленты
+    @GetMapping("/changes")
+    @PreAuthorize("permitAll()")
+    public BookChangesDto findChanges(@RequestParam(required = false) String since,
+                                      @RequestParam(defaultValue = "500") int limit) {
+        log.info("GET api/books/changes — изменения после {}", since);
+        return bookService.findChanges(since, limit);
+    }
+
+    @GetMapping("/page")
+    @PreAuthorize("permitAll()")
+    public CursorPageDto<BookDto> findBooksAfter(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest webRequest) {
+        log.info("GET api/books/page — keyset-пагинация {}, {}, {}, after={}", title, brand, year, after);
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        return bookService.findBooksAfter(title, brand, year, after, size);
+    }
+
+    @GetMapping("/slice")
+    @PreAuthorize("permitAll()")
+    public SliceDto<BookDto> findBooksSlice(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest webRequest) {
+        log.info("GET api/books/slice — список без подсчета total {}, {}, {}", title, brand, year);
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        Slice<BookDto> slice = bookService.findBooksSlice(title, brand, year, page, size);
+        return new SliceDto<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext(),
+                bookService.approximateBookCount(title, brand, year));
+    }
+
+    @GetMapping("/search")
+    @PreAuthorize("permitAll()")
+    public List<BookDto> searchBooks(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest webRequest) {
+        log.info("GET api/books/search — полнотекстовый поиск: {}", q);
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        return bookService.searchBooks(q, page, size);
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("permitAll()")
-    public BookDto findBookById(@PathVariable Long id) {
+    public BookDto findBookById(@PathVariable Long id, WebRequest webRequest) {
         log.info("GET api/books//{id} — получение книги по ID");
-        return bookService.findBookById(id);
+        BookDto book = bookService.findBookById(id);
+        // При совпадении If-None-Match отвечаем 304 без тела
+        if (webRequest.checkNotModified(BookETag.of(book.getId(), book.getVersion()))) {
+            return null;
+        }
+        return book;
     }
 
     @PostMapping
-//    @PreAuthorize("hasRole('ADMIN')")
+    @PreAuthorize("hasRole('ADMIN')")
     public BookDto createBook(@RequestBody @Valid BookDto bookDto) {
         log.info("POST api/books — добавление новой книги");
         return bookService.saveBook(bookDto);
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public BookBatchResultDto createBooks(@RequestBody List<BookDto> bookDtos) {
+        log.info("POST api/books/batch — пакетное добавление {} книг", bookDtos.size());
+        return bookService.saveBooks(bookDtos);
+    }
+
     @PutMapping("/{id}")
-//    @PreAuthorize("hasRole('ADMIN')")
-    public BookDto updateBook(@PathVariable Long id, @RequestBody BookDto bookDto) {
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BookDto> updateBook(@PathVariable Long id, @RequestBody BookDto bookDto,
+                                              @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.info("PUT api/books//{id} — редактирование книги по ID");
-        return bookService.updateBook(id, bookDto);
+        BookDto updatedBook = bookService.updateBook(id, bookDto, ifMatch);
+        return ResponseEntity.ok()
+                .eTag(BookETag.of(updatedBook.getId(), updatedBook.getVersion()))
+                .body(updatedBook);
+    }
+
+    @PatchMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BookDto> patchBook(@PathVariable Long id, @RequestBody BookDto bookDto,
+                                             @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        log.info("PATCH api/books//{id} — частичное изменение книги по ID");
+        BookDto patchedBook = bookService.patchBook(id, bookDto, ifMatch);
+        return ResponseEntity.ok()
+                .eTag(BookETag.of(patchedBook.getId(), patchedBook.getVersion()))
+                .body(patchedBook);
+    }
+
+    //Массовые операции по фильтру (title, brand, year, yearFrom, yearTo в строке запроса)
+    @PatchMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public BookBulkResultDto updateBooks(@ModelAttribute BookFilterDto filter,
+                                         @RequestBody BookBulkUpdateDto changes,
+                                         @RequestParam(defaultValue = "false") boolean dryRun) {
+        log.info("PATCH api/books — массовое изменение книг по фильтру {}, dryRun={}", filter, dryRun);
+        return bookService.updateBooks(filter, changes, dryRun);
+    }
+
+    @DeleteMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public BookBulkResultDto deleteBooks(@ModelAttribute BookFilterDto filter,
+                                         @RequestParam(defaultValue = "false") boolean dryRun) {
+        log.info("DELETE api/books — массовое удаление книг по фильтру {}, dryRun={}", filter, dryRun);
+        return bookService.deleteBooks(filter, dryRun);
+    }
+
+    @PostMapping("/{id}/stock/decrement")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BookDto> decrementStock(@PathVariable Long id, @RequestBody @Valid StockDecrementDto decrement) {
+        log.info("POST api/books//{id}/stock/decrement — списание {} шт. книги с id: {}", decrement.getQuantity(), id);
+        BookDto book = bookService.decrementStock(id, decrement.getQuantity());
+        return ResponseEntity.ok()
+                .eTag(BookETag.of(book.getId(), book.getVersion()))
+                .body(book);
+    }
+
+    @PostMapping("/stock/decrement")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<StockDecrementDto> decrementStocks(@RequestBody List<StockDecrementDto> decrements) {
+        log.info("POST api/books/stock/decrement — списание по {} позициям", decrements.size());
+        return bookService.decrementStocks(decrements);
     }
 
     @DeleteMapping("/{id}")
-//    @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> deleteBook(@PathVariable Long id) {
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> deleteBook(@PathVariable Long id,
+                                        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.info("DELETE api/books//{id} — удаление книги по ID");
-        bookService.deleteBook(id);
+        bookService.deleteBook(id, ifMatch);
         return ResponseEntity.ok().build();
     }
+
+    //gzip подходит, если указан явно или через * с ненулевым q: "gzip;q=0" означает отказ от сжатия
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].strip().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].strip();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).strip());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        return gzip != null ? gzip > 0 : any != null && any > 0;
+    }
+
+    //Проверяет If-None-Match по версии каталога; заодно выставляет ETag в ответ
+    private boolean catalogNotModified(WebRequest webRequest) {
+        return webRequest.checkNotModified(bookService.catalogETag());
+    }
+
+    //То же для полного списка: api/books по Accept отдает JSON-массив или NDJSON, поэтому у каждого представления
+    //свой тег (variant, null — JSON-массив) и Vary: Accept, чтобы кэш не подставил одно вместо другого
+    private boolean catalogNotModified(WebRequest webRequest, String variant) {
+        HttpServletResponse response = ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class);
+        if (response != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        String eTag = bookService.catalogETag();
+        return webRequest.checkNotModified(variant == null ? eTag : BookETag.withVariant(eTag, variant));
+    }
+
+    private StreamingResponseBody streamBooks(boolean asArray) {
+        ObjectWriter writer = objectMapper.writerFor(BookDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+        return out -> {
+            AtomicLong written = new AtomicLong();
+            try (SequenceWriter sequence = writer.writeValues(out).init(asArray)) {
+                bookService.streamAllBooks(bookDto -> {
+                    try {
+                        sequence.write(bookDto);
+                        // Первую строку отправляем сразу, дальше сбрасываем буфер пачками
+                        if (written.incrementAndGet() % STREAM_FLUSH_EVERY == 1) {
+                            sequence.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            if (!asArray && written.get() > 0) {
+                out.write('\n');
+            }
+        };
+    }
 }
@@ -2,21 +2,30 @@ package by.aleksabrakor.tzForBookvoed.controller;
 
 
 import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
+import by.aleksabrakor.tzForBookvoed.service.BookListFragmentCache;
 import by.aleksabrakor.tzForBookvoed.service.BookService;
 import by.aleksabrakor.tzForBookvoed.util.BookValidator;
 import jakarta.validation.Valid;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
+import java.util.Locale;
 
 @Controller
+@Timed("books.controller")
 @RequestMapping("/books")
 @RequiredArgsConstructor
 @Log4j2
@@ -24,6 +33,13 @@ public class BooksWebController {
 
     private final BookService bookService;
     private  final BookValidator bookValidator;
+    private final BookListFragmentCache bookListFragmentCache;
+
+    private static final int FILTER_HINTS = 20;
+
+    //Режим Slice: страница без count(*), навигация только назад/вперед
+    @Value("${books.list.slice-mode:false}")
+    private boolean sliceMode;
 
     @GetMapping
     public String findAllBooks(
@@ -33,7 +49,8 @@ public class BooksWebController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             Model model,
-            Principal principal) {
+            Principal principal,
+            Locale locale) {
 
         log.info("Получение списка всех книг с учетом пагинации и фильтрации {}, {}, {}", title,brand, year);
 
@@ -42,14 +59,40 @@ public class BooksWebController {
             model.addAttribute("username", principal.getName());
         }
 
-        Page<BookDto> booksPage = bookService.findAllBooks(title, brand, year, page, size);
-        model.addAttribute("books", booksPage);
-        model.addAttribute("title", title);
-        model.addAttribute("brand", brand);
+        // Пустое поле формы фильтра равнозначно отсутствующему фильтру: один ключ кэша вместо двух
+        String titleFilter = StringUtils.hasLength(title) ? title : null;
+        String brandFilter = StringUtils.hasLength(brand) ? brand : null;
+        model.addAttribute("title", titleFilter);
+        model.addAttribute("brand", brandFilter);
         model.addAttribute("year", year);
+
+        BookListFragmentCache.Key key = new BookListFragmentCache.Key(BookListFragmentCache.viewerOf(principal), locale,
+                titleFilter, brandFilter, year, page, size);
+        // Данные из БД выбираются только при промахе кэша фрагментов. books, facets и остальное для таблицы попадают
+        // в модель тоже только при промахе: страница books/list берет из модели лишь booksFragment и поля фильтра,
+        // поэтому все, что зависит от выборки, должно быть внутри books/list-content
+        String booksFragment = bookListFragmentCache.get(key, () -> {
+            addBookList(model, titleFilter, brandFilter, year, page, size);
+            return bookListFragmentCache.render(model.asMap(), locale);
+        });
+        model.addAttribute("booksFragment", booksFragment);
         return "books/list";
     }
 
+    private void addBookList(Model model, String title, String brand, Integer year, int page, int size) {
+        if (sliceMode) {
+            model.addAttribute("books", bookService.findBooksSlice(title, brand, year, page, size));
+            model.addAttribute("approximateTotal", bookService.approximateBookCount(title, brand, year));
+        } else {
+            Page<BookDto> booksPage = bookService.findAllBooks(title, brand, year, page, size);
+            model.addAttribute("books", booksPage);
+        }
+        model.addAttribute("sliceMode", sliceMode);
+        // Подсказки для полей brand и year: что есть в каталоге под текущим фильтром; кэшируются вместе с таблицей
+        model.addAttribute("facets", bookService.findFacets(new BookFilterDto(title, brand, year, null, null),
+                FILTER_HINTS));
+    }
+
     @GetMapping("/new")
     @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
     public String showCreateForm(Model model) {
@@ -66,11 +109,19 @@ public class BooksWebController {
 
         log.info("Попытка сохранения книги: {}", bookDto.getTitle());
 
-        if (!processBook(bookDto, bindingResult)) {
+        if (bindingResult.hasErrors()) {
+            log.error("Validation errors: {}", bindingResult.getAllErrors());
+            return "books/form";
+        }
+        // Уникальность VendorCode проверяется самим INSERT, без отдельного запроса через BookValidator
+        try {
+            BookDto savedBook = bookService.saveBook(bookDto);
+            log.info("Книга успешно сохранена. ID: {}", savedBook.getId());
+        } catch (NotCreatedException e) {
+            log.error("Книга не сохранена: {}", e.getMessage());
+            bindingResult.rejectValue("vendorCode", "", "Этот VendorCode уже существует");
             return "books/form";
         }
-        BookDto savedBook = bookService.saveBook(bookDto);
-        log.info("Книга успешно сохранена. ID: {}", savedBook.getId());
         return "redirect:/books";
     }
 
@@ -94,8 +145,15 @@ public class BooksWebController {
         if (!processBook(bookDto, bindingResult)) {
             return "books/form";
         }
-        BookDto updatedBook = bookService.updateBook(id, bookDto);
-        log.info("Книга успешно обновлена. ID: {}", updatedBook.getId());
+        // Скрытое поле version формы: если книгу успели изменить, правка не затирает чужие изменения
+        try {
+            BookDto updatedBook = bookService.updateBook(id, bookDto);
+            log.info("Книга успешно обновлена. ID: {}", updatedBook.getId());
+        } catch (OptimisticLockingFailureException e) {
+            log.error("Книга не обновлена: {}", e.getMessage());
+            bindingResult.reject("", "Книгу уже изменил другой пользователь. Откройте ее заново и повторите правку");
+            return "books/form";
+        }
         return "redirect:/books";
     }
 
@@ -0,0 +1,28 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchItemResultDto {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+
+    //Позиция книги во входном списке
+    private int index;
+
+    private String vendorCode;
+
+    private Long id;
+
+    private Status status;
+
+    private String message;
+}
@@ -0,0 +1,19 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchResultDto {
+
+    private int created;
+
+    private int rejected;
+
+    private List<BookBatchItemResultDto> items;
+}
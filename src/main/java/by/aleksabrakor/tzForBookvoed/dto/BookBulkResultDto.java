@@ -0,0 +1,16 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBulkResultDto {
+
+    //Число измененных (удаленных) книг; при dryRun — сколько книг подходит под фильтр
+    private long affected;
+
+    private boolean dryRun;
+}
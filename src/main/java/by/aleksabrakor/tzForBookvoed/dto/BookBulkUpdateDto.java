@@ -0,0 +1,19 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBulkUpdateDto {
+
+    //Изменение цены в процентах: 5 — поднять на 5%, -10 — снизить на 10%; цена округляется до копеек
+    private BigDecimal pricePercent;
+
+    //Новый остаток для всех отобранных книг
+    private Integer stock;
+}
@@ -0,0 +1,27 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChangeDto {
+
+    //Лента хранит только последнее состояние книги: клиент применяет CREATED и UPDATED одинаково (upsert)
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private Type type;
+
+    private Long id;
+
+    private String vendorCode;
+
+    //Книга после изменения; null для DELETED
+    private BookDto book;
+
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,21 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChangesDto {
+
+    private List<BookChangeDto> changes;
+
+    //Курсор для следующего запроса (since=...); без изменений возвращается переданный
+    private String cursor;
+
+    //true — за курсором уже есть изменения, их можно запросить сразу
+    private boolean hasMore;
+}
@@ -1,12 +1,14 @@
 package by.aleksabrakor.tzForBookvoed.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 
 @Data
@@ -37,4 +39,11 @@ public class BookDto {
 
     private BigDecimal price;
 
+    //Заполняется только сервером, используется для ETag
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private LocalDateTime updatedAt;
+
+    //Версия, от которой клиент начинал правку; при PUT/PATCH не совпала с текущей — 409
+    private Long version;
+
 }
\ No newline at end of file
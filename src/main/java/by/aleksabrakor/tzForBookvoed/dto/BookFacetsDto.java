@@ -0,0 +1,21 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookFacetsDto {
+
+    //Самые частые значения по убыванию числа книг
+    private List<FacetCountDto<String>> brands;
+
+    private List<FacetCountDto<Integer>> years;
+
+    //true — счетчики по выборке книг (фильтр по title), а не по всему каталогу
+    private boolean approximate;
+}
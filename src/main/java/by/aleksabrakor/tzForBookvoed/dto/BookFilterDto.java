@@ -0,0 +1,30 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.util.StringUtils;
+
+//Критерии отбора для массовых операций: title/brand/year как у findByFilters, плюс диапазон лет
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookFilterDto {
+
+    //Подстрока без учета регистра (ILIKE)
+    private String title;
+
+    private String brand;
+
+    private Integer year;
+
+    //Границы включительно
+    private Integer yearFrom;
+
+    private Integer yearTo;
+
+    public boolean isEmpty() {
+        return !StringUtils.hasLength(title) && !StringUtils.hasLength(brand)
+                && year == null && yearFrom == null && yearTo == null;
+    }
+}
@@ -0,0 +1,21 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestIndexDto {
+
+    //Различные названия и авторы в индексе
+    private int titles;
+
+    private int brands;
+
+    //Память снимка индекса в байтах (без дельты)
+    private long memoryBytes;
+
+    private long buildMillis;
+}
@@ -0,0 +1,18 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestionsDto {
+
+    //Названия и авторы, начинающиеся с префикса (без учета регистра и ё/е), по алфавиту
+    private List<String> titles;
+
+    private List<String> brands;
+}
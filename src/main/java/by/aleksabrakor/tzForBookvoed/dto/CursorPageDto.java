@@ -0,0 +1,20 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDto<T> {
+
+    private List<T> content;
+
+    //Непрозрачный курсор для запроса следующей страницы (after=...), null если страниц больше нет
+    private String nextCursor;
+
+    private boolean hasNext;
+}
@@ -0,0 +1,24 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SliceDto<T> {
+
+    private List<T> content;
+
+    private int page;
+
+    private int size;
+
+    private boolean hasNext;
+
+    //Оценка общего числа книг из статистики PostgreSQL; null для отфильтрованного списка
+    private Long approximateTotal;
+}
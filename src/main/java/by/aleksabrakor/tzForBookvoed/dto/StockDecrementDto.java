@@ -0,0 +1,20 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockDecrementDto {
+
+    //Для api/books/{id}/stock/decrement не нужен: id берется из пути
+    private Long bookId;
+
+    @NotNull(message = "Поле quantity не должно быть пустым")
+    @Positive(message = "Поле quantity должно быть больше 0")
+    private Integer quantity;
+}
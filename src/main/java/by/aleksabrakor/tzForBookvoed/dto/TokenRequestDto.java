@@ -0,0 +1,18 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRequestDto {
+
+    @NotBlank(message = "Поле username не должно быть пустым")
+    private String username;
+
+    @NotBlank(message = "Поле password не должно быть пустым")
+    private String password;
+}
@@ -0,0 +1,19 @@
+package by.aleksabrakor.tzForBookvoed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenResponseDto {
+
+    //Передается в заголовке Authorization: Bearer <accessToken>
+    private String accessToken;
+
+    private String tokenType;
+
+    //Срок действия в секундах
+    private long expiresIn;
+}
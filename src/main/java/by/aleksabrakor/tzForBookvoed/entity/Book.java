@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -11,6 +12,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "books")
+// UPDATE содержит только измененные колонки, а не всю строку
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 public class Book {
@@ -44,4 +47,9 @@ public class Book {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    //Оптимистическая блокировка: UPDATE ... WHERE version = ?, параллельная правка не затирается молча
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -0,0 +1,44 @@
+package by.aleksabrakor.tzForBookvoed.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+//Строка таблицы books для R2DBC (api/v2); JPA-сущность Book остается для блокирующего API
+@Table("books")
+@Data
+@NoArgsConstructor
+public class BookRow {
+
+    @Id
+    private Long id;
+
+    @Column("vendor_code")
+    private String vendorCode;
+
+    @Column("title")
+    private String title;
+
+    @Column("brand")
+    private String brand;
+
+    @Column("year")
+    private Integer year;
+
+    @Column("stock")
+    private Integer stock;
+
+    @Column("price")
+    private BigDecimal price;
+
+    @Column("updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column("version")
+    private Long version;
+}
@@ -0,0 +1,8 @@
+package by.aleksabrakor.tzForBookvoed.exception;
+
+public class BadRequestException extends RuntimeException{
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package by.aleksabrakor.tzForBookvoed.exception;
+
+public class GoneException extends RuntimeException{
+
+    public GoneException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package by.aleksabrakor.tzForBookvoed.exception;
+
+public class InsufficientStockException extends RuntimeException{
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
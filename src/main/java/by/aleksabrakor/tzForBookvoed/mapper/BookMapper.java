@@ -3,6 +3,7 @@ package by.aleksabrakor.tzForBookvoed.mapper;
 
 import by.aleksabrakor.tzForBookvoed.dto.BookDto;
 import by.aleksabrakor.tzForBookvoed.entity.Book;
+import by.aleksabrakor.tzForBookvoed.entity.BookRow;
 import org.mapstruct.Mapper;
 import org.springframework.data.domain.Page;
 
@@ -17,6 +18,8 @@ public interface BookMapper {
 
     BookDto entityToDto(Book book);
 
+    BookDto rowToDto(BookRow bookRow);
+
     List<BookDto> toDtoList(List<Book> books);
 
     List<Book> toEntityList(List<BookDto> bookDtos);
@@ -1,20 +1,24 @@
 package by.aleksabrakor.tzForBookvoed.repositiry;
 
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
 import by.aleksabrakor.tzForBookvoed.entity.Book;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
 
     @Query("SELECT b FROM Book b WHERE " +
             "(:title IS NULL OR b.title ILIKE %:title%) AND " +
@@ -26,6 +30,103 @@ public interface BookRepository extends JpaRepository<Book, Long> {
             @Param("year") Integer year,
             Pageable pageable);
 
+    //Списки только для чтения: выборка сразу в BookDto, без сущностей в контексте персистентности и снимков для dirty checking
+    @Query(value = "SELECT new by.aleksabrakor.tzForBookvoed.dto.BookDto(" +
+            "b.id, b.vendorCode, b.title, b.brand, b.year, b.stock, b.price, b.updatedAt, b.version) FROM Book b WHERE " +
+            "(:title IS NULL OR b.title ILIKE %:title%) AND " +
+            "(:brand IS NULL OR b.brand ILIKE %:brand%) AND " +
+            "(:year IS NULL OR b.year = :year)",
+            countQuery = "SELECT count(b) FROM Book b WHERE " +
+                    "(:title IS NULL OR b.title ILIKE %:title%) AND " +
+                    "(:brand IS NULL OR b.brand ILIKE %:brand%) AND " +
+                    "(:year IS NULL OR b.year = :year)")
+    Page<BookDto> findDtoByFilters(
+            @Param("title") String title,
+            @Param("brand") String brand,
+            @Param("year") Integer year,
+            Pageable pageable);
+
+    //Slice без count(*): Spring Data выбирает size + 1 строк, чтобы определить hasNext
+    @Query("SELECT new by.aleksabrakor.tzForBookvoed.dto.BookDto(" +
+            "b.id, b.vendorCode, b.title, b.brand, b.year, b.stock, b.price, b.updatedAt, b.version) FROM Book b WHERE " +
+            "(:title IS NULL OR b.title ILIKE %:title%) AND " +
+            "(:brand IS NULL OR b.brand ILIKE %:brand%) AND " +
+            "(:year IS NULL OR b.year = :year)")
+    Slice<BookDto> findDtoSliceByFilters(
+            @Param("title") String title,
+            @Param("brand") String brand,
+            @Param("year") Integer year,
+            Pageable pageable);
+
+    //Оценка числа строк из статистики планировщика (-1, если таблица еще не анализировалась)
+    @Query(value = "SELECT reltuples::bigint FROM pg_class WHERE oid = 'books'::regclass", nativeQuery = true)
+    Long estimateBookCount();
+
+    @Query("SELECT new by.aleksabrakor.tzForBookvoed.dto.BookDto(" +
+            "b.id, b.vendorCode, b.title, b.brand, b.year, b.stock, b.price, b.updatedAt, b.version) FROM Book b")
+    List<BookDto> findAllDtos();
+
+    @Query("SELECT new by.aleksabrakor.tzForBookvoed.dto.BookDto(" +
+            "b.id, b.vendorCode, b.title, b.brand, b.year, b.stock, b.price, b.updatedAt, b.version) FROM Book b WHERE " +
+            "(:title IS NULL OR b.title ILIKE %:title%) AND " +
+            "(:brand IS NULL OR b.brand ILIKE %:brand%) AND " +
+            "(:year IS NULL OR b.year = :year) " +
+            "ORDER BY b.title, b.id")
+    List<BookDto> findFirstByFilters(
+            @Param("title") String title,
+            @Param("brand") String brand,
+            @Param("year") Integer year,
+            Limit limit);
+
+    //Keyset-пагинация: продолжаем с позиции (afterTitle, afterId) без OFFSET и без count(*)
+    @Query("SELECT new by.aleksabrakor.tzForBookvoed.dto.BookDto(" +
+            "b.id, b.vendorCode, b.title, b.brand, b.year, b.stock, b.price, b.updatedAt, b.version) FROM Book b WHERE " +
+            "(:title IS NULL OR b.title ILIKE %:title%) AND " +
+            "(:brand IS NULL OR b.brand ILIKE %:brand%) AND " +
+            "(:year IS NULL OR b.year = :year) AND " +
+            "(b.title, b.id) > (:afterTitle, :afterId) " +
+            "ORDER BY b.title, b.id")
+    List<BookDto> findByFiltersAfter(
+            @Param("title") String title,
+            @Param("brand") String brand,
+            @Param("year") Integer year,
+            @Param("afterTitle") String afterTitle,
+            @Param("afterId") Long afterId,
+            Limit limit);
+
+    //Полнотекстовый поиск по title/brand с ранжированием; подстрока в title добирается через триграммный индекс.
+    //Запрос приходит уже с ё, замененной на е (BookService.searchBooks), title сравнивается так же
+    @Query(value = "SELECT b.* FROM books b, websearch_to_tsquery('russian', :q) query " +
+            "WHERE b.search_vector @@ query OR translate(b.title, 'ёЁ', 'еЕ') ILIKE :pattern ESCAPE '\\' " +
+            "ORDER BY ts_rank_cd(b.search_vector, query) DESC, similarity(translate(b.title, 'ёЁ', 'еЕ'), :q) DESC, b.id " +
+            "LIMIT :limit OFFSET :offset",
+            nativeQuery = true)
+    List<Book> search(@Param("q") String query, @Param("pattern") String pattern, @Param("limit") int limit, @Param("offset") long offset);
+
+    //Версия каталога для ETag списков: последняя позиция ленты изменений среди книг, записей об удалении
+    //и горизонта удаленных по сроку записей. Как и лента, учитывает только транзакции ниже pg_snapshot_xmin:
+    //номера выдаются не в порядке коммитов, а ниже этой границы новых изменений уже не появится.
+    //Запись становится видна в версии после завершения всех начатых до нее пишущих транзакций
+    @Query(value = "WITH snapshot AS (SELECT pg_snapshot_xmin(pg_current_snapshot()) AS xmin) " +
+            "SELECT concat(position.change_xid, '-', position.change_seq) FROM (" +
+            "(SELECT change_xid, change_seq FROM books WHERE change_xid < (SELECT xmin FROM snapshot) " +
+            "ORDER BY change_xid DESC, change_seq DESC LIMIT 1) " +
+            "UNION ALL " +
+            "(SELECT change_xid, change_seq FROM books_deletions WHERE change_xid < (SELECT xmin FROM snapshot) " +
+            "ORDER BY change_xid DESC, change_seq DESC LIMIT 1) " +
+            "UNION ALL " +
+            "SELECT changes_horizon_xid, changes_horizon_seq FROM books_catalog_state WHERE id = 1" +
+            ") position ORDER BY position.change_xid DESC, position.change_seq DESC LIMIT 1",
+            nativeQuery = true)
+    String findCatalogVersion();
+
+    //Детерминированное правило сравнения колонки title: равны только одинаковые строки (так у всех, кроме
+    //ICU-правил с deterministic = false)
+    @Query(value = "SELECT c.collisdeterministic FROM pg_attribute a JOIN pg_collation c ON c.oid = a.attcollation " +
+            "WHERE a.attrelid = 'books'::regclass AND a.attname = 'title'",
+            nativeQuery = true)
+    boolean isTitleCollationDeterministic();
+
     Optional<Book> findByVendorCodeAndIdNot(String vendorCode, Long id);
 
     Optional<Book> findByVendorCode(String vendorCode);
@@ -0,0 +1,107 @@
+package by.aleksabrakor.tzForBookvoed.repositiry;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookChangeDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFacetsDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.entity.Book;
+import by.aleksabrakor.tzForBookvoed.util.BookChangeCursor;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+public interface BookRepositoryCustom {
+
+    //Обход всего каталога серверным курсором: каждая строка отдается в action и сразу отсоединяется от контекста
+    void forEachBook(int fetchSize, Consumer<Book> action);
+
+    //Пакетная вставка в обход Hibernate; книги с уже существующим vendorCode пропускаются.
+    //Возвращает реально вставленные строки такими, какими их записала база
+    List<Book> insertIgnoringDuplicates(List<Book> books);
+
+    //Вставка одним запросом с опорой на UNIQUE(vendor_code): пустой Optional, если vendorCode уже занят
+    Optional<Book> insertIfAbsent(Book book);
+
+    //PATCH одним UPDATE ... RETURNING без предварительного SELECT: пишутся только ненулевые поля changes,
+    //version увеличивается. expectedVersions == null — без проверки версии.
+    //Пустой Optional, если книги нет или ее версия не из expectedVersions
+    Optional<Book> patch(Long id, Book changes, Collection<Long> expectedVersions);
+
+    //Текущая версия книги; пустой Optional, если книги нет
+    Optional<Long> findVersionById(Long id);
+
+    //Массовые операции одним оператором по тем же критериям, что и findByFilters
+    long countByFilter(BookFilterDto filter);
+
+    //pricePercent и stock — null, если поле не меняется. Возвращает число измененных книг.
+    //updated получает измененные строки из RETURNING; null — строки не нужны
+    int updateByFilter(BookFilterDto filter, BigDecimal pricePercent, Integer stock, Consumer<Book> updated);
+
+    //deleted получает id удаленных книг из RETURNING; null — id не нужны
+    int deleteByFilter(BookFilterDto filter, Consumer<Long> deleted);
+
+    //CSV-выгрузка книг по фильтру через COPY ... TO STDOUT: байты драйвера пишутся прямо в out,
+    //без сущностей, маппера и Jackson. Возвращает число выгруженных строк.
+    //COPY — один оператор со своим снимком, транзакция ему не нужна: при обрыве клиента драйвер отменяет COPY,
+    //и соединение возвращается в пул без отката
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    long copyCsv(BookFilterDto filter, OutputStream out);
+
+    //Фасеты brand и year по фильтру, не больше limit значений каждого. Без title — суммы по витрине books_facets;
+    //подстроку title витрина не знает, поэтому с ним считаются первые sampleSize подходящих книг
+    BookFacetsDto findFacets(BookFilterDto filter, int limit, int sampleSize);
+
+    //Пересчет витрины books_facets без блокировки ее чтения
+    void refreshFacets();
+
+    //Число книг по каждому значению title (brand) для индекса подсказок; строки читаются курсором
+    void forEachTitleCount(ObjIntConsumer<String> action);
+
+    void forEachBrandCount(ObjIntConsumer<String> action);
+
+    //Книги, измененные после changedSince (null — весь каталог), сразу в BookDto; строки читаются курсором
+    void forEachBookDto(LocalDateTime changedSince, Consumer<BookDto> action);
+
+    //Весь каталог сразу в BookDto в порядке списка ORDER BY title, id; строки читаются курсором
+    void forEachBookDtoInListOrder(Consumer<BookDto> action);
+
+    //id и время удаления книг из books_deletions, удаленных после deletedSince (null — все хранимые)
+    void forEachDeletion(LocalDateTime deletedSince, BiConsumer<Long, LocalDateTime> action);
+
+    //Сколько из titles меньше title по правилу сравнения колонки books.title, то есть стоят раньше в ORDER BY title
+    int countTitlesBefore(List<String> titles, String title);
+
+    //Лента изменений: не больше limit вставок, изменений и удалений после since в порядке (change_xid, change_seq).
+    //Отдаются только изменения транзакций старше самой старой незавершенной, поэтому позже за курсором
+    //не может появиться изменение с меньшей позицией
+    void forEachChange(BookChangeCursor since, int limit, BiConsumer<BookChangeCursor, BookChangeDto> action);
+
+    //Наибольшая позиция среди удаленных по сроку хранения записей об удалении
+    BookChangeCursor findChangesHorizon();
+
+    //Возраст самой старой незавершенной пишущей транзакции в секундах (0 — таких нет): до ее завершения
+    //лента не отдает изменения более новых транзакций
+    double findOldestWriteTransactionAge();
+
+    //Удаляет записи об удалении старше retention и сдвигает горизонт ленты. Возвращает число удаленных записей
+    int purgeDeletions(Duration retention);
+
+    //Атомарное списание одним UPDATE ... WHERE stock >= quantity: пустой Optional, если книги нет или остатка не хватает
+    Optional<Book> decrementStock(Long id, int quantity);
+
+    //Списание по нескольким книгам одним JDBC-пакетом в порядке возрастания id.
+    //Возвращает измененные строки; книг, по которым списать не удалось, среди них нет
+    List<Book> decrementStocks(SortedMap<Long, Integer> quantities);
+}
@@ -0,0 +1,553 @@
+package by.aleksabrakor.tzForBookvoed.repositiry;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookChangeDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFacetsDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.dto.FacetCountDto;
+import by.aleksabrakor.tzForBookvoed.entity.Book;
+import by.aleksabrakor.tzForBookvoed.util.BookChangeCursor;
+import by.aleksabrakor.tzForBookvoed.util.LikePattern;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.StringUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    //6 параметров на строку: 1000 строк укладываются в лимит протокола PostgreSQL (32767 параметров)
+    private static final int INSERT_CHUNK_SIZE = 1000;
+
+    //Строк за одно обращение к курсору при обходе всего каталога
+    private static final int CURSOR_FETCH_SIZE = 5000;
+
+    private static final String BOOK_COLUMNS = "id, vendor_code, title, brand, year, stock, price, created_at, updated_at, version";
+
+    private static final String[] BOOK_COLUMN_NAMES = BOOK_COLUMNS.split(", ");
+
+    //version и отметки времени задаются явно, как их заполняет Hibernate для Book: схема из ddl-auto
+    //не знает значений по умолчанию из миграций
+    private static final String INSERT_COLUMNS = "vendor_code, title, brand, year, stock, price, created_at, updated_at, version";
+
+    private static final String INSERT_DEFAULTS = "LOCALTIMESTAMP, LOCALTIMESTAMP, 0";
+
+    private static final String CSV_COLUMNS = "id, vendor_code, title, brand, year, stock, price, updated_at";
+
+    //updated_at и version меняются вместе с остатком: ETag книги и версия каталога должны увидеть списание
+    private static final String DECREMENT_STOCK_SQL = "UPDATE books SET stock = stock - ?, " +
+            "updated_at = LOCALTIMESTAMP, version = version + 1 WHERE id = ? AND stock >= ?";
+
+    //Книги и записи об удалении после курсора, каждая часть по индексу (change_xid, change_seq).
+    //Граница pg_snapshot_xmin берется из снимка этого же оператора: транзакции ниже нее завершены
+    private static final String CHANGES_SQL = "WITH snapshot AS (SELECT pg_snapshot_xmin(pg_current_snapshot()) AS xmin) " +
+            "SELECT change_xid::text AS change_xid, change_seq, id, vendor_code, title, brand, year, stock, price, " +
+            "changed_at, version, deleted FROM (" +
+            "(SELECT change_xid, change_seq, id, vendor_code, title, brand, year, stock, price, " +
+            "updated_at AS changed_at, version, FALSE AS deleted FROM books " +
+            "WHERE (change_xid, change_seq) > (CAST(? AS xid8), ?) AND change_xid < (SELECT xmin FROM snapshot) " +
+            "ORDER BY change_xid, change_seq LIMIT ?) " +
+            "UNION ALL " +
+            "(SELECT change_xid, change_seq, book_id, vendor_code, NULL, NULL, NULL, NULL, NULL, " +
+            "deleted_at, NULL, TRUE FROM books_deletions " +
+            "WHERE (change_xid, change_seq) > (CAST(? AS xid8), ?) AND change_xid < (SELECT xmin FROM snapshot) " +
+            "ORDER BY change_xid, change_seq LIMIT ?)" +
+            ") changes ORDER BY changes.change_xid, changes.change_seq LIMIT ?";
+
+    //Транзакции с номером (backend_xid) и подготовленные транзакции по всему кластеру: номера общие для всех баз,
+    //и именно они держат pg_snapshot_xmin
+    private static final String OLDEST_WRITE_TRANSACTION_SQL = "SELECT coalesce(extract(epoch FROM now() - min(started)), 0) " +
+            "FROM (SELECT xact_start AS started FROM pg_stat_activity WHERE backend_xid IS NOT NULL " +
+            "UNION ALL SELECT prepared FROM pg_prepared_xacts) transactions";
+
+    //Горизонт сдвигается только вперед, удаление и сдвиг — в одном операторе
+    private static final String PURGE_DELETIONS_SQL = "WITH purged AS (" +
+            "DELETE FROM books_deletions WHERE deleted_at < LOCALTIMESTAMP - make_interval(secs => ?) RETURNING change_xid, change_seq), " +
+            "last AS (SELECT change_xid, change_seq FROM purged ORDER BY change_xid DESC, change_seq DESC LIMIT 1), " +
+            "horizon AS (UPDATE books_catalog_state state " +
+            "SET changes_horizon_xid = last.change_xid, changes_horizon_seq = last.change_seq FROM last " +
+            "WHERE state.id = 1 AND (last.change_xid, last.change_seq) > " +
+            "(state.changes_horizon_xid, state.changes_horizon_seq)) " +
+            "SELECT count(*) FROM purged";
+
+    //Правило сравнения колонки title с именем схемы, уже в кавычках; у колонки без COLLATE — pg_catalog."default"
+    private static final String TITLE_COLLATION_SQL = "SELECT quote_ident(n.nspname) || '.' || quote_ident(c.collname) " +
+            "FROM pg_attribute a JOIN pg_collation c ON c.oid = a.attcollation JOIN pg_namespace n ON n.oid = c.collnamespace " +
+            "WHERE a.attrelid = 'books'::regclass AND a.attname = 'title'";
+
+    private static final RowMapper<Book> BOOK_ROW_MAPPER = (rs, rowNum) -> {
+        Book book = new Book();
+        book.setId(rs.getLong("id"));
+        book.setVendorCode(rs.getString("vendor_code"));
+        book.setTitle(rs.getString("title"));
+        book.setBrand(rs.getString("brand"));
+        book.setYear(rs.getInt("year"));
+        book.setStock(rs.getObject("stock", Integer.class));
+        book.setPrice(rs.getBigDecimal("price"));
+        book.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        book.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        book.setVersion(rs.getLong("version"));
+        return book;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Имя правила сравнения books.title для COLLATE; читается один раз
+    private volatile String titleCollation;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void forEachBook(int fetchSize, Consumer<Book> action) {
+        // PostgreSQL открывает курсор только внутри транзакции и при fetchSize > 0,
+        // иначе драйвер вычитывает весь результат в память
+        try (Stream<Book> books = entityManager.createQuery("SELECT b FROM Book b ORDER BY b.id", Book.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_CACHEABLE, false)
+                .getResultStream()) {
+            books.forEach(book -> {
+                action.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    @Override
+    public List<Book> insertIgnoringDuplicates(List<Book> books) {
+        List<Book> inserted = new ArrayList<>(books.size());
+        for (int from = 0; from < books.size(); from += INSERT_CHUNK_SIZE) {
+            List<Book> chunk = books.subList(from, Math.min(from + INSERT_CHUNK_SIZE, books.size()));
+            jdbcTemplate.query(multiRowInsertSql(chunk.size()),
+                    ps -> {
+                        int i = 1;
+                        for (Book book : chunk) {
+                            ps.setString(i++, book.getVendorCode());
+                            ps.setString(i++, book.getTitle());
+                            ps.setString(i++, book.getBrand());
+                            ps.setInt(i++, book.getYear());
+                            ps.setObject(i++, book.getStock(), Types.INTEGER);
+                            ps.setObject(i++, book.getPrice(), Types.NUMERIC);
+                        }
+                    },
+                    (RowCallbackHandler) rs -> inserted.add(BOOK_ROW_MAPPER.mapRow(rs, inserted.size())));
+        }
+        return inserted;
+    }
+
+    @Override
+    public Optional<Book> insertIfAbsent(Book book) {
+        List<Book> inserted = jdbcTemplate.query(
+                "INSERT INTO books (" + INSERT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, " + INSERT_DEFAULTS + ") " +
+                        "ON CONFLICT (vendor_code) DO NOTHING RETURNING " + BOOK_COLUMNS,
+                ps -> {
+                    ps.setString(1, book.getVendorCode());
+                    ps.setString(2, book.getTitle());
+                    ps.setString(3, book.getBrand());
+                    ps.setInt(4, book.getYear());
+                    ps.setObject(5, book.getStock(), Types.INTEGER);
+                    ps.setObject(6, book.getPrice(), Types.NUMERIC);
+                },
+                BOOK_ROW_MAPPER);
+        return inserted.stream().findFirst();
+    }
+
+    @Override
+    public Optional<Book> patch(Long id, Book changes, Collection<Long> expectedVersions) {
+        // В SET попадают только переданные поля, остальные колонки не перезаписываются
+        Map<String, Object> columns = new LinkedHashMap<>();
+        putIfNotNull(columns, "vendor_code", changes.getVendorCode());
+        putIfNotNull(columns, "title", changes.getTitle());
+        putIfNotNull(columns, "brand", changes.getBrand());
+        putIfNotNull(columns, "year", changes.getYear());
+        putIfNotNull(columns, "stock", changes.getStock());
+        putIfNotNull(columns, "price", changes.getPrice());
+
+        StringBuilder sql = new StringBuilder("UPDATE books SET ");
+        columns.keySet().forEach(column -> sql.append(column).append(" = ?, "));
+        sql.append("updated_at = LOCALTIMESTAMP, version = version + 1 WHERE id = ?");
+        if (expectedVersions != null) {
+            sql.append(" AND version = ANY (?)");
+        }
+        sql.append(" RETURNING ").append(BOOK_COLUMNS);
+
+        List<Book> updated = jdbcTemplate.query(sql.toString(),
+                ps -> {
+                    int i = 1;
+                    for (Object value : columns.values()) {
+                        ps.setObject(i++, value);
+                    }
+                    ps.setLong(i++, id);
+                    if (expectedVersions != null) {
+                        Array versions = ps.getConnection().createArrayOf("bigint", expectedVersions.toArray());
+                        ps.setArray(i, versions);
+                    }
+                },
+                BOOK_ROW_MAPPER);
+        return updated.stream().findFirst();
+    }
+
+    @Override
+    public Optional<Long> findVersionById(Long id) {
+        return jdbcTemplate.queryForList("SELECT version FROM books WHERE id = ?", Long.class, id).stream().findFirst();
+    }
+
+    @Override
+    public long countByFilter(BookFilterDto filter) {
+        List<Object> args = new ArrayList<>();
+        String where = filterCondition(filter, args);
+        Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM books WHERE " + where, Long.class, args.toArray());
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public int updateByFilter(BookFilterDto filter, BigDecimal pricePercent, Integer stock, Consumer<Book> updated) {
+        // Один UPDATE на весь отбор: без выборки id и без построчных запросов из приложения
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("UPDATE books SET ");
+        if (pricePercent != null) {
+            sql.append("price = round(price * (100 + ?) / 100, 2), ");
+            args.add(pricePercent);
+        }
+        if (stock != null) {
+            sql.append("stock = ?, ");
+            args.add(stock);
+        }
+        sql.append("updated_at = LOCALTIMESTAMP, version = version + 1 WHERE ").append(filterCondition(filter, args));
+        if (updated == null) {
+            return jdbcTemplate.update(sql.toString(), args.toArray());
+        }
+        sql.append(" RETURNING ").append(BOOK_COLUMNS);
+        int[] count = {0};
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> updated.accept(BOOK_ROW_MAPPER.mapRow(rs, count[0]++)),
+                args.toArray());
+        return count[0];
+    }
+
+    @Override
+    public int deleteByFilter(BookFilterDto filter, Consumer<Long> deleted) {
+        List<Object> args = new ArrayList<>();
+        String sql = "DELETE FROM books WHERE " + filterCondition(filter, args);
+        if (deleted == null) {
+            return jdbcTemplate.update(sql, args.toArray());
+        }
+        int[] count = {0};
+        jdbcTemplate.query(sql + " RETURNING id", (RowCallbackHandler) rs -> {
+            deleted.accept(rs.getLong("id"));
+            count[0]++;
+        }, args.toArray());
+        return count[0];
+    }
+
+    @Override
+    public long copyCsv(BookFilterDto filter, OutputStream out) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            // Выгрузка идет вне транзакции: признак readOnly до первого запроса отправляет ее на реплику, если они есть
+            connection.setReadOnly(true);
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            // COPY не принимает параметры запроса: значения фильтра подставляются литералами, экранированными драйвером
+            List<Object> args = new ArrayList<>();
+            String condition = filterCondition(filter, args);
+            StringBuilder where = new StringBuilder();
+            int arg = 0;
+            for (char c : condition.toCharArray()) {
+                if (c == '?') {
+                    Object value = args.get(arg++);
+                    where.append(value instanceof String text ? "'" + pgConnection.escapeLiteral(text) + "'" : value);
+                } else {
+                    where.append(c);
+                }
+            }
+            String sql = "COPY (SELECT " + CSV_COLUMNS + " FROM books WHERE " + where + " ORDER BY id) " +
+                    "TO STDOUT WITH (FORMAT csv, HEADER true)";
+            try {
+                return pgConnection.getCopyAPI().copyOut(sql, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public BookFacetsDto findFacets(BookFilterDto filter, int limit, int sampleSize) {
+        List<Object> args = new ArrayList<>();
+        String condition = filterCondition(filter, args);
+        if (!StringUtils.hasLength(filter.getTitle())) {
+            // Остальные условия фильтра — по brand и year, они есть в витрине
+            Object[] limitedArgs = Stream.concat(args.stream(), Stream.of(limit)).toArray();
+            List<FacetCountDto<String>> brands = jdbcTemplate.query(
+                    "SELECT brand, sum(books) AS books FROM books_facets WHERE " + condition +
+                            " GROUP BY brand ORDER BY books DESC, brand LIMIT ?",
+                    (rs, rowNum) -> new FacetCountDto<>(rs.getString("brand"), rs.getLong("books")), limitedArgs);
+            List<FacetCountDto<Integer>> years = jdbcTemplate.query(
+                    "SELECT year, sum(books) AS books FROM books_facets WHERE " + condition +
+                            " GROUP BY year ORDER BY books DESC, year LIMIT ?",
+                    (rs, rowNum) -> new FacetCountDto<>(rs.getInt("year"), rs.getLong("books")), limitedArgs);
+            return new BookFacetsDto(brands, years, false);
+        }
+        args.add(sampleSize);
+        Map<String, Long> brandCounts = new HashMap<>();
+        Map<Integer, Long> yearCounts = new HashMap<>();
+        jdbcTemplate.query("WITH matched AS MATERIALIZED (SELECT brand, year FROM books WHERE " + condition + " LIMIT ?) " +
+                        "SELECT brand, NULL::int AS year, count(*) AS books FROM matched GROUP BY brand " +
+                        "UNION ALL SELECT NULL, year, count(*) FROM matched GROUP BY year",
+                rs -> {
+                    if (rs.getString("brand") != null) {
+                        brandCounts.put(rs.getString("brand"), rs.getLong("books"));
+                    } else {
+                        yearCounts.put(rs.getInt("year"), rs.getLong("books"));
+                    }
+                }, args.toArray());
+        long matched = brandCounts.values().stream().mapToLong(Long::longValue).sum();
+        return new BookFacetsDto(topFacets(brandCounts, limit), topFacets(yearCounts, limit), matched >= sampleSize);
+    }
+
+    @Override
+    public void refreshFacets() {
+        jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY books_facets");
+    }
+
+    @Override
+    public void forEachTitleCount(ObjIntConsumer<String> action) {
+        forEachValueCount("title", action);
+    }
+
+    @Override
+    public void forEachBrandCount(ObjIntConsumer<String> action) {
+        forEachValueCount("brand", action);
+    }
+
+    private void forEachValueCount(String column, ObjIntConsumer<String> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + column + " AS value, count(*) AS books FROM books GROUP BY " + column);
+            statement.setFetchSize(CURSOR_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> action.accept(rs.getString("value"), rs.getInt("books")));
+    }
+
+    @Override
+    public void forEachBookDto(LocalDateTime changedSince, Consumer<BookDto> action) {
+        forEachBookDto("SELECT " + BOOK_COLUMNS + " FROM books" + (changedSince == null ? "" : " WHERE updated_at > ?"),
+                changedSince, action);
+    }
+
+    @Override
+    public void forEachBookDtoInListOrder(Consumer<BookDto> action) {
+        forEachBookDto("SELECT " + BOOK_COLUMNS + " FROM books ORDER BY title, id", null, action);
+    }
+
+    private void forEachBookDto(String sql, LocalDateTime changedSince, Consumer<BookDto> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            if (changedSince != null) {
+                statement.setObject(1, changedSince);
+            }
+            statement.setFetchSize(CURSOR_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> action.accept(new BookDto(rs.getLong("id"), rs.getString("vendor_code"),
+                rs.getString("title"), rs.getString("brand"), rs.getInt("year"), rs.getObject("stock", Integer.class),
+                rs.getBigDecimal("price"), rs.getObject("updated_at", LocalDateTime.class), rs.getLong("version"))));
+    }
+
+    @Override
+    public void forEachDeletion(LocalDateTime deletedSince, BiConsumer<Long, LocalDateTime> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT book_id, deleted_at FROM books_deletions" +
+                    (deletedSince == null ? "" : " WHERE deleted_at > ?"));
+            if (deletedSince != null) {
+                statement.setObject(1, deletedSince);
+            }
+            statement.setFetchSize(CURSOR_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> action.accept(rs.getLong("book_id"), rs.getObject("deleted_at", LocalDateTime.class)));
+    }
+
+    @Override
+    public int countTitlesBefore(List<String> titles, String title) {
+        // Правило сравнения подставляется в текст запроса: у параметров своего правила нет
+        Integer before = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT count(*) FROM unnest(CAST(? AS text[])) AS probe(title) WHERE probe.title < CAST(? AS text) COLLATE "
+                            + titleCollation());
+            statement.setArray(1, connection.createArrayOf("text", titles.toArray()));
+            statement.setString(2, title);
+            return statement;
+        }, rs -> rs.next() ? rs.getInt(1) : 0);
+        return before == null ? 0 : before;
+    }
+
+    private String titleCollation() {
+        String collation = titleCollation;
+        if (collation == null) {
+            collation = jdbcTemplate.queryForObject(TITLE_COLLATION_SQL, String.class);
+            titleCollation = collation;
+        }
+        return collation;
+    }
+
+    @Override
+    public void forEachChange(BookChangeCursor since, int limit, BiConsumer<BookChangeCursor, BookChangeDto> action) {
+        jdbcTemplate.query(CHANGES_SQL,
+                ps -> {
+                    ps.setString(1, Long.toString(since.xid()));
+                    ps.setLong(2, since.seq());
+                    ps.setInt(3, limit);
+                    ps.setString(4, Long.toString(since.xid()));
+                    ps.setLong(5, since.seq());
+                    ps.setInt(6, limit);
+                    ps.setInt(7, limit);
+                },
+                (RowCallbackHandler) rs -> {
+                    BookChangeCursor position = new BookChangeCursor(Long.parseLong(rs.getString("change_xid")),
+                            rs.getLong("change_seq"));
+                    LocalDateTime changedAt = rs.getObject("changed_at", LocalDateTime.class);
+                    if (rs.getBoolean("deleted")) {
+                        action.accept(position, new BookChangeDto(BookChangeDto.Type.DELETED, rs.getLong("id"),
+                                rs.getString("vendor_code"), null, changedAt));
+                        return;
+                    }
+                    BookDto book = new BookDto(rs.getLong("id"), rs.getString("vendor_code"), rs.getString("title"),
+                            rs.getString("brand"), rs.getInt("year"), rs.getObject("stock", Integer.class),
+                            rs.getBigDecimal("price"), changedAt, rs.getLong("version"));
+                    // Версия 0 — книга не менялась после вставки
+                    BookChangeDto.Type type = book.getVersion() == 0 ? BookChangeDto.Type.CREATED : BookChangeDto.Type.UPDATED;
+                    action.accept(position, new BookChangeDto(type, book.getId(), book.getVendorCode(), book, changedAt));
+                });
+    }
+
+    @Override
+    public BookChangeCursor findChangesHorizon() {
+        return jdbcTemplate.queryForObject(
+                "SELECT changes_horizon_xid::text AS xid, changes_horizon_seq AS seq FROM books_catalog_state WHERE id = 1",
+                (rs, rowNum) -> new BookChangeCursor(Long.parseLong(rs.getString("xid")), rs.getLong("seq")));
+    }
+
+    @Override
+    public double findOldestWriteTransactionAge() {
+        Double age = jdbcTemplate.queryForObject(OLDEST_WRITE_TRANSACTION_SQL, Double.class);
+        return age == null ? 0 : Math.max(age, 0);
+    }
+
+    @Override
+    public int purgeDeletions(Duration retention) {
+        Integer purged = jdbcTemplate.queryForObject(PURGE_DELETIONS_SQL, Integer.class, retention.toSeconds());
+        return purged == null ? 0 : purged;
+    }
+
+    @Override
+    public Optional<Book> decrementStock(Long id, int quantity) {
+        // Проверка остатка и списание в одном операторе: блокировка строки держится только до коммита,
+        // конкурентные покупатели не теряют обновления и не читают строку заранее
+        List<Book> updated = jdbcTemplate.query(DECREMENT_STOCK_SQL + " RETURNING " + BOOK_COLUMNS,
+                ps -> {
+                    ps.setInt(1, quantity);
+                    ps.setLong(2, id);
+                    ps.setInt(3, quantity);
+                },
+                BOOK_ROW_MAPPER);
+        return updated.stream().findFirst();
+    }
+
+    @Override
+    public List<Book> decrementStocks(SortedMap<Long, Integer> quantities) {
+        // Строки блокируются в порядке возрастания id, поэтому встречные пакеты не взаимоблокируются.
+        // Измененные строки драйвер отдает как сгенерированные ключи пакета (RETURNING по каждому UPDATE)
+        return jdbcTemplate.execute((ConnectionCallback<List<Book>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(DECREMENT_STOCK_SQL, BOOK_COLUMN_NAMES)) {
+                for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                    statement.setInt(1, entry.getValue());
+                    statement.setLong(2, entry.getKey());
+                    statement.setInt(3, entry.getValue());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                List<Book> updated = new ArrayList<>(quantities.size());
+                try (ResultSet rs = statement.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        updated.add(BOOK_ROW_MAPPER.mapRow(rs, updated.size()));
+                    }
+                }
+                return updated;
+            }
+        });
+    }
+
+    //Условия как в BookRepository.findByFilters: подстрока без учета регистра в title/brand, точный год.
+    //%, _ и \ в значении экранируются: DELETE по title=% не должен задеть весь каталог
+    private static String filterCondition(BookFilterDto filter, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        if (StringUtils.hasLength(filter.getTitle())) {
+            conditions.add("title ILIKE ? ESCAPE '\\'");
+            args.add(LikePattern.contains(filter.getTitle()));
+        }
+        if (StringUtils.hasLength(filter.getBrand())) {
+            conditions.add("brand ILIKE ? ESCAPE '\\'");
+            args.add(LikePattern.contains(filter.getBrand()));
+        }
+        if (filter.getYear() != null) {
+            conditions.add("year = ?");
+            args.add(filter.getYear());
+        }
+        if (filter.getYearFrom() != null) {
+            conditions.add("year >= ?");
+            args.add(filter.getYearFrom());
+        }
+        if (filter.getYearTo() != null) {
+            conditions.add("year <= ?");
+            args.add(filter.getYearTo());
+        }
+        return conditions.isEmpty() ? "TRUE" : String.join(" AND ", conditions);
+    }
+
+    private static <T extends Comparable<T>> List<FacetCountDto<T>> topFacets(Map<T, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<T, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(entry -> new FacetCountDto<>(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    private static void putIfNotNull(Map<String, Object> columns, String column, Object value) {
+        if (value != null) {
+            columns.put(column, value);
+        }
+    }
+
+    private static String multiRowInsertSql(int rows) {
+        return "INSERT INTO books (" + INSERT_COLUMNS + ") VALUES " +
+                Stream.generate(() -> "(?, ?, ?, ?, ?, ?, " + INSERT_DEFAULTS + ")").limit(rows).collect(Collectors.joining(", ")) +
+                " ON CONFLICT (vendor_code) DO NOTHING RETURNING " + BOOK_COLUMNS;
+    }
+}
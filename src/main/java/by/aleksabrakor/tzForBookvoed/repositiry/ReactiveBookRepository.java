@@ -0,0 +1,31 @@
+package by.aleksabrakor.tzForBookvoed.repositiry;
+
+import by.aleksabrakor.tzForBookvoed.entity.BookRow;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface ReactiveBookRepository extends ReactiveCrudRepository<BookRow, Long>, ReactiveBookRepositoryCustom {
+
+    String BOOK_COLUMNS = "id, vendor_code, title, brand, year, stock, price, updated_at, version";
+
+    Mono<BookRow> findByVendorCode(String vendorCode);
+
+    //Как BookRepositoryCustom.insertIfAbsent: уникальность vendorCode проверяет сам INSERT, при конфликте — пустой Mono
+    //version и отметки времени задаются явно: схема из ddl-auto не знает значений по умолчанию из миграций
+    @Query("INSERT INTO books (vendor_code, title, brand, year, stock, price, created_at, updated_at, version) " +
+            "VALUES (:vendorCode, :title, :brand, :year, :stock, :price, LOCALTIMESTAMP, LOCALTIMESTAMP, 0) " +
+            "ON CONFLICT (vendor_code) DO NOTHING RETURNING " + BOOK_COLUMNS)
+    Mono<BookRow> insertIfAbsent(
+            @Param("vendorCode") String vendorCode,
+            @Param("title") String title,
+            @Param("brand") String brand,
+            @Param("year") Integer year,
+            @Param("stock") Integer stock,
+            @Param("price") BigDecimal price);
+}
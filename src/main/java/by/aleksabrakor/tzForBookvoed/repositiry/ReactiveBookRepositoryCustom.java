@@ -0,0 +1,11 @@
+package by.aleksabrakor.tzForBookvoed.repositiry;
+
+import by.aleksabrakor.tzForBookvoed.entity.BookRow;
+import reactor.core.publisher.Flux;
+
+public interface ReactiveBookRepositoryCustom {
+
+    //Фильтры как в BookRepository.findDtoByFilters, порядок по id, продолжение выгрузки — с after.
+    //Строки читаются порциями по fetchSize: отмена подписки закрывает портал, а не дочитывает весь результат
+    Flux<BookRow> findByFilters(String title, String brand, Integer year, long after, Long limit, int fetchSize);
+}
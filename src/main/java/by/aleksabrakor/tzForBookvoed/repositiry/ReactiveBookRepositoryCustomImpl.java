@@ -0,0 +1,49 @@
+package by.aleksabrakor.tzForBookvoed.repositiry;
+
+import by.aleksabrakor.tzForBookvoed.entity.BookRow;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+public class ReactiveBookRepositoryCustomImpl implements ReactiveBookRepositoryCustom {
+
+    private static final String FIND_BY_FILTERS_SQL = "SELECT " + ReactiveBookRepository.BOOK_COLUMNS +
+            " FROM books WHERE id > :after AND " +
+            "(:title::text IS NULL OR title ILIKE '%' || :title || '%') AND " +
+            "(:brand::text IS NULL OR brand ILIKE '%' || :brand || '%') AND " +
+            "(:year::int IS NULL OR year = :year) " +
+            "ORDER BY id LIMIT :limit";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<BookRow> findByFilters(String title, String brand, Integer year, long after, Long limit, int fetchSize) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(FIND_BY_FILTERS_SQL)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .bind("after", after);
+        spec = title == null ? spec.bindNull("title", String.class) : spec.bind("title", title);
+        spec = brand == null ? spec.bindNull("brand", String.class) : spec.bind("brand", brand);
+        spec = year == null ? spec.bindNull("year", Integer.class) : spec.bind("year", year);
+        spec = limit == null ? spec.bindNull("limit", Long.class) : spec.bind("limit", limit);
+        return spec.map(ReactiveBookRepositoryCustomImpl::toBookRow).all();
+    }
+
+    private static BookRow toBookRow(Readable row) {
+        BookRow book = new BookRow();
+        book.setId(row.get("id", Long.class));
+        book.setVendorCode(row.get("vendor_code", String.class));
+        book.setTitle(row.get("title", String.class));
+        book.setBrand(row.get("brand", String.class));
+        book.setYear(row.get("year", Integer.class));
+        book.setStock(row.get("stock", Integer.class));
+        book.setPrice(row.get("price", BigDecimal.class));
+        book.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        book.setVersion(row.get("version", Long.class));
+        return book;
+    }
+}
@@ -0,0 +1,51 @@
+package by.aleksabrakor.tzForBookvoed.security;
+
+import by.aleksabrakor.tzForBookvoed.dto.TokenResponseDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+//Выдача подписанных HS256 токенов для api/**: пароль (BCrypt) проверяется один раз при входе,
+//дальше каждый запрос проверяет только HMAC-подпись токена
+@Service
+public class TokenService {
+
+    public static final String ROLES_CLAIM = "roles";
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final JwtEncoder jwtEncoder;
+    private final Duration tokenTtl;
+
+    public TokenService(JwtEncoder jwtEncoder, @Value("${books.auth.token-ttl:1h}") Duration tokenTtl) {
+        this.jwtEncoder = jwtEncoder;
+        this.tokenTtl = tokenTtl;
+    }
+
+    public TokenResponseDto issueToken(Authentication authentication) {
+        Instant now = Instant.now();
+        List<String> roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith(ROLE_PREFIX))
+                .map(authority -> authority.substring(ROLE_PREFIX.length()))
+                .toList();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject(authentication.getName())
+                .issuedAt(now)
+                .expiresAt(now.plus(tokenTtl))
+                .claim(ROLES_CLAIM, roles)
+                .build();
+        String token = jwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims))
+                .getTokenValue();
+        return new TokenResponseDto(token, "Bearer", tokenTtl.toSeconds());
+    }
+}
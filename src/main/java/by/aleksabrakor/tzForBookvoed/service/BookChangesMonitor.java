@@ -0,0 +1,59 @@
+package by.aleksabrakor.tzForBookvoed.service;
+
+import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Задержка ленты api/books/changes. Лента отдает изменения только транзакций старше самой старой
+ * незавершенной пишущей транзакции, поэтому одна долгая транзакция (в том числе чужая, в обход приложения)
+ * останавливает ленту для всех клиентов. Возраст такой транзакции публикуется метрикой
+ * books.changes.oldest_transaction_age и пишется в лог, когда превышает books.changes.stall-warning.
+ */
+@Service
+@Slf4j
+public class BookChangesMonitor {
+
+    private final BookRepository bookRepository;
+    private final Duration stallWarning;
+
+    private volatile double oldestTransactionAge;
+
+    public BookChangesMonitor(BookRepository bookRepository,
+                              @Value("${books.changes.stall-warning:1m}") Duration stallWarning,
+                              MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+        this.stallWarning = stallWarning;
+        Gauge.builder("books.changes.oldest_transaction_age", this, monitor -> monitor.oldestTransactionAge)
+                .baseUnit("seconds")
+                .description("Возраст самой старой незавершенной пишущей транзакции: на столько может отставать лента изменений")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${books.changes.stall-check-interval:15s}")
+    public void check() {
+        double age;
+        try {
+            age = bookRepository.findOldestWriteTransactionAge();
+        } catch (DataAccessException e) {
+            log.warn("Не удалось проверить задержку ленты изменений: {}", e.getMostSpecificCause().getMessage());
+            return;
+        }
+        oldestTransactionAge = age;
+        if (age >= stallWarning.toSeconds()) {
+            log.warn("Лента изменений стоит {} с: незавершенная транзакция держит pg_snapshot_xmin, "
+                    + "см. pg_stat_activity (backend_xid) и pg_prepared_xacts", (long) age);
+        }
+    }
+
+    public double getOldestTransactionAge() {
+        return oldestTransactionAge;
+    }
+}
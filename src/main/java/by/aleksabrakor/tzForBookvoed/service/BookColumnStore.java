@@ -0,0 +1,565 @@
+package by.aleksabrakor.tzForBookvoed.service;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.util.BookColumns;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+
+/**
+ * Необязательный движок списков в памяти (books.columnar.enabled): каталог лежит в BookColumns, и страницы
+ * по title, brand и year собираются без SQL. Порядок ORDER BY title, id задает сам PostgreSQL по правилу сравнения
+ * колонки title: снимок загружается уже упорядоченным, названия получают ранги, и в памяти сравниваются только ранги.
+ * Поверх снимка — дельта с книгами, измененными после его построения: записи BookService, в том числе массовые,
+ * попадают в нее после коммита строками из RETURNING, изменения в обход приложения — при плановом догоне
+ * по updated_at и books_deletions.
+ * Новому или измененному названию ранг подбирает догон, сравнивая его с соседями в PostgreSQL; до этого списки
+ * идут в базу. Удаленные id помнятся не меньше catch-up-overlap, и запоздавшая запись удаленную книгу не вернет.
+ * Большая дельта сливается в новый снимок. Пока каталог не загружен, запросы идут в PostgreSQL.
+ */
+@Service
+@Slf4j
+public class BookColumnStore {
+
+    //Названий снимка в одном запросе сравнения: место среди 500 тысяч строк находится за три запроса
+    private static final int PROBES = 512;
+
+    private static final Comparator<Row> ROW_ORDER =
+            (left, right) -> BookColumns.compare(left.rank(), left.book().getId(), right.rank(), right.book().getId());
+
+    private final BookRepository bookRepository;
+    private final boolean enabled;
+    private final Duration catchUpOverlap;
+    private final int maxDelta;
+    private final Object catchUpLock = new Object();
+    private final Counter servedFromMemory;
+    private final Counter servedFromDatabase;
+
+    // null — каталог еще не загружен
+    private volatile State state;
+    private volatile boolean unsupported;
+    // Изменения, пришедшие во время загрузки или слияния: повторяются на новом снимке
+    private List<Change> pendingChanges;
+    // Удаленные id и System.nanoTime() удаления; как и pendingChanges, под монитором this
+    private final Map<Long, Long> deletedIds = new HashMap<>();
+    // Наибольшие updated_at и deleted_at из прочитанных строк
+    private LocalDateTime watermark;
+
+    public BookColumnStore(BookRepository bookRepository,
+                           @Value("${books.columnar.enabled:false}") boolean enabled,
+                           @Value("${books.columnar.catch-up-overlap:1m}") Duration catchUpOverlap,
+                           @Value("${books.columnar.max-delta:10000}") int maxDelta,
+                           MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+        this.enabled = enabled;
+        this.catchUpOverlap = catchUpOverlap;
+        this.maxDelta = maxDelta;
+        this.servedFromMemory = Counter.builder("books.columnar.queries")
+                .tag("source", "memory")
+                .description("Списки книг по источнику при включенном движке в памяти")
+                .register(meterRegistry);
+        this.servedFromDatabase = Counter.builder("books.columnar.queries")
+                .tag("source", "database")
+                .description("Списки книг по источнику при включенном движке в памяти")
+                .register(meterRegistry);
+        Gauge.builder("books.columnar.rows", this, store -> store.state == null ? 0 : store.state.size())
+                .description("Книги в каталоге в памяти")
+                .register(meterRegistry);
+        Gauge.builder("books.columnar.memory", this, store -> store.state == null ? 0 : store.state.snapshot().memoryBytes())
+                .baseUnit("bytes")
+                .description("Память снимка каталога в памяти")
+                .register(meterRegistry);
+    }
+
+    public Optional<Page<BookDto>> findPage(String title, String brand, Integer year, Pageable pageable) {
+        State current = serving(state, title, brand, true);
+        if (current == null) {
+            return Optional.empty();
+        }
+        BookColumns.Filter filter = current.snapshot().filter(title, brand, year);
+        List<BookDto> content = current.rows(filter, null, pageable.getOffset(), pageable.getPageSize());
+        return Optional.of(new PageImpl<>(content, pageable, current.count(filter)));
+    }
+
+    public Optional<Slice<BookDto>> findSlice(String title, String brand, Integer year, Pageable pageable) {
+        State current = serving(state, title, brand, true);
+        if (current == null) {
+            return Optional.empty();
+        }
+        BookColumns.Filter filter = current.snapshot().filter(title, brand, year);
+        // Как и Spring Data, берем на одну запись больше, чтобы узнать о наличии следующей страницы
+        List<BookDto> books = current.rows(filter, null, pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = books.size() > pageable.getPageSize();
+        return Optional.of(new SliceImpl<>(hasNext ? books.subList(0, pageable.getPageSize()) : books, pageable, hasNext));
+    }
+
+    //Первые limit книг в порядке (title, id) после (afterTitle, afterId); afterTitle == null — с начала.
+    //Ранг afterTitle известен, только если книга afterId еще с этим названием, иначе запрос идет в базу
+    public Optional<List<BookDto>> findAfter(String title, String brand, Integer year,
+                                             String afterTitle, Long afterId, int limit) {
+        State current = state;
+        OptionalLong afterRank = current == null || afterTitle == null ? OptionalLong.empty()
+                : current.rankOf(afterId, afterTitle);
+        current = serving(current, title, brand, afterTitle == null || afterRank.isPresent());
+        if (current == null) {
+            return Optional.empty();
+        }
+        After after = afterTitle == null ? null : new After(afterRank.getAsLong(), afterId);
+        return Optional.of(current.rows(current.snapshot().filter(title, brand, year), after, 0, limit));
+    }
+
+    //Каталог включен и загружен: только тогда записи BookService стоит собирать для него строки
+    public boolean isActive() {
+        return enabled && state != null;
+    }
+
+    public void bookSaved(BookDto book) {
+        apply(List.of(Change.saved(book)), Map.of());
+    }
+
+    //Строки, которые вернула сама запись (RETURNING): без повторного чтения из базы
+    public void booksSaved(List<BookDto> books) {
+        apply(books.stream().map(Change::saved).toList(), Map.of());
+    }
+
+    public void bookDeleted(Long bookId) {
+        apply(List.of(Change.deleted(bookId)), Map.of());
+    }
+
+    public void booksDeleted(List<Long> bookIds) {
+        apply(bookIds.stream().map(Change::deleted).toList(), Map.of());
+    }
+
+    //Загрузка при старте, затем догон изменений в обход BookService и ранги новых названий.
+    //Отдельная транзакция на primary: после записи догон не должен читать отстающую реплику
+    @Scheduled(fixedDelayString = "${books.columnar.catch-up-interval:5s}")
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void refresh() {
+        if (!enabled || unsupported) {
+            return;
+        }
+        synchronized (catchUpLock) {
+            if (state == null) {
+                load();
+            } else {
+                catchUpChanges();
+                compactIfNeeded();
+            }
+        }
+    }
+
+    //Книги с еще не размещенными названиями видны только базе: пока их нет в памяти, отвечает она
+    private State serving(State current, String title, String brand, boolean positioned) {
+        if (!enabled) {
+            return null;
+        }
+        if (current == null || !current.delta().unplaced().isEmpty() || !positioned
+                || !BookColumns.supports(title) || !BookColumns.supports(brand)) {
+            servedFromDatabase.increment();
+            return null;
+        }
+        servedFromMemory.increment();
+        return current;
+    }
+
+    private void load() {
+        if (!bookRepository.isTitleCollationDeterministic()) {
+            unsupported = true;
+            log.warn("Каталог в памяти не используется: у title недетерминированное правило сравнения, "
+                    + "равные для PostgreSQL названия не отличить от разных");
+            return;
+        }
+        long started = System.nanoTime();
+        synchronized (this) {
+            pendingChanges = new ArrayList<>();
+        }
+        try {
+            // Строки приходят в порядке ORDER BY title, id: ранг растет при каждой смене названия
+            BookColumns.Builder builder = BookColumns.builder();
+            String[] previousTitle = {null};
+            long[] rank = {0};
+            bookRepository.forEachBookDtoInListOrder(book -> {
+                if (!book.getTitle().equals(previousTitle[0])) {
+                    previousTitle[0] = book.getTitle();
+                    rank[0]++;
+                }
+                builder.add(book, rank[0]);
+                advanceWatermark(book.getUpdatedAt());
+            });
+            publish(builder.build(), List.of());
+        } finally {
+            synchronized (this) {
+                pendingChanges = null;
+            }
+        }
+        log.info("Каталог в памяти загружен за {} мс: {} книг, {} КБ", (System.nanoTime() - started) / 1_000_000,
+                state.size(), state.snapshot().memoryBytes() / 1024);
+    }
+
+    private void catchUpChanges() {
+        // updated_at и deleted_at — время начала транзакции (или часы приложения у JPA): перекрытие подбирает
+        // строки долгих транзакций, закоммиченных после прошлого догона. Уже учтенные версии повторно не применяются,
+        // повторное удаление ничего не меняет
+        LocalDateTime since = watermark == null ? null : watermark.minus(catchUpOverlap);
+        List<Change> changes = new ArrayList<>();
+        bookRepository.forEachBookDto(since, book -> {
+            changes.add(Change.saved(book));
+            advanceWatermark(book.getUpdatedAt());
+        });
+        // Удаления после чтения книг: книга, удаленная между двумя запросами, уйдет сейчас, а не при следующем догоне
+        bookRepository.forEachDeletion(since, (id, deletedAt) -> {
+            changes.add(Change.deleted(id));
+            advanceWatermark(deletedAt);
+        });
+        apply(changes, Map.of());
+        forgetDeletions();
+        placeTitles();
+    }
+
+    //Удаленный id нужен, пока возможна запоздавшая запись: дольше перекрытия догона ее не бывает
+    private synchronized void forgetDeletions() {
+        long now = System.nanoTime();
+        deletedIds.values().removeIf(deletedAt -> now - deletedAt > catchUpOverlap.toNanos());
+    }
+
+    //Ранги новых и измененных названий. Пока свободных рангов между соседями хватает, снимок не перестраивается
+    private void placeTitles() {
+        while (true) {
+            State current = state;
+            if (current.delta().unplaced().isEmpty()) {
+                return;
+            }
+            NavigableMap<Long, String> known = new TreeMap<>();
+            current.delta().rows().values().forEach(row -> known.put(row.rank(), row.book().getTitle()));
+            Map<String, Long> placed = new HashMap<>();
+            List<Change> changes = new ArrayList<>();
+            boolean exhausted = false;
+            try {
+                for (Change change : current.delta().unplaced().values()) {
+                    String title = change.book().getTitle();
+                    if (!placed.containsKey(title)) {
+                        OptionalLong rank = place(current.snapshot(), known, title);
+                        if (rank.isEmpty()) {
+                            exhausted = true;
+                            break;
+                        }
+                        placed.put(title, rank.getAsLong());
+                        known.put(rank.getAsLong(), title);
+                    }
+                    changes.add(change);
+                }
+            } catch (DataAccessException e) {
+                // Книги без ранга остаются в дельте, списки до следующего догона идут в базу
+                log.warn("Ранги новых названий каталога в памяти не подобраны: {}", e.getMostSpecificCause().getMessage());
+                return;
+            }
+            apply(changes, placed);
+            if (!exhausted) {
+                return;
+            }
+            // Новый снимок раздает ранги заново через BookColumns.RANK_STEP
+            compact();
+        }
+    }
+
+    //Ранг title: место среди строк снимка ищется по PROBES названий за запрос, затем среди названий дельты
+    //между теми же соседями. Сравнивает PostgreSQL. Пустой результат — между соседями не осталось свободных рангов
+    private OptionalLong place(BookColumns snapshot, NavigableMap<Long, String> known, String title) {
+        // Первая позиция снимка с названием не меньше title лежит в [low, high]
+        int low = 0;
+        int high = snapshot.size();
+        while (low < high) {
+            int step = (high - low + PROBES - 1) / PROBES;
+            List<String> probes = new ArrayList<>(PROBES);
+            for (int position = low; position < high; position += step) {
+                probes.add(snapshot.title(position));
+            }
+            int before = bookRepository.countTitlesBefore(probes, title);
+            if (before == 0) {
+                break;
+            }
+            int next = low + (before - 1) * step + 1;
+            high = Math.min(high, low + before * step);
+            low = next;
+        }
+        if (low < snapshot.size() && snapshot.hasTitle(low, title)) {
+            return OptionalLong.of(snapshot.rank(low));
+        }
+        long lower = low > 0 ? snapshot.rank(low - 1) : 0;
+        long upper = low < snapshot.size() ? snapshot.rank(low) : Long.MAX_VALUE;
+        NavigableMap<Long, String> between = known.subMap(lower, false, upper, false);
+        if (!between.isEmpty()) {
+            for (Map.Entry<Long, String> entry : between.entrySet()) {
+                if (entry.getValue().equals(title)) {
+                    return OptionalLong.of(entry.getKey());
+                }
+            }
+            List<Long> ranks = new ArrayList<>(between.keySet());
+            int before = bookRepository.countTitlesBefore(new ArrayList<>(between.values()), title);
+            lower = before > 0 ? ranks.get(before - 1) : lower;
+            upper = before < ranks.size() ? ranks.get(before) : upper;
+        }
+        // В конце списка — шаг RANK_STEP, между соседями — середина
+        long rank = lower + Math.min((upper - lower) / 2, BookColumns.RANK_STEP);
+        return rank == lower ? OptionalLong.empty() : OptionalLong.of(rank);
+    }
+
+    private void compactIfNeeded() {
+        if (state.delta().rows().size() > maxDelta) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        long started = System.nanoTime();
+        synchronized (this) {
+            pendingChanges = new ArrayList<>();
+        }
+        try {
+            State current = state;
+            BookColumns snapshot = current.snapshot();
+            BookColumns.Builder builder = BookColumns.builder();
+            for (int position = 0; position < snapshot.size(); position++) {
+                if (!current.delta().superseded().get(position)) {
+                    builder.add(snapshot.row(position), snapshot.rank(position));
+                }
+            }
+            current.delta().sorted().forEach(row -> builder.add(row.book(), row.rank()));
+            publish(builder.build(), List.copyOf(current.delta().unplaced().values()));
+        } finally {
+            synchronized (this) {
+                pendingChanges = null;
+            }
+        }
+        log.info("Изменения каталога в памяти слиты в новый снимок за {} мс: {} книг",
+                (System.nanoTime() - started) / 1_000_000, state.size());
+    }
+
+    //Повтор уже учтенных изменений ничего не меняет: версия не растет, удаление уже выполнено.
+    //Книги без ранга переносятся в дельту нового снимка
+    private synchronized void publish(BookColumns snapshot, List<Change> unplaced) {
+        List<Change> changes = new ArrayList<>(unplaced);
+        changes.addAll(pendingChanges);
+        state = new State(snapshot, Delta.EMPTY).with(changes, Map.of(), deletedIds, System.nanoTime());
+        pendingChanges = null;
+    }
+
+    //placed — ранги названий, подобранные placeTitles для текущего снимка
+    private synchronized void apply(List<Change> changes, Map<String, Long> placed) {
+        if (!enabled || changes.isEmpty()) {
+            return;
+        }
+        if (pendingChanges != null) {
+            pendingChanges.addAll(changes);
+        }
+        if (state != null) {
+            state = state.with(changes, placed, deletedIds, System.nanoTime());
+        }
+    }
+
+    private void advanceWatermark(LocalDateTime changedAt) {
+        if (changedAt != null && (watermark == null || changedAt.isAfter(watermark))) {
+            watermark = changedAt;
+        }
+    }
+
+    //book == null — книга удалена
+    private record Change(long id, BookDto book) {
+
+        //Копия: BookDto изменяемый, а строка дельты отдается в ответы как есть
+        static Change saved(BookDto book) {
+            return new Change(book.getId(), new BookDto(book.getId(), book.getVendorCode(), book.getTitle(),
+                    book.getBrand(), book.getYear(), book.getStock(), book.getPrice(), book.getUpdatedAt(),
+                    book.getVersion()));
+        }
+
+        static Change deleted(long id) {
+            return new Change(id, null);
+        }
+    }
+
+    //Книга дельты и ранг ее названия
+    private record Row(BookDto book, long rank) {
+    }
+
+    //Продолжение keyset-пагинации: ранг названия и id последней книги прошлой страницы
+    private record After(long rank, long id) {
+    }
+
+    //Книги, измененные после построения снимка: rows по id, sorted — те же строки в порядке (rank, id),
+    //superseded — позиции снимка, которые они заменили или удалили; unplaced — записи, чьим названиям ранг
+    //еще не подобран
+    private record Delta(Map<Long, Row> rows, List<Row> sorted, BitSet superseded, Map<Long, Change> unplaced) {
+
+        static final Delta EMPTY = new Delta(Map.of(), List.of(), new BitSet(), Map.of());
+    }
+
+    private record State(BookColumns snapshot, Delta delta) {
+
+        int size() {
+            return snapshot.size() - delta.superseded().cardinality() + delta.rows().size();
+        }
+
+        //Новое состояние с изменениями; текущее не меняется и продолжает обслуживать начатые запросы.
+        //Ранг известен, если название не изменилось или есть в placed; иначе запись ждет в unplaced.
+        //deleted пополняется удалениями
+        State with(List<Change> changes, Map<String, Long> placed, Map<Long, Long> deleted, long now) {
+            Map<Long, Row> rows = new HashMap<>(delta.rows());
+            BitSet superseded = (BitSet) delta.superseded().clone();
+            Map<Long, Change> unplaced = new HashMap<>(delta.unplaced());
+            // Строки дельты, которые заменены или удалены, и новые строки: порядок sorted правится слиянием
+            Map<Long, Row> added = new HashMap<>();
+            boolean changed = false;
+            for (Change change : changes) {
+                Row current = rows.get(change.id());
+                int position = snapshot.position(change.id());
+                boolean inSnapshot = position >= 0 && !superseded.get(position);
+                if (change.book() == null) {
+                    changed |= rows.remove(change.id()) != null;
+                    added.remove(change.id());
+                    changed |= unplaced.remove(change.id()) != null;
+                    if (inSnapshot) {
+                        superseded.set(position);
+                        changed = true;
+                    }
+                    deleted.putIfAbsent(change.id(), now);
+                    continue;
+                }
+                // id из последовательности не переиспользуются: запись удаленной книги пришла позже удаления
+                if (deleted.containsKey(change.id())) {
+                    continue;
+                }
+                long version = change.book().getVersion();
+                Change waiting = unplaced.get(change.id());
+                long knownVersion = current != null ? current.book().getVersion() : inSnapshot ? snapshot.version(position) : -1;
+                if (version <= knownVersion || (waiting != null && version < waiting.book().getVersion())) {
+                    continue;
+                }
+                String title = change.book().getTitle();
+                Long rank = placed.get(title);
+                if (rank == null && current != null && current.book().getTitle().equals(title)) {
+                    rank = current.rank();
+                } else if (rank == null && position >= 0 && snapshot.hasTitle(position, title)) {
+                    rank = snapshot.rank(position);
+                }
+                if (rank == null) {
+                    unplaced.put(change.id(), change);
+                    changed = true;
+                    continue;
+                }
+                Row row = new Row(change.book(), rank);
+                rows.put(change.id(), row);
+                added.put(change.id(), row);
+                unplaced.remove(change.id());
+                if (position >= 0) {
+                    superseded.set(position);
+                }
+                changed = true;
+            }
+            if (!changed) {
+                return this;
+            }
+            return new State(snapshot, new Delta(rows, merge(rows, added), superseded, unplaced));
+        }
+
+        //Прежний порядок дельты без ушедших строк, слитый с отсортированными новыми: сортируются только новые
+        private List<Row> merge(Map<Long, Row> rows, Map<Long, Row> added) {
+            List<Row> fresh = new ArrayList<>(added.values());
+            fresh.sort(ROW_ORDER);
+            List<Row> sorted = new ArrayList<>(rows.size());
+            int j = 0;
+            for (Row row : delta.sorted()) {
+                if (rows.get(row.book().getId()) != row) {
+                    continue;
+                }
+                while (j < fresh.size() && ROW_ORDER.compare(fresh.get(j), row) < 0) {
+                    sorted.add(fresh.get(j++));
+                }
+                sorted.add(row);
+            }
+            sorted.addAll(fresh.subList(j, fresh.size()));
+            return sorted;
+        }
+
+        //Ранг названия книги id, если оно у нее сейчас такое
+        OptionalLong rankOf(long id, String title) {
+            Row row = delta.rows().get(id);
+            if (row != null) {
+                return row.book().getTitle().equals(title) ? OptionalLong.of(row.rank()) : OptionalLong.empty();
+            }
+            int position = snapshot.position(id);
+            return position >= 0 && !delta.superseded().get(position) && snapshot.hasTitle(position, title)
+                    ? OptionalLong.of(snapshot.rank(position)) : OptionalLong.empty();
+        }
+
+        long count(BookColumns.Filter filter) {
+            return snapshot.count(filter, delta.superseded())
+                    + delta.sorted().stream().map(Row::book).filter(filter::matches).count();
+        }
+
+        //Страница в порядке (title, id): подходящие строки снимка сливаются с подходящими строками дельты
+        List<BookDto> rows(BookColumns.Filter filter, After after, long skip, int limit) {
+            long total = (long) snapshot.size() + delta.rows().size();
+            if (skip >= total) {
+                return List.of();
+            }
+            int need = (int) Math.min(skip + limit, total);
+            int from = after == null ? 0 : snapshot.positionAfter(after.rank(), after.id());
+            int[] positions = snapshot.collect(from, filter, delta.superseded(), need);
+            List<Row> changed = new ArrayList<>();
+            for (Row row : delta.sorted()) {
+                if (changed.size() == need) {
+                    break;
+                }
+                if ((after == null || BookColumns.compare(row.rank(), row.book().getId(), after.rank(), after.id()) > 0)
+                        && filter.matches(row.book())) {
+                    changed.add(row);
+                }
+            }
+
+            List<BookDto> result = new ArrayList<>(Math.min(limit, need));
+            int i = 0;
+            int j = 0;
+            for (long index = 0; result.size() < limit && (i < positions.length || j < changed.size()); index++) {
+                boolean fromSnapshot = j == changed.size() || (i < positions.length
+                        && snapshot.compare(positions[i], changed.get(j).rank(), changed.get(j).book().getId()) < 0);
+                if (index < skip) {
+                    if (fromSnapshot) {
+                        i++;
+                    } else {
+                        j++;
+                    }
+                } else {
+                    result.add(fromSnapshot ? snapshot.row(positions[i++]) : changed.get(j++).book());
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package by.aleksabrakor.tzForBookvoed.service;
+
+import by.aleksabrakor.tzForBookvoed.config.CacheConfig;
+import by.aleksabrakor.tzForBookvoed.config.GenerationalCaffeineCache;
+import by.aleksabrakor.tzForBookvoed.config.ReplicaRoutingDataSource;
+import jakarta.servlet.ServletContext;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.web.IWebExchange;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.security.Principal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+//Готовый HTML таблицы и пагинации /books: повторный просмотр тех же фильтров и страницы не обращается к БД
+//и не рендерит таблицу заново. Очищается целиком при любом изменении каталога (BookService, ReactiveBookService)
+@Service
+public class BookListFragmentCache {
+
+    public static final String TEMPLATE = "books/list-content";
+    private static final Set<String> FRAGMENT = Set.of("content");
+
+    private final GenerationalCaffeineCache cache;
+    private final SpringTemplateEngine templateEngine;
+    private final JakartaServletWebApplication webApplication;
+
+    public BookListFragmentCache(CacheManager cacheManager, SpringTemplateEngine templateEngine, ServletContext servletContext) {
+        this.cache = (GenerationalCaffeineCache) cacheManager.getCache(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE);
+        this.templateEngine = templateEngine;
+        this.webApplication = JakartaServletWebApplication.buildApplication(servletContext);
+    }
+
+    //Фрагмент из кэша; при промахе renderer один раз выбирает данные и рендерит фрагмент, параллельные запросы ждут его.
+    //Поколение читается до выборки: если каталог сбросили, пока фрагмент рендерился, он сохранится под старым
+    //поколением и следующий запрос выберет данные заново. Выборка для кэша идет в primary, а не в отстающую реплику
+    public String get(Key key, Supplier<String> renderer) {
+        try {
+            return cache.get(new Entry(cache.generation(), key), () -> ReplicaRoutingDataSource.readFromPrimary(renderer));
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    //Рендер фрагмента в контексте текущего запроса: ссылки и sec:authorize вычисляются как при обычном рендере страницы
+    public String render(Map<String, Object> variables, Locale locale) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+        IWebExchange exchange = webApplication.buildExchange(attributes.getRequest(), attributes.getResponse());
+        return templateEngine.process(TEMPLATE, FRAGMENT, new WebContext(exchange, locale, variables));
+    }
+
+    //Фрагмент отличается только кнопками действий: для анонима, ADMIN и остальных вошедших
+    public static String viewerOf(Principal principal) {
+        if (principal == null) {
+            return "ANONYMOUS";
+        }
+        if (principal instanceof Authentication authentication
+                && AuthorityUtils.authorityListToSet(authentication.getAuthorities()).contains("ROLE_ADMIN")) {
+            return "ADMIN";
+        }
+        return "USER";
+    }
+
+    public record Key(String viewer, Locale locale, String title, String brand, Integer year, int page, int size) {
+    }
+
+    private record Entry(long generation, Key key) {
+    }
+}
@@ -1,86 +1,647 @@
 package by.aleksabrakor.tzForBookvoed.service;
 
+import by.aleksabrakor.tzForBookvoed.config.CacheConfig;
+import by.aleksabrakor.tzForBookvoed.config.ReplicaRoutingDataSource;
+import by.aleksabrakor.tzForBookvoed.dto.BookBatchItemResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBatchResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkUpdateDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookChangeDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookChangesDto;
 import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFacetsDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.dto.CursorPageDto;
+import by.aleksabrakor.tzForBookvoed.dto.StockDecrementDto;
 import by.aleksabrakor.tzForBookvoed.entity.Book;
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
+import by.aleksabrakor.tzForBookvoed.exception.GoneException;
+import by.aleksabrakor.tzForBookvoed.exception.InsufficientStockException;
 import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
 import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
+import by.aleksabrakor.tzForBookvoed.exception.PreconditionFailedException;
 import by.aleksabrakor.tzForBookvoed.mapper.BookMapper;
 import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.util.BookChangeCursor;
+import by.aleksabrakor.tzForBookvoed.util.BookCursor;
+import by.aleksabrakor.tzForBookvoed.util.BookETag;
+import by.aleksabrakor.tzForBookvoed.util.LikePattern;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
 
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
+@Timed("books.service")
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 @Slf4j
 public class BookService {
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 100_000;
+    public static final int MAX_STOCK_BATCH_SIZE = 1000;
+    public static final int MAX_FACET_LIMIT = 100;
+    private static final String UNIQUE_VIOLATION = "23505";
+
     private final BookRepository bookRepository;
     private final BookMapper bookMapper;
+    private final Validator validator;
+    private final CacheManager cacheManager;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final BookColumnStore bookColumnStore;
+
+    @Value("${books.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    //С фильтром по title фасеты считаются не больше чем по стольким книгам
+    @Value("${books.facets.title-sample-size:10000}")
+    private int facetsTitleSampleSize;
+
+    //Столько хранятся записи об удалении для ленты изменений
+    @Value("${books.changes.retention-days:30}")
+    private int changesRetentionDays;
 
+    //Версия каталога, с которой пересчитана витрина фасетов
+    private volatile String facetsCatalogVersion;
+
+    //Промах кэша читает из primary: запись вытесняет книгу сразу после коммита, и реплика в этот момент
+    //еще может отдать прежнюю версию, которая осталась бы в кэше до истечения TTL
+    @Cacheable(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId")
     public BookDto findBookById(Long bookId) {
-        return bookMapper.entityToDto(findBookOrThrow(bookId));
+        return ReplicaRoutingDataSource.readFromPrimary(() -> bookMapper.entityToDto(findBookOrThrow(bookId)));
+    }
+
+    //ETag для списков: один дешевый запрос вместо выборки и сериализации всего ответа
+    public String catalogETag() {
+        return BookETag.ofCatalog(bookRepository.findCatalogVersion());
     }
 
     public List<BookDto> findAllBooks() {
-        return bookMapper.toDtoList(bookRepository.findAll());
+        return bookRepository.findAllDtos();
+    }
+
+    //Потоковая выгрузка каталога: книги маппятся и отдаются по одной, без накопления списка в памяти
+    public void streamAllBooks(Consumer<BookDto> consumer) {
+        bookRepository.forEachBook(streamFetchSize, book -> consumer.accept(bookMapper.entityToDto(book)));
+    }
+
+    //CSV-выгрузка средствами PostgreSQL: память не зависит от размера каталога
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long exportCsv(BookFilterDto filter, OutputStream out) {
+        long rows = bookRepository.copyCsv(filter, out);
+        log.info("Выгрузка CSV по фильтру {}: {} книг", filter, rows);
+        return rows;
     }
 
     public Page<BookDto> findAllBooks(String title, String brand, Integer year, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("title"));
-        return bookMapper.toDtoPage(bookRepository.findByFilters(title, brand, year, pageable));
+        return bookColumnStore.findPage(title, brand, year, pageable)
+                .orElseGet(() -> bookRepository.findDtoByFilters(title, brand, year, pageable));
+    }
+
+    //Один запрос вместо двух: без count(*), только признак наличия следующей страницы
+    public Slice<BookDto> findBooksSlice(String title, String brand, Integer year, int page, int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        Pageable pageable = PageRequest.of(page, size, Sort.by("title"));
+        return bookColumnStore.findSlice(title, brand, year, pageable)
+                .orElseGet(() -> bookRepository.findDtoSliceByFilters(title, brand, year, pageable));
+    }
+
+    //Приблизительное число книг из pg_class.reltuples; для отфильтрованного списка оценки нет
+    public Long approximateBookCount(String title, String brand, Integer year) {
+        if (StringUtils.hasLength(title) || StringUtils.hasLength(brand) || year != null) {
+            return null;
+        }
+        Long estimate = bookRepository.estimateBookCount();
+        return estimate == null || estimate < 0 ? null : estimate;
+    }
+
+    public CursorPageDto<BookDto> findBooksAfter(String title, String brand, Integer year, String after, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        BookCursor cursor = BookCursor.decode(after);
+        // Берем на одну запись больше, чтобы узнать о наличии следующей страницы без count(*)
+        Limit limit = Limit.of(size + 1);
+        List<BookDto> books = bookColumnStore.findAfter(title, brand, year,
+                        cursor == null ? null : cursor.title(), cursor == null ? null : cursor.id(), size + 1)
+                .orElseGet(() -> cursor == null
+                        ? bookRepository.findFirstByFilters(title, brand, year, limit)
+                        : bookRepository.findByFiltersAfter(title, brand, year, cursor.title(), cursor.id(), limit));
+
+        boolean hasNext = books.size() > size;
+        List<BookDto> content = hasNext ? books.subList(0, size) : books;
+        String nextCursor = hasNext ? BookCursor.of(content.get(size - 1)).encode() : null;
+        return new CursorPageDto<>(content, nextCursor, hasNext);
+    }
+
+    public List<BookDto> searchBooks(String query, int page, int size) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Поисковый запрос не должен быть пустым");
+        }
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        //ё заменяется на е один раз: и для полнотекстового запроса, и для подстроки в title
+        String q = query.strip().replace('ё', 'е').replace('Ё', 'Е');
+        return bookMapper.toDtoList(bookRepository.search(q, LikePattern.contains(q), size, (long) page * size));
+    }
+
+    //Лента изменений после курсора since: объем ответа зависит от числа изменений, а не от размера каталога
+    public BookChangesDto findChanges(String since, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        BookChangeCursor cursor = BookChangeCursor.decode(since);
+        // Берем на одно изменение больше, чтобы узнать, есть ли еще
+        List<BookChangeDto> changes = new ArrayList<>(limit + 1);
+        List<BookChangeCursor> positions = new ArrayList<>(limit + 1);
+        bookRepository.forEachChange(cursor, limit + 1, (position, change) -> {
+            positions.add(position);
+            changes.add(change);
+        });
+        // Горизонт читается после ленты: записи, удаленные между двумя запросами, тоже не пропадут незаметно
+        if (!cursor.equals(BookChangeCursor.START) && cursor.compareTo(bookRepository.findChangesHorizon()) < 0) {
+            throw new GoneException("Курсор " + since + " старше срока хранения удалений, нужна полная синхронизация");
+        }
+
+        boolean hasMore = changes.size() > limit;
+        List<BookChangeDto> content = hasMore ? changes.subList(0, limit) : changes;
+        BookChangeCursor next = content.isEmpty() ? cursor : positions.get(content.size() - 1);
+        return new BookChangesDto(content, next.encode(), hasMore);
     }
 
     @Transactional
+    @Caching(put = @CachePut(cacheNames = CacheConfig.BOOKS_CACHE, key = "#result.id"),
+            evict = @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true))
     public BookDto saveBook(BookDto bookDto) {
-        if (bookRepository.findByVendorCode(bookDto.getVendorCode()).isPresent()) {
-            throw new NotCreatedException("Книга с таким VendorCode уже существует");
+        // Без предварительного SELECT: уникальность проверяет сам INSERT ... ON CONFLICT DO NOTHING
+        Book book = bookRepository.insertIfAbsent(bookMapper.dtoToEntity(bookDto))
+                .orElseThrow(() -> new NotCreatedException("Книга с таким VendorCode уже существует"));
+        BookDto saved = bookMapper.entityToDto(book);
+        afterCommit(() -> {
+            bookSuggestIndex.bookAdded(book.getTitle(), book.getBrand());
+            bookColumnStore.bookSaved(saved);
+        });
+        return saved;
+    }
+
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true)
+    public BookBatchResultDto saveBooks(List<BookDto> bookDtos) {
+        if (bookDtos.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("В одном запросе можно передать не более " + MAX_BATCH_SIZE + " книг");
+        }
+        List<BookBatchItemResultDto> items = new ArrayList<>(bookDtos.size());
+        List<BookBatchItemResultDto> pending = new ArrayList<>(bookDtos.size());
+        List<Book> books = new ArrayList<>(bookDtos.size());
+        Set<String> vendorCodes = new HashSet<>(bookDtos.size() * 2);
+
+        for (int i = 0; i < bookDtos.size(); i++) {
+            BookDto bookDto = bookDtos.get(i);
+            BookBatchItemResultDto item = new BookBatchItemResultDto(i, bookDto.getVendorCode(), null, null, null);
+            items.add(item);
+
+            Set<ConstraintViolation<BookDto>> violations = validator.validate(bookDto);
+            if (!violations.isEmpty()) {
+                item.setStatus(BookBatchItemResultDto.Status.INVALID);
+                item.setMessage(violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+            } else if (!vendorCodes.add(bookDto.getVendorCode())) {
+                item.setStatus(BookBatchItemResultDto.Status.DUPLICATE);
+                item.setMessage("VendorCode повторяется в запросе");
+            } else {
+                pending.add(item);
+                books.add(bookMapper.dtoToEntity(bookDto));
+            }
+        }
+
+        // Проверка уникальности и вставка одним запросом на пачку: ON CONFLICT (vendor_code) DO NOTHING
+        List<Book> inserted = bookRepository.insertIgnoringDuplicates(books);
+        Map<String, Long> ids = new HashMap<>(inserted.size() * 2);
+        inserted.forEach(book -> ids.put(book.getVendorCode(), book.getId()));
+        List<Book> created = new ArrayList<>(inserted.size());
+        for (int i = 0; i < pending.size(); i++) {
+            BookBatchItemResultDto item = pending.get(i);
+            Long id = ids.get(item.getVendorCode());
+            if (id != null) {
+                item.setId(id);
+                item.setStatus(BookBatchItemResultDto.Status.CREATED);
+                created.add(books.get(i));
+            } else {
+                item.setStatus(BookBatchItemResultDto.Status.DUPLICATE);
+                item.setMessage("Книга с таким VendorCode уже существует");
+            }
         }
-        return bookMapper.entityToDto(bookRepository.save(bookMapper.dtoToEntity(bookDto)));
+
+        // Каталогу в памяти — вставленные строки как есть, без повторного чтения
+        List<BookDto> saved = bookColumnStore.isActive() ? toDtos(inserted) : List.of();
+        afterCommit(() -> {
+            created.forEach(book -> bookSuggestIndex.bookAdded(book.getTitle(), book.getBrand()));
+            bookColumnStore.booksSaved(saved);
+        });
+
+        log.info("Пакетное добавление книг: создано {}, отклонено {}", inserted.size(), items.size() - inserted.size());
+        return new BookBatchResultDto(inserted.size(), items.size() - inserted.size(), items);
     }
 
     @Transactional
+    @Caching(put = @CachePut(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId"),
+            evict = @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true))
     public BookDto updateBook(Long bookId, BookDto bookDto) {
+        return updateBook(bookId, bookDto, null);
+    }
+
+    @Transactional
+    @Caching(put = @CachePut(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId"),
+            evict = @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true))
+    public BookDto updateBook(Long bookId, BookDto bookDto, String ifMatch) {
         Book book = findBookOrThrow(bookId);
-        if (bookRepository.findByVendorCodeAndIdNot(bookDto.getVendorCode(), bookId).isPresent()) {
-            throw new NotCreatedException("Книга с таким VendorCode уже существует");
-        }
+        checkIfMatch(book, ifMatch);
+        checkVersion(bookId, book.getVersion(), bookDto.getVersion());
+        String oldTitle = book.getTitle();
+        String oldBrand = book.getBrand();
 
-        if (bookDto.getVendorCode() != null && !bookDto.getVendorCode().equals(book.getVendorCode())) {
+        // Неизмененные поля Hibernate не считает грязными, а @DynamicUpdate не включает их в UPDATE
+        if (bookDto.getVendorCode() != null) {
             book.setVendorCode(bookDto.getVendorCode());
         }
-        if (bookDto.getTitle() != null && !bookDto.getTitle().equals(book.getTitle())) {
+        if (bookDto.getTitle() != null) {
             book.setTitle(bookDto.getTitle());
         }
-        if (bookDto.getBrand() != null && !bookDto.getBrand().equals(book.getBrand())) {
+        if (bookDto.getBrand() != null) {
             book.setBrand(bookDto.getBrand());
         }
-        if (bookDto.getYear() != null && !bookDto.getYear().equals(book.getYear())) {
+        if (bookDto.getYear() != null) {
             book.setYear(bookDto.getYear());
         }
-        if (bookDto.getStock() != null && !bookDto.getStock().equals(book.getStock())) {
+        if (bookDto.getStock() != null) {
             book.setStock(bookDto.getStock());
         }
-        if (bookDto.getPrice() != null && !bookDto.getPrice().equals(book.getPrice())) {
+        if (bookDto.getPrice() != null) {
             book.setPrice(bookDto.getPrice());
         }
 
+        // flush проставляет updated_at и version, чтобы ответ и кэш несли актуальный ETag.
+        // Уникальность VendorCode проверяет сам UPDATE, параллельную правку — условие по version
+        try {
+            bookRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateVendorCodeOr(e);
+        }
+        BookDto updated = bookMapper.entityToDto(book);
+        afterCommit(() -> {
+            bookSuggestIndex.bookChanged(oldTitle, oldBrand, book.getTitle(), book.getBrand());
+            bookColumnStore.bookSaved(updated);
+        });
         log.info("Book updated: {}", book);
-        return bookMapper.entityToDto(book);
+        return updated;
+    }
+
+    //PATCH без чтения книги: один UPDATE только по переданным полям с проверкой версии в WHERE
+    @Transactional
+    @Caching(put = @CachePut(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId"),
+            evict = @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true))
+    public BookDto patchBook(Long bookId, BookDto bookDto, String ifMatch) {
+        validatePatch(bookDto);
+        List<Long> ifMatchVersions = BookETag.versions(ifMatch, bookId);
+        List<Long> expectedVersions = ifMatchVersions;
+        if (bookDto.getVersion() != null) {
+            expectedVersions = ifMatchVersions == null || ifMatchVersions.contains(bookDto.getVersion())
+                    ? List.of(bookDto.getVersion())
+                    : List.of();
+        }
+
+        Optional<Book> patched;
+        try {
+            patched = bookRepository.patch(bookId, bookMapper.dtoToEntity(bookDto), expectedVersions);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateVendorCodeOr(e);
+        }
+        if (patched.isEmpty()) {
+            // Строка не обновлена: выясняем причину отдельным запросом только в этом случае
+            Long currentVersion = bookRepository.findVersionById(bookId)
+                    .orElseThrow(() -> new NotFoundException("Книга с id: " + bookId + " не найдена."));
+            if (ifMatchVersions != null && !ifMatchVersions.contains(currentVersion)) {
+                throw new PreconditionFailedException("Книга с id: " + bookId + " была изменена");
+            }
+            throw new OptimisticLockingFailureException("Книга с id: " + bookId + " была изменена другим пользователем");
+        }
+        BookDto result = bookMapper.entityToDto(patched.get());
+        afterCommit(() -> {
+            if (bookDto.getTitle() != null || bookDto.getBrand() != null) {
+                // Прежние title и brand UPDATE не возвращает: новые сразу в подсказках, старые уйдут при перестройке
+                bookSuggestIndex.bookAdded(bookDto.getTitle(), bookDto.getBrand());
+                bookSuggestIndex.markStale();
+            }
+            bookColumnStore.bookSaved(result);
+        });
+        log.info("Book patched: {}", patched.get());
+        return result;
+    }
+
+    //Списание без чтения сущности: один UPDATE ... WHERE stock >= quantity, конкурентные списания не теряются
+    @Transactional
+    @Caching(put = @CachePut(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId"),
+            evict = @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true))
+    public BookDto decrementStock(Long bookId, int quantity) {
+        checkQuantity(quantity);
+        Optional<Book> book = bookRepository.decrementStock(bookId, quantity);
+        if (book.isEmpty()) {
+            // Книга не изменилась: отличаем отсутствующую книгу от нехватки остатка
+            if (!bookRepository.existsById(bookId)) {
+                throw new NotFoundException("Книга с id: " + bookId + " не найдена.");
+            }
+            throw new InsufficientStockException("Недостаточно на складе книги с id: " + bookId);
+        }
+        BookDto result = bookMapper.entityToDto(book.get());
+        afterCommit(() -> bookColumnStore.bookSaved(result));
+        log.info("Списано {} шт. книги с id: {}, остаток {}", quantity, bookId, book.get().getStock());
+        return result;
+    }
+
+    //Списание по корзине: все позиции или ни одной; в ответе списанное количество по каждой книге
+    @Transactional
+    public List<StockDecrementDto> decrementStocks(List<StockDecrementDto> decrements) {
+        if (decrements.isEmpty() || decrements.size() > MAX_STOCK_BATCH_SIZE) {
+            throw new BadRequestException("В одном запросе можно передать от 1 до " + MAX_STOCK_BATCH_SIZE + " позиций");
+        }
+        // Повторы одной книги складываются: UPDATE по одной строке дважды в пакете взял бы остаток дважды
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (StockDecrementDto decrement : decrements) {
+            if (decrement.getBookId() == null) {
+                throw new BadRequestException("Поле bookId не должно быть пустым");
+            }
+            checkQuantity(decrement.getQuantity());
+            quantities.merge(decrement.getBookId(), decrement.getQuantity(), Math::addExact);
+        }
+
+        List<Book> updated = bookRepository.decrementStocks(quantities);
+        if (updated.size() < quantities.size()) {
+            Set<Long> decremented = updated.stream().map(Book::getId).collect(Collectors.toSet());
+            List<Long> rejected = quantities.keySet().stream().filter(id -> !decremented.contains(id)).toList();
+            // Исключение откатывает уже выполненные списания пакета
+            throw new InsufficientStockException("Недостаточно на складе или не найдены книги с id: " + rejected);
+        }
+        log.info("Списание по {} книгам выполнено", quantities.size());
+        evictAfterCommit(quantities.keySet());
+        if (bookColumnStore.isActive()) {
+            List<BookDto> changed = toDtos(updated);
+            afterCommit(() -> bookColumnStore.booksSaved(changed));
+        }
+        return quantities.entrySet().stream()
+                .map(entry -> new StockDecrementDto(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    //Подсказки для фильтра: самые частые brand и year среди книг, подходящих под текущий фильтр
+    public BookFacetsDto findFacets(BookFilterDto filter, int limit) {
+        if (limit < 1 || limit > MAX_FACET_LIMIT) {
+            throw new BadRequestException("Число значений фасета должно быть от 1 до " + MAX_FACET_LIMIT);
+        }
+        return bookRepository.findFacets(filter, limit, facetsTitleSampleSize);
+    }
+
+    //Витрина фасетов отстает от каталога не больше чем на интервал обновления;
+    //пересчитывается, только если каталог изменился с прошлого раза
+    @Scheduled(fixedDelayString = "${books.facets.refresh-interval:1m}")
+    @Transactional
+    public void refreshFacets() {
+        String catalogVersion = bookRepository.findCatalogVersion();
+        if (catalogVersion.equals(facetsCatalogVersion)) {
+            return;
+        }
+        long started = System.nanoTime();
+        // Версия запоминается только после успешного пересчета: неудачный повторится в следующий запуск
+        bookRepository.refreshFacets();
+        facetsCatalogVersion = catalogVersion;
+        log.info("Витрина фасетов пересчитана за {} мс", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    //Записи об удалении старше срока хранения; клиент с более старым курсором получает 410 и синхронизируется заново
+    @Scheduled(fixedDelayString = "${books.changes.purge-interval:1h}")
+    @Transactional
+    public void purgeChangeLog() {
+        int purged = bookRepository.purgeDeletions(Duration.ofDays(changesRetentionDays));
+        if (purged > 0) {
+            log.info("Из ленты изменений удалено {} записей об удалении старше {} дн.", purged, changesRetentionDays);
+        }
     }
 
+    //Массовое изменение одним UPDATE по фильтру; dryRun только считает книги, которые будут изменены
     @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, allEntries = true, condition = "!#dryRun"),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true, condition = "!#dryRun")})
+    public BookBulkResultDto updateBooks(BookFilterDto filter, BookBulkUpdateDto changes, boolean dryRun) {
+        checkBulkFilter(filter);
+        BigDecimal pricePercent = changes.getPricePercent();
+        if (pricePercent == null && changes.getStock() == null) {
+            throw new BadRequestException("Не передано ни одного изменения: pricePercent или stock");
+        }
+        if (pricePercent != null && pricePercent.compareTo(BigDecimal.valueOf(-100)) <= 0) {
+            throw new BadRequestException("Цену нельзя снизить на 100% и более");
+        }
+        if (changes.getStock() != null && changes.getStock() < 0) {
+            throw new BadRequestException("Остаток не может быть отрицательным");
+        }
+        if (dryRun) {
+            return new BookBulkResultDto(bookRepository.countByFilter(filter), true);
+        }
+        // Измененные строки нужны только загруженному каталогу в памяти
+        List<BookDto> changed = new ArrayList<>();
+        int updated = bookRepository.updateByFilter(filter, pricePercent, changes.getStock(),
+                bookColumnStore.isActive() ? book -> changed.add(bookMapper.entityToDto(book)) : null);
+        if (!changed.isEmpty()) {
+            afterCommit(() -> bookColumnStore.booksSaved(changed));
+        }
+        log.info("Массовое изменение книг по фильтру {}: изменено {}", filter, updated);
+        return new BookBulkResultDto(updated, false);
+    }
+
+    //Массовое удаление одним DELETE по фильтру; dryRun только считает книги, которые будут удалены
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, allEntries = true, condition = "!#dryRun"),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true, condition = "!#dryRun")})
+    public BookBulkResultDto deleteBooks(BookFilterDto filter, boolean dryRun) {
+        checkBulkFilter(filter);
+        if (dryRun) {
+            return new BookBulkResultDto(bookRepository.countByFilter(filter), true);
+        }
+        List<Long> deletedIds = new ArrayList<>();
+        int deleted = bookRepository.deleteByFilter(filter, bookColumnStore.isActive() ? deletedIds::add : null);
+        if (deleted > 0) {
+            afterCommit(() -> {
+                bookSuggestIndex.markStale();
+                bookColumnStore.booksDeleted(deletedIds);
+            });
+        }
+        log.info("Массовое удаление книг по фильтру {}: удалено {}", filter, deleted);
+        return new BookBulkResultDto(deleted, false);
+    }
+
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId"),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true)})
     public void deleteBook(Long bookId) {
+        deleteBook(bookId, null);
+    }
+
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId"),
+            @CacheEvict(cacheNames = CacheConfig.BOOK_LIST_FRAGMENTS_CACHE, allEntries = true)})
+    public void deleteBook(Long bookId, String ifMatch) {
+        Book book = findBookOrThrow(bookId);
+        checkIfMatch(book, ifMatch);
+        bookRepository.delete(book);
+        afterCommit(() -> {
+            bookSuggestIndex.bookRemoved(book.getTitle(), book.getBrand());
+            bookColumnStore.bookDeleted(bookId);
+        });
+    }
+
+    //Версия из тела запроса: клиент правил книгу, которую с тех пор уже изменили
+    private void checkVersion(Long bookId, Long currentVersion, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(currentVersion)) {
+            throw new OptimisticLockingFailureException("Книга с id: " + bookId + " была изменена другим пользователем");
+        }
+    }
+
+    //Для PATCH проверяются только переданные поля: остальные останутся прежними
+    private void validatePatch(BookDto bookDto) {
+        List<String> properties = new ArrayList<>();
+        if (bookDto.getVendorCode() != null) {
+            properties.add("vendorCode");
+        }
+        if (bookDto.getTitle() != null) {
+            properties.add("title");
+        }
+        if (bookDto.getBrand() != null) {
+            properties.add("brand");
+        }
+        if (bookDto.getYear() != null) {
+            properties.add("year");
+        }
+        if (properties.isEmpty() && bookDto.getStock() == null && bookDto.getPrice() == null) {
+            throw new BadRequestException("Не передано ни одного поля для изменения");
+        }
+        String errors = properties.stream()
+                .flatMap(property -> validator.validateProperty(bookDto, property).stream())
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+        if (!errors.isEmpty()) {
+            throw new BadRequestException(errors);
+        }
+    }
 
-        bookRepository.delete(findBookOrThrow(bookId));
+    //Нарушение UNIQUE(vendor_code) превращается в понятную ошибку, остальные нарушения пробрасываются как есть
+    private RuntimeException duplicateVendorCodeOr(DataIntegrityViolationException e) {
+        if (e.getMostSpecificCause() instanceof SQLException sqlException
+                && UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+            return new NotCreatedException("Книга с таким VendorCode уже существует");
+        }
+        return e;
+    }
+
+    //Пустой фильтр задел бы весь каталог: такой запрос почти наверняка ошибка клиента
+    private void checkBulkFilter(BookFilterDto filter) {
+        if (filter.isEmpty()) {
+            throw new BadRequestException("Для массовой операции нужен хотя бы один фильтр: title, brand, year, yearFrom или yearTo");
+        }
+        if (LikePattern.isWildcardOnly(filter.getTitle()) || LikePattern.isWildcardOnly(filter.getBrand())) {
+            throw new BadRequestException("Фильтр title или brand не может состоять только из пробелов и символов % и _");
+        }
+        if (filter.getYearFrom() != null && filter.getYearTo() != null && filter.getYearFrom() > filter.getYearTo()) {
+            throw new BadRequestException("yearFrom не может быть больше yearTo");
+        }
+    }
+
+    private List<BookDto> toDtos(List<Book> books) {
+        return books.stream().map(bookMapper::entityToDto).toList();
+    }
+
+    private void checkQuantity(Integer quantity) {
+        if (quantity == null || quantity < 1) {
+            throw new BadRequestException("Количество для списания должно быть больше 0");
+        }
+    }
+
+    //Ключей несколько, поэтому без @CacheEvict: сбрасываем после коммита, как это делает кэш-интерсептор
+    private void evictAfterCommit(Set<Long> bookIds) {
+        Runnable evict = () -> {
+            Cache books = cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+            if (books != null) {
+                bookIds.forEach(books::evict);
+            }
+            Cache listFragments = cacheManager.getCache(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE);
+            if (listFragments != null) {
+                listFragments.clear();
+            }
+        };
+        afterCommit(evict);
+    }
+
+    //Действие после коммита текущей транзакции (откат его отменяет); вне транзакции — сразу
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void checkIfMatch(Book book, String ifMatch) {
+        if (!BookETag.matches(ifMatch, BookETag.of(book.getId(), book.getVersion()))) {
+            throw new PreconditionFailedException("Книга с id: " + book.getId() + " была изменена");
+        }
     }
 
     private Book findBookOrThrow(Long bookId) {
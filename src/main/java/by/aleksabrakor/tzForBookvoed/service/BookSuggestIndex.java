@@ -0,0 +1,164 @@
+package by.aleksabrakor.tzForBookvoed.service;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookSuggestIndexDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookSuggestionsDto;
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
+import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.util.PrefixIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Подсказки по началу названия и автора без обращения к БД: два PrefixIndex в памяти процесса.
+ * Снимок строится при старте и по команде перестройки, записи BookService после коммита попадают в дельту.
+ * Изменения, которые нельзя учесть точно (PATCH без прежних значений, массовое удаление, переполненная дельта),
+ * помечают индекс устаревшим, и он перестраивается по расписанию.
+ */
+@Service
+@Slf4j
+public class BookSuggestIndex {
+
+    public static final int MAX_SUGGEST_LIMIT = 50;
+
+    private final BookRepository bookRepository;
+    private final long maxBytes;
+    private final int maxDeltaEntries;
+    private final Object rebuildLock = new Object();
+
+    private volatile PrefixIndex titles = PrefixIndex.empty();
+    private volatile PrefixIndex brands = PrefixIndex.empty();
+    // До первой загрузки индекс пуст и считается устаревшим
+    private volatile boolean stale = true;
+    // Изменения, пришедшие во время перестройки: повторяются на новом снимке
+    private List<BooleanSupplier> pendingChanges;
+
+    public BookSuggestIndex(BookRepository bookRepository,
+                            @Value("${books.suggest.max-memory:64MB}") DataSize maxMemory,
+                            @Value("${books.suggest.max-delta:10000}") int maxDeltaEntries,
+                            MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+        this.maxBytes = maxMemory.toBytes();
+        this.maxDeltaEntries = maxDeltaEntries;
+        Gauge.builder("books.suggest.entries", this, index -> index.titles.size() + index.titles.deltaSize())
+                .tag("field", "title")
+                .description("Строки в индексе подсказок")
+                .register(meterRegistry);
+        Gauge.builder("books.suggest.entries", this, index -> index.brands.size() + index.brands.deltaSize())
+                .tag("field", "brand")
+                .description("Строки в индексе подсказок")
+                .register(meterRegistry);
+        Gauge.builder("books.suggest.memory", this, index -> index.titles.memoryBytes() + index.brands.memoryBytes())
+                .baseUnit("bytes")
+                .description("Память снимка индекса подсказок")
+                .register(meterRegistry);
+    }
+
+    public BookSuggestionsDto suggest(String prefix, int limit) {
+        if (limit < 1 || limit > MAX_SUGGEST_LIMIT) {
+            throw new BadRequestException("Число подсказок должно быть от 1 до " + MAX_SUGGEST_LIMIT);
+        }
+        if (prefix == null || prefix.isBlank()) {
+            return new BookSuggestionsDto(List.of(), List.of());
+        }
+        return new BookSuggestionsDto(titles.suggest(prefix, limit), brands.suggest(prefix, limit));
+    }
+
+    public void bookAdded(String title, String brand) {
+        apply(() -> titles.add(title) & brands.add(brand));
+    }
+
+    public void bookRemoved(String title, String brand) {
+        apply(() -> titles.remove(title) & brands.remove(brand));
+    }
+
+    public void bookChanged(String oldTitle, String oldBrand, String title, String brand) {
+        if (!Objects.equals(oldTitle, title)) {
+            apply(() -> titles.remove(oldTitle) & titles.add(title));
+        }
+        if (!Objects.equals(oldBrand, brand)) {
+            apply(() -> brands.remove(oldBrand) & brands.add(brand));
+        }
+    }
+
+    //Прежние значения неизвестны: индекс перестроится по расписанию
+    public void markStale() {
+        stale = true;
+    }
+
+    //Перестройка читает из primary (транзакция не readOnly): индекс живет до следующей перестройки,
+    //и реплика, еще не догнавшая массовое удаление, вернула бы в него удаленные книги
+    @Scheduled(fixedDelayString = "${books.suggest.rebuild-interval:10m}")
+    @Transactional
+    public void rebuildIfStale() {
+        if (stale) {
+            rebuild();
+        }
+    }
+
+    @Transactional
+    public BookSuggestIndexDto rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                pendingChanges = new ArrayList<>();
+                stale = false;
+            }
+            long started = System.nanoTime();
+            PrefixIndex newBrands;
+            PrefixIndex newTitles;
+            try {
+                PrefixIndex.Builder brandBuilder = PrefixIndex.builder();
+                bookRepository.forEachBrandCount(brandBuilder::add);
+                newBrands = brandBuilder.build(maxBytes, maxDeltaEntries);
+                // Названия получают память, оставшуюся после авторов
+                PrefixIndex.Builder titleBuilder = PrefixIndex.builder();
+                bookRepository.forEachTitleCount(titleBuilder::add);
+                newTitles = titleBuilder.build(maxBytes - newBrands.memoryBytes(), maxDeltaEntries);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pendingChanges = null;
+                    stale = true;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                brands = newBrands;
+                titles = newTitles;
+                List<BooleanSupplier> replay = pendingChanges;
+                pendingChanges = null;
+                // Снимок мог уже учесть эти изменения: повторное удаление спрятало бы строку,
+                // поэтому после повтора индекс еще раз перестраивается по расписанию
+                replay.forEach(change -> change.getAsBoolean());
+                if (!replay.isEmpty()) {
+                    stale = true;
+                }
+            }
+            long buildMillis = (System.nanoTime() - started) / 1_000_000;
+            log.info("Индекс подсказок перестроен за {} мс: {} названий, {} авторов, {} КБ",
+                    buildMillis, newTitles.size(), newBrands.size(),
+                    (newTitles.memoryBytes() + newBrands.memoryBytes()) / 1024);
+            return new BookSuggestIndexDto(newTitles.size(), newBrands.size(),
+                    newTitles.memoryBytes() + newBrands.memoryBytes(), buildMillis);
+        }
+    }
+
+    private synchronized void apply(BooleanSupplier change) {
+        if (pendingChanges != null) {
+            pendingChanges.add(change);
+        }
+        if (!change.getAsBoolean()) {
+            log.debug("Дельта индекса подсказок заполнена, индекс будет перестроен");
+            stale = true;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package by.aleksabrakor.tzForBookvoed.service;
+
+import by.aleksabrakor.tzForBookvoed.config.CacheConfig;
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
+import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
+import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
+import by.aleksabrakor.tzForBookvoed.mapper.BookMapper;
+import by.aleksabrakor.tzForBookvoed.repositiry.ReactiveBookRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//Неблокирующий аналог BookService для api/v2: R2DBC вместо JPA, те же BookDto и правила валидации
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveBookService {
+
+    private final ReactiveBookRepository reactiveBookRepository;
+    private final BookMapper bookMapper;
+    private final Validator validator;
+    private final CacheManager cacheManager;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final BookColumnStore bookColumnStore;
+
+    @Value("${books.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    //Строки читаются по мере спроса подписчика: медленный клиент притормаживает чтение из PostgreSQL
+    public Flux<BookDto> findBooks(String title, String brand, Integer year, Long after, Long limit) {
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("Параметр limit должен быть положительным");
+        }
+        return reactiveBookRepository.findByFilters(title, brand, year, after == null ? 0 : after, limit, streamFetchSize)
+                .map(bookMapper::rowToDto);
+    }
+
+    public Mono<BookDto> findBookById(Long bookId) {
+        return reactiveBookRepository.findById(bookId)
+                .map(bookMapper::rowToDto)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Книга с id: " + bookId + " не найдена.")));
+    }
+
+    public Mono<BookDto> saveBook(BookDto bookDto) {
+        Set<ConstraintViolation<BookDto>> violations = validator.validate(bookDto);
+        if (!violations.isEmpty()) {
+            return Mono.error(new BadRequestException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "))));
+        }
+        return reactiveBookRepository.insertIfAbsent(bookDto.getVendorCode(), bookDto.getTitle(), bookDto.getBrand(),
+                        bookDto.getYear(), bookDto.getStock(), bookDto.getPrice())
+                .map(bookMapper::rowToDto)
+                .doOnNext(book -> {
+                    evictListFragments();
+                    bookSuggestIndex.bookAdded(book.getTitle(), book.getBrand());
+                    bookColumnStore.bookSaved(book);
+                })
+                .switchIfEmpty(Mono.error(() -> new NotCreatedException("Книга с таким VendorCode уже существует")));
+    }
+
+    //Как @CacheEvict(allEntries = true) у записей BookService: отрисованные страницы /books больше не актуальны
+    private void evictListFragments() {
+        Cache cache = cacheManager.getCache(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package by.aleksabrakor.tzForBookvoed.util;
+
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//Позиция в ленте изменений: номер транзакции и номер изменения; клиент получает ее в виде непрозрачной строки
+public record BookChangeCursor(long xid, long seq) implements Comparable<BookChangeCursor> {
+
+    //Начало ленты: первый запрос без since отдает весь каталог
+    public static final BookChangeCursor START = new BookChangeCursor(0, 0);
+
+    public String encode() {
+        String raw = xid + ":" + seq;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookChangeCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new BookChangeCursor(Long.parseLong(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            throw new BadRequestException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    @Override
+    public int compareTo(BookChangeCursor other) {
+        int byXid = Long.compare(xid, other.xid);
+        return byXid != 0 ? byXid : Long.compare(seq, other.seq);
+    }
+}
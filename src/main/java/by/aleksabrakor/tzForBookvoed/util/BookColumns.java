@@ -0,0 +1,465 @@
+package by.aleksabrakor.tzForBookvoed.util;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Снимок каталога по колонкам для списков без SQL. Строки отсортированы по (ранг названия, id). Ранги раздает
+ * загрузчик в порядке ORDER BY title, id из PostgreSQL, поэтому порядок совпадает с правилом сравнения колонки title,
+ * каким бы оно ни было; сами названия в Java не сравниваются. Между соседними рангами снимка остается RANK_STEP
+ * свободных значений для названий, появившихся позже. Названия и артикулы упакованы в char[] со смещениями,
+ * автор хранится номером в словаре, год и остаток — int[], цена — long[] в копейках, updated_at — long[] в микросекундах.
+ * Фильтры title/brand проверяются как ILIKE '%подстрока%': обе стороны посимвольно переводятся в нижний регистр.
+ * Подстрока title ищется String.indexOf по всем названиям сразу, без прохода по строкам; фильтры только по brand
+ * и year просматривают колонки параллельно кусками по CHUNK_SIZE строк.
+ * Снимок не меняется; исключенные строки (измененные или удаленные после построения) передаются в запросы BitSet-ом.
+ */
+public final class BookColumns {
+
+    //Расстояние между рангами соседних названий в снимке
+    public static final long RANK_STEP = 1L << 32;
+
+    private static final int CHUNK_SIZE = 16_384;
+    private static final int NULL_STOCK = Integer.MIN_VALUE;
+    private static final long NULL_PRICE = Long.MIN_VALUE;
+
+    private static final BookColumns EMPTY = builder().build();
+
+    private final long[] ids;
+    private final long[] ranks;
+    private final char[] titles;
+    // Те же названия в нижнем регистре одной строкой: перевод посимвольный, смещения общие
+    private final String foldedTitles;
+    private final int[] titleOffsets;
+    private final char[] vendorCodes;
+    private final int[] vendorCodeOffsets;
+    private final String[] brandDictionary;
+    private final String[] foldedBrandDictionary;
+    private final int[] brands;
+    private final int[] years;
+    private final int[] stocks;
+    private final long[] prices;
+    private final long[] updatedAts;
+    private final long[] versions;
+    // id по возрастанию и позиции их строк: поиск строки по id двоичным поиском
+    private final long[] sortedIds;
+    private final int[] positionsBySortedId;
+
+    private BookColumns(Builder builder, int[] order) {
+        int size = order.length;
+        ids = new long[size];
+        ranks = new long[size];
+        titleOffsets = new int[size + 1];
+        vendorCodeOffsets = new int[size + 1];
+        brands = new int[size];
+        years = new int[size];
+        stocks = new int[size];
+        prices = new long[size];
+        updatedAts = new long[size];
+        versions = new long[size];
+
+        long titleChars = 0;
+        long vendorCodeChars = 0;
+        for (int i = 0; i < builder.size; i++) {
+            titleChars += builder.titles[i].length();
+            vendorCodeChars += builder.vendorCodes[i].length();
+        }
+        titles = new char[Math.toIntExact(titleChars)];
+        vendorCodes = new char[Math.toIntExact(vendorCodeChars)];
+
+        int titlePosition = 0;
+        int vendorCodePosition = 0;
+        long rank = 0;
+        for (int position = 0; position < size; position++) {
+            int row = order[position];
+            ids[position] = builder.ids[row];
+            // Ранги заново через RANK_STEP: место между соседями, занятое поздними названиями, освобождается
+            if (position == 0 || builder.ranks[row] != builder.ranks[order[position - 1]]) {
+                rank += RANK_STEP;
+            }
+            ranks[position] = rank;
+            String title = builder.titles[row];
+            title.getChars(0, title.length(), titles, titlePosition);
+            titleOffsets[position] = titlePosition;
+            titlePosition += title.length();
+            String vendorCode = builder.vendorCodes[row];
+            vendorCode.getChars(0, vendorCode.length(), vendorCodes, vendorCodePosition);
+            vendorCodeOffsets[position] = vendorCodePosition;
+            vendorCodePosition += vendorCode.length();
+            brands[position] = builder.brands[row];
+            years[position] = builder.years[row];
+            stocks[position] = builder.stocks[row];
+            prices[position] = builder.prices[row];
+            updatedAts[position] = builder.updatedAts[row];
+            versions[position] = builder.versions[row];
+        }
+        titleOffsets[size] = titlePosition;
+        vendorCodeOffsets[size] = vendorCodePosition;
+        char[] folded = new char[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            folded[i] = Character.toLowerCase(titles[i]);
+        }
+        foldedTitles = new String(folded);
+
+        brandDictionary = new String[builder.brandIds.size()];
+        builder.brandIds.forEach((brand, id) -> brandDictionary[id] = brand);
+        foldedBrandDictionary = Arrays.stream(brandDictionary).map(BookColumns::fold).toArray(String[]::new);
+
+        Integer[] byId = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            byId[i] = i;
+        }
+        Arrays.sort(byId, Comparator.comparingLong(position -> ids[position]));
+        sortedIds = new long[size];
+        positionsBySortedId = new int[size];
+        for (int i = 0; i < size; i++) {
+            sortedIds[i] = ids[byId[i]];
+            positionsBySortedId[i] = byId[i];
+        }
+    }
+
+    public static BookColumns empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    //Подстрока с % _ или \ в ILIKE — шаблон, а не текст: такие фильтры остаются базе
+    public static boolean supports(String pattern) {
+        return pattern == null || (pattern.indexOf('%') < 0 && pattern.indexOf('_') < 0 && pattern.indexOf('\\') < 0);
+    }
+
+    //Порядок ORDER BY title, id по рангам названий
+    public static int compare(long rank, long id, long otherRank, long otherId) {
+        int cmp = Long.compare(rank, otherRank);
+        return cmp != 0 ? cmp : Long.compare(id, otherId);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long memoryBytes() {
+        return (titles.length + foldedTitles.length() + vendorCodes.length) * 2L
+                + (titleOffsets.length + vendorCodeOffsets.length + brands.length + years.length + stocks.length
+                + positionsBySortedId.length) * 4L
+                + (ids.length + ranks.length + prices.length + updatedAts.length + versions.length + sortedIds.length) * 8L;
+    }
+
+    //Позиция строки книги или -1
+    public int position(long id) {
+        int index = Arrays.binarySearch(sortedIds, id);
+        return index < 0 ? -1 : positionsBySortedId[index];
+    }
+
+    public long id(int position) {
+        return ids[position];
+    }
+
+    public long version(int position) {
+        return versions[position];
+    }
+
+    public long rank(int position) {
+        return ranks[position];
+    }
+
+    public String title(int position) {
+        return new String(titles, titleOffsets[position], titleOffsets[position + 1] - titleOffsets[position]);
+    }
+
+    public boolean hasTitle(int position, String title) {
+        int start = titleOffsets[position];
+        if (titleOffsets[position + 1] - start != title.length()) {
+            return false;
+        }
+        for (int k = 0; k < title.length(); k++) {
+            if (titles[start + k] != title.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public BookDto row(int position) {
+        return new BookDto(ids[position],
+                new String(vendorCodes, vendorCodeOffsets[position], vendorCodeOffsets[position + 1] - vendorCodeOffsets[position]),
+                title(position),
+                brandDictionary[brands[position]],
+                years[position],
+                stocks[position] == NULL_STOCK ? null : stocks[position],
+                prices[position] == NULL_PRICE ? null : BigDecimal.valueOf(prices[position], 2),
+                fromMicros(updatedAts[position]),
+                versions[position]);
+    }
+
+    //Первая позиция после (rank, id): продолжение keyset-пагинации
+    public int positionAfter(long rank, long id) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, rank, id) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int compare(int position, long rank, long id) {
+        return compare(ranks[position], ids[position], rank, id);
+    }
+
+    public Filter filter(String title, String brand, Integer year) {
+        String foldedTitle = foldOrNull(title);
+        String foldedBrand = foldOrNull(brand);
+        boolean[] brandMatches = null;
+        if (foldedBrand != null) {
+            brandMatches = new boolean[foldedBrandDictionary.length];
+            for (int i = 0; i < brandMatches.length; i++) {
+                brandMatches[i] = foldedBrandDictionary[i].contains(foldedBrand);
+            }
+        }
+        return new Filter(foldedTitle, foldedBrand, year, brandMatches);
+    }
+
+    //Позиции первых need подходящих строк начиная с from, без исключенных.
+    //Без title первый кусок просматривается в текущем потоке — для частых фильтров страница набирается уже в нем;
+    //дальше куски идут волнами по числу ядер
+    public int[] collect(int from, Filter filter, BitSet excluded, int need) {
+        if (filter.title != null) {
+            return searchTitles(from, filter, excluded, need);
+        }
+        int[] result = new int[0];
+        int position = from;
+        boolean first = true;
+        while (result.length < need && position < size()) {
+            int waveStart = position;
+            int remaining = need - result.length;
+            int chunks = first ? 1 : Math.min(ForkJoinPool.getCommonPoolParallelism(), chunksFrom(position));
+            int[][] parts = chunks == 1
+                    ? new int[][]{scan(waveStart, Math.min(size(), waveStart + CHUNK_SIZE), filter, excluded, remaining)}
+                    : IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> scan(waveStart + chunk * CHUNK_SIZE,
+                            Math.min(size(), waveStart + (chunk + 1) * CHUNK_SIZE), filter, excluded, remaining))
+                    .toArray(int[][]::new);
+            for (int[] part : parts) {
+                int take = Math.min(part.length, need - result.length);
+                int length = result.length;
+                result = Arrays.copyOf(result, length + take);
+                System.arraycopy(part, 0, result, length, take);
+            }
+            position = Math.min(size(), waveStart + chunks * CHUNK_SIZE);
+            first = false;
+        }
+        return result;
+    }
+
+    public long count(Filter filter, BitSet excluded) {
+        if (filter.isEmpty()) {
+            return size() - excluded.cardinality();
+        }
+        if (filter.title != null) {
+            return searchTitles(0, filter, excluded, Integer.MAX_VALUE).length;
+        }
+        return IntStream.range(0, chunksFrom(0)).parallel()
+                .mapToLong(chunk -> countRange(chunk * CHUNK_SIZE, Math.min(size(), (chunk + 1) * CHUNK_SIZE),
+                        filter, excluded))
+                .sum();
+    }
+
+    private int chunksFrom(int position) {
+        return (size() - position + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    private int[] scan(int from, int to, Filter filter, BitSet excluded, int limit) {
+        int[] found = new int[Math.min(limit, to - from)];
+        int count = 0;
+        for (int position = from; position < to && count < limit; position++) {
+            if (!excluded.get(position) && matches(position, filter)) {
+                found[count++] = position;
+            }
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    //Вхождения подстроки по всем названиям сразу: от найденного символа к строке, затем к началу следующей строки
+    private int[] searchTitles(int from, Filter filter, BitSet excluded, int need) {
+        int[] found = new int[Math.min(need, 1024)];
+        int count = 0;
+        int position = from;
+        int index = from < size() ? titleOffsets[from] : foldedTitles.length();
+        while (count < need) {
+            int hit = foldedTitles.indexOf(filter.title, index);
+            if (hit < 0) {
+                break;
+            }
+            position = rowAt(hit, position);
+            // Вхождение на стыке двух названий не считается
+            if (hit + filter.title.length() <= titleOffsets[position + 1]
+                    && !excluded.get(position) && matches(position, filter)) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, (int) Math.min((long) found.length * 2, need));
+                }
+                found[count++] = position;
+            }
+            position++;
+            if (position == size()) {
+                break;
+            }
+            index = titleOffsets[position];
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    //Строка, в которой лежит символ index, начиная поиск с позиции from
+    private int rowAt(int index, int from) {
+        int low = from;
+        int high = size() - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (titleOffsets[mid + 1] <= index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long countRange(int from, int to, Filter filter, BitSet excluded) {
+        long count = 0;
+        for (int position = from; position < to; position++) {
+            if (!excluded.get(position) && matches(position, filter)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    //Без title: подстроку названия проверяет searchTitles
+    private boolean matches(int position, Filter filter) {
+        return (filter.year == null || years[position] == filter.year)
+                && (filter.brandMatches == null || filter.brandMatches[brands[position]]);
+    }
+
+    private static String foldOrNull(String value) {
+        return value == null || value.isEmpty() ? null : fold(value);
+    }
+
+    private static String fold(String value) {
+        char[] folded = value.toCharArray();
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(folded[i]);
+        }
+        return new String(folded);
+    }
+
+    private static long toMicros(LocalDateTime value) {
+        return value == null ? Long.MIN_VALUE : value.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + value.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return micros == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    //Фильтр списка, подготовленный под словарь авторов снимка; пустые title/brand не фильтруют, как и в SQL
+    public static final class Filter {
+
+        private final String title;
+        private final String brand;
+        private final Integer year;
+        private final boolean[] brandMatches;
+
+        private Filter(String title, String brand, Integer year, boolean[] brandMatches) {
+            this.title = title;
+            this.brand = brand;
+            this.year = year;
+            this.brandMatches = brandMatches;
+        }
+
+        public boolean isEmpty() {
+            return title == null && brand == null && year == null;
+        }
+
+        //Для строк вне снимка
+        public boolean matches(BookDto book) {
+            return (year == null || year.equals(book.getYear()))
+                    && (brand == null || fold(book.getBrand()).contains(brand))
+                    && (title == null || fold(book.getTitle()).contains(title));
+        }
+    }
+
+    public static final class Builder {
+
+        private long[] ids = new long[1024];
+        private long[] ranks = new long[1024];
+        private String[] titles = new String[1024];
+        private String[] vendorCodes = new String[1024];
+        private int[] brands = new int[1024];
+        private int[] years = new int[1024];
+        private int[] stocks = new int[1024];
+        private long[] prices = new long[1024];
+        private long[] updatedAts = new long[1024];
+        private long[] versions = new long[1024];
+        private final Map<String, Integer> brandIds = new HashMap<>();
+        private int size;
+
+        private Builder() {
+        }
+
+        //rank — место названия в порядке ORDER BY title: у равных названий равный, у большего больший
+        public Builder add(BookDto book, long rank) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                ranks = Arrays.copyOf(ranks, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                vendorCodes = Arrays.copyOf(vendorCodes, capacity);
+                brands = Arrays.copyOf(brands, capacity);
+                years = Arrays.copyOf(years, capacity);
+                stocks = Arrays.copyOf(stocks, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                updatedAts = Arrays.copyOf(updatedAts, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+            }
+            ids[size] = book.getId();
+            ranks[size] = rank;
+            titles[size] = book.getTitle();
+            vendorCodes[size] = book.getVendorCode();
+            brands[size] = brandIds.computeIfAbsent(book.getBrand(), brand -> brandIds.size());
+            years[size] = book.getYear();
+            stocks[size] = book.getStock() == null ? NULL_STOCK : book.getStock();
+            // NUMERIC(10, 2): цена в копейках без потерь
+            prices[size] = book.getPrice() == null ? NULL_PRICE : book.getPrice().movePointRight(2).longValueExact();
+            updatedAts[size] = toMicros(book.getUpdatedAt());
+            versions[size] = book.getVersion() == null ? 0 : book.getVersion();
+            size++;
+            return this;
+        }
+
+        public BookColumns build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (left, right) -> compare(ranks[left], ids[left], ranks[right], ids[right]));
+            return new BookColumns(this, Arrays.stream(order).mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package by.aleksabrakor.tzForBookvoed.util;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//Позиция в каталоге, отсортированном по (title, id): клиент получает ее в виде непрозрачной строки
+public record BookCursor(String title, Long id) {
+
+    public static BookCursor of(BookDto book) {
+        return new BookCursor(book.getTitle(), book.getId());
+    }
+
+    public String encode() {
+        String raw = id + ":" + title;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new BookCursor(raw.substring(separator + 1), Long.parseLong(raw.substring(0, separator)));
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            throw new BadRequestException("Некорректный курсор: " + cursor);
+        }
+    }
+}
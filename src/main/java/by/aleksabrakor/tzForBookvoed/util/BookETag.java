@@ -0,0 +1,52 @@
+package by.aleksabrakor.tzForBookvoed.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+//Строгие ETag: для книги — id и версия строки, для списков — версия каталога
+public final class BookETag {
+
+    private BookETag() {
+    }
+
+    public static String of(Long id, Long version) {
+        return "\"" + id + "-" + (version == null ? 0 : version) + "\"";
+    }
+
+    public static String ofCatalog(String catalogVersion) {
+        return "\"c-" + catalogVersion + "\"";
+    }
+
+    //Тег другого представления того же ресурса (сжатого, NDJSON): "c-42" -> "c-42-gzip"
+    public static String withVariant(String eTag, String variant) {
+        return eTag.substring(0, eTag.length() - 1) + "-" + variant + "\"";
+    }
+
+    //If-Match: "*" или один из перечисленных тегов; слабые теги (W/) для If-Match не подходят
+    public static boolean matches(String ifMatch, String eTag) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return true;
+        }
+        return tags(ifMatch).anyMatch(tag -> tag.equals("*") || tag.equals(eTag));
+    }
+
+    //Версии книги, перечисленные в If-Match, для проверки прямо в UPDATE ... WHERE version = ANY(?).
+    //null — условия нет (заголовок пуст или "*"); теги чужой книги не дают ни одной версии
+    public static List<Long> versions(String ifMatch, Long id) {
+        if (ifMatch == null || ifMatch.isBlank() || tags(ifMatch).anyMatch(tag -> tag.equals("*"))) {
+            return null;
+        }
+        String prefix = "\"" + id + "-";
+        return tags(ifMatch)
+                .filter(tag -> tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1)
+                .map(tag -> tag.substring(prefix.length(), tag.length() - 1))
+                .filter(version -> version.length() <= 18 && version.chars().allMatch(Character::isDigit))
+                .map(Long::valueOf)
+                .toList();
+    }
+
+    private static Stream<String> tags(String ifMatch) {
+        return Arrays.stream(ifMatch.split(",")).map(String::strip);
+    }
+}
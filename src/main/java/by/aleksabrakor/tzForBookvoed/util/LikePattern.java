@@ -0,0 +1,22 @@
+package by.aleksabrakor.tzForBookvoed.util;
+
+//Шаблоны для ILIKE ... ESCAPE '\': пользовательский ввод ищется как подстрока, а не как шаблон
+public final class LikePattern {
+
+    private LikePattern() {
+    }
+
+    public static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    public static String contains(String text) {
+        return "%" + escape(text) + "%";
+    }
+
+    //Строка только из пробелов и символов шаблона: как подстрока она есть почти в каждой книге
+    public static boolean isWildcardOnly(String text) {
+        return text != null && !text.isEmpty()
+                && text.chars().allMatch(c -> Character.isWhitespace(c) || c == '%' || c == '_');
+    }
+}
@@ -0,0 +1,251 @@
+package by.aleksabrakor.tzForBookvoed.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Префиксный индекс строк для подсказок. Строки, отсортированные по нормализованному виду, упакованы в один char[]
+ * со смещениями — без объекта String на каждую запись; диапазон по префиксу находится двумя двоичными поисками.
+ * Нормализация посимвольная и не меняет длину (нижний регистр, ё -> е), поэтому сравнение идет прямо по исходным
+ * строкам, а в подсказке остается исходное написание.
+ * Изменения после построения копятся в дельте (число книг по строке относительно снимка) до следующей перестройки.
+ */
+public final class PrefixIndex {
+
+    private static final PrefixIndex EMPTY = new PrefixIndex(new char[0], new int[]{0}, new int[0], 0);
+
+    private final char[] chars;
+    private final int[] offsets;
+    private final int[] counts;
+    private final int maxDeltaEntries;
+    private final ConcurrentSkipListMap<String, Delta> delta = new ConcurrentSkipListMap<>();
+
+    private PrefixIndex(char[] chars, int[] offsets, int[] counts, int maxDeltaEntries) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.counts = counts;
+        this.maxDeltaEntries = maxDeltaEntries;
+    }
+
+    public static PrefixIndex empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static String normalize(String value) {
+        char[] normalized = value.strip().toCharArray();
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = fold(normalized[i]);
+        }
+        return new String(normalized);
+    }
+
+    private static char fold(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    //Не больше limit строк с данным префиксом в алфавитном порядке нормализованного вида
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        int from = bound(key, false);
+        int to = bound(key, true);
+        NavigableMap<String, Delta> changes = delta.subMap(key, true, key + Character.MAX_VALUE, false);
+        Iterator<Map.Entry<String, Delta>> changeIterator = changes.entrySet().iterator();
+        Map.Entry<String, Delta> change = changeIterator.hasNext() ? changeIterator.next() : null;
+
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        int i = from;
+        while (result.size() < limit && (i < to || change != null)) {
+            int cmp = i >= to ? 1 : change == null ? -1 : compare(i, change.getKey());
+            if (cmp < 0) {
+                result.add(value(i));
+                i++;
+            } else if (cmp > 0) {
+                if (change.getValue().count() > 0) {
+                    result.add(change.getValue().value());
+                }
+                change = changeIterator.hasNext() ? changeIterator.next() : null;
+            } else {
+                if (counts[i] + change.getValue().count() > 0) {
+                    result.add(value(i));
+                }
+                i++;
+                change = changeIterator.hasNext() ? changeIterator.next() : null;
+            }
+        }
+        return result;
+    }
+
+    //+1 книга со строкой value; false — дельта заполнена, изменение не учтено и индекс пора перестроить
+    public boolean add(String value) {
+        return change(value, 1);
+    }
+
+    public boolean remove(String value) {
+        return change(value, -1);
+    }
+
+    private synchronized boolean change(String value, int diff) {
+        if (value == null || value.isBlank()) {
+            return true;
+        }
+        String key = normalize(value);
+        Delta current = delta.get(key);
+        if (current == null) {
+            if (delta.size() >= maxDeltaEntries) {
+                return false;
+            }
+            delta.put(key, new Delta(value.strip(), diff));
+        } else {
+            delta.put(key, new Delta(current.value(), current.count() + diff));
+        }
+        return true;
+    }
+
+    public int size() {
+        return counts.length;
+    }
+
+    public int deltaSize() {
+        return delta.size();
+    }
+
+    //Память снимка: символы, смещения и счетчики
+    public long memoryBytes() {
+        return chars.length * 2L + offsets.length * 4L + counts.length * 4L;
+    }
+
+    private String value(int i) {
+        return new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+    }
+
+    //Первая запись, которая не меньше префикса (upper = false) или уже больше него (upper = true)
+    private int bound(String prefix, boolean upper) {
+        int low = 0;
+        int high = counts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparePrefix(mid, prefix);
+            if (cmp < 0 || (upper && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    //0 — запись начинается с префикса
+    private int comparePrefix(int i, String prefix) {
+        int start = offsets[i];
+        int length = offsets[i + 1] - start;
+        int common = Math.min(length, prefix.length());
+        for (int k = 0; k < common; k++) {
+            int diff = fold(chars[start + k]) - prefix.charAt(k);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length < prefix.length() ? -1 : 0;
+    }
+
+    private int compare(int i, String key) {
+        int start = offsets[i];
+        int length = offsets[i + 1] - start;
+        int common = Math.min(length, key.length());
+        for (int k = 0; k < common; k++) {
+            int diff = fold(chars[start + k]) - key.charAt(k);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length();
+    }
+
+    private record Delta(String value, int count) {
+    }
+
+    public static final class Builder {
+
+        private final Map<String, Candidate> candidates = new HashMap<>();
+
+        private Builder() {
+        }
+
+        //Варианты, отличающиеся регистром или ё/е, сливаются; в индексе остается самый частый вариант написания
+        public void add(String value, int count) {
+            if (value == null || value.isBlank() || count <= 0) {
+                return;
+            }
+            String stripped = value.strip();
+            Candidate candidate = candidates.computeIfAbsent(normalize(stripped), key -> new Candidate(key));
+            candidate.total += count;
+            if (count > candidate.bestCount) {
+                candidate.bestCount = count;
+                candidate.value = stripped;
+            }
+        }
+
+        //Если снимок не укладывается в maxBytes, в индекс попадают самые частые строки (при равенстве — короткие)
+        public PrefixIndex build(long maxBytes, int maxDeltaEntries) {
+            List<Candidate> selected = new ArrayList<>(candidates.values());
+            candidates.clear();
+            if (selected.stream().mapToLong(Candidate::bytes).sum() > maxBytes) {
+                selected.sort(Comparator.comparingLong((Candidate candidate) -> candidate.total).reversed()
+                        .thenComparingInt(candidate -> candidate.key.length()));
+                List<Candidate> fitting = new ArrayList<>();
+                long used = 0;
+                for (Candidate candidate : selected) {
+                    if (used + candidate.bytes() <= maxBytes) {
+                        fitting.add(candidate);
+                        used += candidate.bytes();
+                    }
+                }
+                selected = fitting;
+            }
+            selected.sort(Comparator.comparing(candidate -> candidate.key));
+            long totalChars = selected.stream().mapToLong(candidate -> candidate.key.length()).sum();
+
+            char[] chars = new char[(int) totalChars];
+            int[] offsets = new int[selected.size() + 1];
+            int[] counts = new int[selected.size()];
+            int position = 0;
+            for (int i = 0; i < selected.size(); i++) {
+                Candidate candidate = selected.get(i);
+                candidate.value.getChars(0, candidate.value.length(), chars, position);
+                offsets[i] = position;
+                counts[i] = (int) Math.min(candidate.total, Integer.MAX_VALUE);
+                position += candidate.value.length();
+            }
+            offsets[selected.size()] = position;
+            return new PrefixIndex(chars, offsets, counts, maxDeltaEntries);
+        }
+
+        private static final class Candidate {
+
+            private final String key;
+            private String value;
+            private long total;
+            private long bestCount;
+
+            private Candidate(String key) {
+                this.key = key;
+            }
+
+            //Символы, смещение и счетчик в снимке
+            private long bytes() {
+                return key.length() * 2L + 8;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+-- Счетчики в строке books_catalog_state блокировали ее до коммита каждой пишущей транзакции: все записи
+-- в books шли по очереди, а пакеты, блокирующие книги в порядке id, взаимоблокировались на этой строке.
+-- Версия каталога теперь берется из номеров ленты изменений (V1_0_8), которые ставятся без блокировок
+DROP TRIGGER IF EXISTS books_bump_revision ON books;
+DROP FUNCTION IF EXISTS books_bump_revision();
+
+DROP TRIGGER IF EXISTS books_count_deletions ON books;
+DROP FUNCTION IF EXISTS books_count_deletions();
+
+ALTER TABLE books_catalog_state
+    DROP COLUMN IF EXISTS revision,
+    DROP COLUMN IF EXISTS deletions;
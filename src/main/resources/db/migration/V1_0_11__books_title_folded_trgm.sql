@@ -0,0 +1,19 @@
+-- Подстрочный поиск api/books/search сравнивает title с запросом после замены ё на е, как и search_vector.
+-- Триграммный индекс по выражению; idx_books_title_trgm остается для фильтров по title.
+-- Миграция выполняется без общей транзакции (V1_0_11__books_title_folded_trgm.sql.conf), чтобы индекс
+-- строился без блокировки записи
+
+-- Недостроенный после сбоя индекс остается INVALID: его удаляем и строим заново
+DO
+$$
+BEGIN
+    IF EXISTS (SELECT 1
+               FROM pg_index
+               WHERE indexrelid = to_regclass('idx_books_title_folded_trgm')
+                 AND NOT indisvalid) THEN
+        DROP INDEX idx_books_title_folded_trgm;
+    END IF;
+END
+$$;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_books_title_folded_trgm
+    ON books USING gin (translate(title, 'ёЁ', 'еЕ') gin_trgm_ops);
@@ -0,0 +1,2 @@
+-- Индекс под keyset-пагинацию: ORDER BY title, id и условие (title, id) > (:title, :id)
+CREATE INDEX IF NOT EXISTS idx_books_title_id ON books (title, id);
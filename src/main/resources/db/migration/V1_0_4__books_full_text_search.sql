@@ -0,0 +1,15 @@
+-- Полнотекстовый поиск по title и brand (русская морфология, ё приводится к е)
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE books
+    ADD COLUMN IF NOT EXISTS search_vector tsvector
+        GENERATED ALWAYS AS (
+            setweight(to_tsvector('russian', translate(title, 'ёЁ', 'еЕ')), 'A') ||
+            setweight(to_tsvector('russian', translate(brand, 'ёЁ', 'еЕ')), 'B')
+        ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING gin (search_vector);
+
+-- Триграммные индексы: подстрочный поиск ILIKE '%...%' (в том числе в findByFilters) без полного сканирования
+CREATE INDEX IF NOT EXISTS idx_books_title_trgm ON books USING gin (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_books_brand_trgm ON books USING gin (brand gin_trgm_ops);
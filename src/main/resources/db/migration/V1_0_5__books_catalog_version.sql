@@ -0,0 +1,28 @@
+-- Индекс для дешевого max(updated_at) при расчете ETag каталога
+CREATE INDEX IF NOT EXISTS idx_books_updated_at ON books (updated_at);
+
+-- Удаление не меняет max(updated_at), поэтому удаления считаются отдельно
+CREATE TABLE IF NOT EXISTS books_catalog_state
+(
+    id        SMALLINT PRIMARY KEY CHECK (id = 1),
+    deletions BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO books_catalog_state (id, deletions)
+VALUES (1, 0)
+ON CONFLICT (id) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION books_count_deletions() RETURNS trigger AS
+$$
+BEGIN
+    UPDATE books_catalog_state SET deletions = deletions + 1 WHERE id = 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS books_count_deletions ON books;
+CREATE TRIGGER books_count_deletions
+    AFTER DELETE
+    ON books
+    FOR EACH STATEMENT
+EXECUTE FUNCTION books_count_deletions();
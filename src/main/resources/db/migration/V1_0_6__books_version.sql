@@ -0,0 +1,3 @@
+-- Версия строки для оптимистической блокировки: каждое изменение книги увеличивает ее на 1
+ALTER TABLE books
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
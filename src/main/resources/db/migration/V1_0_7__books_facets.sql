@@ -0,0 +1,12 @@
+-- Фасеты фильтра: число книг по каждой паре (brand, year). Запрос фасетов суммирует строки витрины,
+-- а не группирует всю таблицу books; витрина обновляется по расписанию REFRESH ... CONCURRENTLY без блокировки чтения
+CREATE MATERIALIZED VIEW IF NOT EXISTS books_facets AS
+SELECT brand, year, count(*) AS books
+FROM books
+GROUP BY brand, year;
+
+-- Уникальный индекс обязателен для REFRESH MATERIALIZED VIEW CONCURRENTLY
+CREATE UNIQUE INDEX IF NOT EXISTS idx_books_facets_brand_year ON books_facets (brand, year);
+
+-- Подстрока brand ILIKE '%...%', как в фильтре списка
+CREATE INDEX IF NOT EXISTS idx_books_facets_brand_trgm ON books_facets USING gin (brand gin_trgm_ops);
@@ -0,0 +1,124 @@
+-- Лента изменений api/books/changes. Каждая вставка и изменение книги получает номер транзакции (xid8)
+-- и номер из последовательности; курсор ленты — пара (change_xid, change_seq).
+-- Миграция выполняется без общей транзакции (V1_0_8__books_changes.sql.conf): books не переписывается
+-- целиком и не блокируется на все время заполнения номеров, приложение продолжает писать.
+-- Каждый шаг можно повторить, если миграция прервалась
+CREATE SEQUENCE IF NOT EXISTS books_change_seq;
+
+-- Без значения по умолчанию столбцы добавляются без переписывания таблицы
+ALTER TABLE books
+    ADD COLUMN IF NOT EXISTS change_xid xid8,
+    ADD COLUMN IF NOT EXISTS change_seq BIGINT;
+
+CREATE OR REPLACE FUNCTION books_stamp_change() RETURNS trigger AS
+$$
+BEGIN
+    NEW.change_xid := pg_current_xact_id();
+    NEW.change_seq := nextval('books_change_seq');
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Триггер до заполнения: книги, вставленные и измененные во время заполнения, получают номер сами
+DROP TRIGGER IF EXISTS books_stamp_change ON books;
+CREATE TRIGGER books_stamp_change
+    BEFORE INSERT OR UPDATE
+    ON books
+    FOR EACH ROW
+EXECUTE FUNCTION books_stamp_change();
+
+-- Существующие книги порциями по id, каждая порция в своей транзакции: блокируются только строки порции.
+-- Номер ставит триггер books_stamp_change
+DO
+$$
+DECLARE
+    batch_size CONSTANT BIGINT := 1000;
+    next_id             BIGINT;
+    max_id              BIGINT;
+BEGIN
+    SELECT min(id), max(id) INTO next_id, max_id FROM books WHERE change_seq IS NULL;
+    WHILE next_id <= max_id
+        LOOP
+            UPDATE books
+            SET change_seq = NULL
+            WHERE id >= next_id
+              AND id < next_id + batch_size
+              AND change_seq IS NULL;
+            next_id := next_id + batch_size;
+            COMMIT;
+        END LOOP;
+END
+$$;
+
+-- NOT NULL через проверенное ограничение: VALIDATE не мешает записи, а SET NOT NULL
+-- по нему не сканирует таблицу под ACCESS EXCLUSIVE
+ALTER TABLE books
+    DROP CONSTRAINT IF EXISTS books_change_not_null;
+ALTER TABLE books
+    ADD CONSTRAINT books_change_not_null CHECK (change_xid IS NOT NULL AND change_seq IS NOT NULL) NOT VALID;
+ALTER TABLE books
+    VALIDATE CONSTRAINT books_change_not_null;
+ALTER TABLE books
+    ALTER COLUMN change_xid SET NOT NULL,
+    ALTER COLUMN change_seq SET NOT NULL;
+ALTER TABLE books
+    DROP CONSTRAINT books_change_not_null;
+
+-- Значения по умолчанию — для строк, записанных при выключенных триггерах (session_replication_role = replica);
+-- на существующие строки не влияют
+ALTER TABLE books
+    ALTER COLUMN change_xid SET DEFAULT pg_current_xact_id(),
+    ALTER COLUMN change_seq SET DEFAULT nextval('books_change_seq');
+
+-- Недостроенный после сбоя индекс остается INVALID: его удаляем и строим заново
+DO
+$$
+BEGIN
+    IF EXISTS (SELECT 1
+               FROM pg_index
+               WHERE indexrelid = to_regclass('idx_books_change')
+                 AND NOT indisvalid) THEN
+        DROP INDEX idx_books_change;
+    END IF;
+END
+$$;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_books_change ON books (change_xid, change_seq);
+
+-- Удаленные книги: строка из books пропадает, а в ленте остается запись об удалении
+CREATE TABLE IF NOT EXISTS books_deletions
+(
+    change_xid  xid8        NOT NULL,
+    change_seq  BIGINT      NOT NULL,
+    book_id     BIGINT      NOT NULL,
+    vendor_code VARCHAR(50) NOT NULL,
+    deleted_at  TIMESTAMP   NOT NULL DEFAULT LOCALTIMESTAMP,
+    PRIMARY KEY (change_xid, change_seq)
+);
+
+-- Для удаления старых записей по сроку хранения
+CREATE INDEX IF NOT EXISTS idx_books_deletions_deleted_at ON books_deletions (deleted_at);
+
+-- Одна вставка на оператор DELETE, в том числе массовый по фильтру
+CREATE OR REPLACE FUNCTION books_log_deletions() RETURNS trigger AS
+$$
+BEGIN
+    INSERT INTO books_deletions (change_xid, change_seq, book_id, vendor_code)
+    SELECT pg_current_xact_id(), nextval('books_change_seq'), id, vendor_code
+    FROM deleted_books;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS books_log_deletions ON books;
+CREATE TRIGGER books_log_deletions
+    AFTER DELETE
+    ON books
+    REFERENCING OLD TABLE AS deleted_books
+    FOR EACH STATEMENT
+EXECUTE FUNCTION books_log_deletions();
+
+-- Наибольшая позиция среди удаленных по сроку хранения записей: курсор до нее мог пропустить удаления.
+-- Постоянное значение по умолчанию таблицу не переписывает
+ALTER TABLE books_catalog_state
+    ADD COLUMN IF NOT EXISTS changes_horizon_xid xid8   NOT NULL DEFAULT '0',
+    ADD COLUMN IF NOT EXISTS changes_horizon_seq BIGINT NOT NULL DEFAULT 0;
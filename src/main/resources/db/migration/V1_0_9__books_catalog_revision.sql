@@ -0,0 +1,21 @@
+-- Версия каталога для ETag списков и пересчета фасетов. max(updated_at) не годится: updated_at берется
+-- из времени начала транзакции, и запись, закоммиченная позже, может принести меньшее значение.
+-- Счетчик увеличивается триггером в той же транзакции, что и запись; строка books_catalog_state
+-- остается заблокированной до коммита, поэтому значения идут в порядке коммитов
+ALTER TABLE books_catalog_state
+    ADD COLUMN IF NOT EXISTS revision BIGINT NOT NULL DEFAULT 0;
+
+CREATE OR REPLACE FUNCTION books_bump_revision() RETURNS trigger AS
+$$
+BEGIN
+    UPDATE books_catalog_state SET revision = revision + 1 WHERE id = 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS books_bump_revision ON books;
+CREATE TRIGGER books_bump_revision
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE
+    ON books
+    FOR EACH STATEMENT
+EXECUTE FUNCTION books_bump_revision();
@@ -0,0 +1,108 @@
+package by.aleksabrakor.tzForBookvoed.benchmark;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.mapper.BookMapper;
+import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение путей чтения списка книг: сущности + BookMapper против выборки сразу в BookDto.
+ * Запуск: mvn test -Dtest=BookListReadPathBenchmarkTest -Dsurefire.excludedGroups=none
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Tag("benchmark")
+class BookListReadPathBenchmarkTest {
+
+    private static final int CATALOG_SIZE = 2_000;
+    private static final int WARMUP_ITERATIONS = 30;
+    private static final int MEASURED_ITERATIONS = 100;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        bookService.saveBooks(IntStream.range(0, CATALOG_SIZE)
+                .mapToObj(i -> BookDto.builder()
+                        .vendorCode("BENCH-" + i)
+                        .title("Бенчмарк книга " + i)
+                        .brand("Бенчмарк автор " + (i % 50))
+                        .year(1900 + i % 120)
+                        .stock(i % 10)
+                        .price(BigDecimal.valueOf(100 + i % 900, 2))
+                        .build())
+                .toList());
+    }
+
+    @Test
+    @DisplayName("Аллокации и время страницы списка: сущности + маппер против DTO-проекции")
+    void compareEntityAndProjectionReadPaths() {
+        System.out.printf("%-10s %-8s %14s %16s%n", "path", "rows", "avg, us/op", "alloc, KB/op");
+        for (int pageSize : List.of(10, 100, 1000)) {
+            Pageable pageable = PageRequest.of(0, pageSize, Sort.by("title"));
+
+            Page<BookDto> viaEntities = measure("entity", pageSize, p ->
+                    bookMapper.toDtoPage(bookRepository.findByFilters(null, "Бенчмарк", null, p)), pageable);
+            Page<BookDto> viaProjection = measure("dto", pageSize, p ->
+                    bookRepository.findDtoByFilters(null, "Бенчмарк", null, p), pageable);
+
+            assertEquals(viaEntities.getContent(), viaProjection.getContent());
+        }
+    }
+
+    private Page<BookDto> measure(String path, int pageSize, Function<Pageable, Page<BookDto>> query, Pageable pageable) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            readOnlyTransaction.execute(status -> query.apply(pageable));
+        }
+
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long startedAt = System.nanoTime();
+        Page<BookDto> result = null;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            result = readOnlyTransaction.execute(status -> query.apply(pageable));
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        long allocatedBytes = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("%-10s %-8d %14.1f %16.1f%n", path, pageSize,
+                elapsedNanos / 1_000.0 / MEASURED_ITERATIONS,
+                allocatedBytes / 1024.0 / MEASURED_ITERATIONS);
+        return result;
+    }
+}
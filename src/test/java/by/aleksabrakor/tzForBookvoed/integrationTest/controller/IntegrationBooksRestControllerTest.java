@@ -10,10 +10,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithAnonymousUser;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -22,6 +25,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @AutoConfigureMockMvc
 @Transactional
+//Изменения в api/books требуют роли ADMIN (Bearer-токен); здесь она подставляется напрямую
+@WithMockUser(roles = "ADMIN")
 class IntegrationBooksRestControllerTest {
 
     @Autowired
@@ -281,4 +286,38 @@ class IntegrationBooksRestControllerTest {
                 .andExpect(jsonPath("$.message").value("Object was not found: Книга с id: " + bookId + " не найдена."))
         ;
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithAnonymousUser
+    @DisplayName("Вернет 401 при добавлении книги без токена")
+    void createBook_ShouldReturns401_WhenNoToken() throws Exception {
+        String bookJson = """
+                {
+                    "vendorCode": "b-401",
+                     "title": "Book1",
+                     "brand": "Author 1",
+                     "year": 1984
+                }
+                """;
+
+        mockMvc.perform(post("/api/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(bookJson))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithAnonymousUser
+    @DisplayName("Метрики: без входа 401, с ролью USER 403, ADMIN по Basic-заголовку 200; health открыт")
+    void actuator_ShouldRequireAdmin() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("user", "userpassword")))
+                .andExpect(status().isForbidden());
+        // В тестах Spring Boot не поднимает экспорт в Prometheus, поэтому успешный вход проверяется на /actuator/metrics
+        mockMvc.perform(get("/actuator/metrics").with(httpBasic("admin", "password")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,126 @@
+package by.aleksabrakor.tzForBookvoed.integrationTest.service;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkUpdateDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.dto.StockDecrementDto;
+import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.service.BookColumnStore;
+import by.aleksabrakor.tzForBookvoed.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Каталог в памяти на базе с правилом сравнения не по кодам символов (en_US.utf8 в образе postgres)
+@SpringBootTest(properties = {"books.columnar.enabled=true", "books.columnar.catch-up-interval=1h"})
+@ActiveProfiles("test")
+class IntegrationBookColumnStoreTest {
+
+    @Autowired
+    private BookColumnStore bookColumnStore;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository.deleteAll();
+        for (String title : List.of("apple", "Zebra", "ёлка", "Яблоко", "ель", "Banana", "яблоко", "Ель")) {
+            save(title);
+        }
+        bookColumnStore.refresh();
+    }
+
+    @Test
+    @DisplayName("Порядок списка из памяти совпадает с ORDER BY title, id базы, в том числе после новых названий")
+    void findPage_ShouldFollowDatabaseCollation() {
+        assertEquals(databaseOrder(), memoryOrder());
+        // Правило базы действительно не по кодам символов
+        assertNotEquals(databaseOrder().stream().sorted().toList(), databaseOrder());
+
+        save("Ежевика");
+        save("banana split");
+        BookDto renamed = bookService.findBooksSlice("zebra", null, null, 0, 1).getContent().get(0);
+        renamed.setTitle("Ёж");
+        bookService.updateBook(renamed.getId(), renamed);
+        // Новые названия еще не размещены: список отдает база
+        double fromMemory = fromMemory();
+        assertEquals(databaseOrder(), bookService.findAllBooks(null, null, null, 0, 50).getContent().stream()
+                .map(BookDto::getId).toList());
+        assertEquals(fromMemory, fromMemory());
+
+        bookColumnStore.refresh();
+
+        assertEquals(databaseOrder(), memoryOrder());
+        assertTrue(fromMemory() > fromMemory);
+    }
+
+    @Test
+    @DisplayName("Запоздавшая запись удаленной книги не возвращает ее в список из памяти")
+    void bookSaved_AfterDelete_ShouldNotResurrectBook() {
+        BookDto book = bookService.findBooksSlice("apple", null, null, 0, 1).getContent().get(0);
+        bookService.deleteBook(book.getId());
+        book.setVersion(book.getVersion() + 1);
+
+        bookColumnStore.bookSaved(book);
+        bookColumnStore.refresh();
+
+        assertEquals(databaseOrder(), memoryOrder());
+        assertFalse(memoryOrder().contains(book.getId()));
+    }
+
+    @Test
+    @DisplayName("Списание, массовое изменение и удаление видны в памяти сразу, без догона")
+    void bulkWrites_ShouldReachMemoryWithoutCatchUp() {
+        List<Long> ids = databaseOrder();
+        jdbcTemplate.update("UPDATE books SET stock = 10, updated_at = LOCALTIMESTAMP, version = version + 1");
+        bookColumnStore.refresh();
+
+        bookService.decrementStocks(List.of(new StockDecrementDto(ids.get(0), 3), new StockDecrementDto(ids.get(1), 4)));
+        bookService.updateBooks(new BookFilterDto("ель", null, null, null, null), new BookBulkUpdateDto(null, 1), false);
+        bookService.deleteBooks(new BookFilterDto("яблоко", null, null, null, null), false);
+
+        assertEquals(databaseOrder(), memoryOrder());
+        assertEquals(jdbcTemplate.queryForList("SELECT stock FROM books ORDER BY title, id", Integer.class),
+                bookColumnStore.findPage(null, null, null, PageRequest.of(0, 50)).orElseThrow().getContent().stream()
+                        .map(BookDto::getStock).toList());
+    }
+
+    private void save(String title) {
+        bookService.saveBook(new BookDto(null, "VC-" + title.hashCode(), title, "Автор", 2020, 1,
+                new BigDecimal("10.00"), null, null));
+    }
+
+    private List<Long> databaseOrder() {
+        return jdbcTemplate.queryForList("SELECT id FROM books ORDER BY title, id", Long.class);
+    }
+
+    private List<Long> memoryOrder() {
+        return bookColumnStore.findPage(null, null, null, PageRequest.of(0, 50)).orElseThrow().getContent().stream()
+                .map(BookDto::getId).toList();
+    }
+
+    private double fromMemory() {
+        return meterRegistry.get("books.columnar.queries").tag("source", "memory").counter().count();
+    }
+}
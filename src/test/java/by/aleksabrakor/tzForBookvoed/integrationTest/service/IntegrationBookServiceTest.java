@@ -1,10 +1,14 @@
 package by.aleksabrakor.tzForBookvoed.integrationTest.service;
 
 import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.dto.StockDecrementDto;
 import by.aleksabrakor.tzForBookvoed.entity.Book;
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
 import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
 import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
 import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.service.BookChangesMonitor;
 import by.aleksabrakor.tzForBookvoed.service.BookService;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,12 +18,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.*;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
+import javax.sql.DataSource;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -35,6 +49,15 @@ class IntegrationBookServiceTest {
     @Autowired
     public BookService bookService;
 
+    @Autowired
+    private BookChangesMonitor bookChangesMonitor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
     @BeforeEach
     void setUp() {
         System.out.println("Очистка БД - настройка перед тестом");
@@ -426,4 +449,189 @@ class IntegrationBookServiceTest {
 
         assertTrue(result.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Полнотекстовый поиск по % - символ ищется буквально, а не как шаблон ILIKE")
+    void searchBooks_WhenQueryIsWildcard_ShouldMatchLiterally() {
+        //Подготовка тестовых данных
+        Book book = new Book();
+        book.setTitle("TestTitle");
+        book.setBrand("TestBrand");
+        book.setVendorCode("TestVendorCode");
+        book.setYear(2020);
+
+        Book discount = new Book();
+        discount.setTitle("Скидка 100%");
+        discount.setBrand("TestBrand");
+        discount.setVendorCode("TestVendorCode2");
+        discount.setYear(2020);
+
+        bookRepository.saveAllAndFlush(List.of(book, discount));
+
+        // Выполнение запроса и проверка результата
+        assertTrue(bookService.searchBooks("_", 0, 20).isEmpty());
+
+        List<BookDto> result = bookService.searchBooks("%", 0, 20);
+        assertEquals(1, result.size());
+        assertEquals("Скидка 100%", result.get(0).getTitle());
+    }
+
+    @Test
+    @DisplayName("Полнотекстовый поиск по подстроке с ё и е - одинаковый результат")
+    void searchBooks_WhenSubstringDiffersByYo_ShouldFindSameBook() {
+        //Подготовка тестовых данных
+        Book book = new Book();
+        book.setTitle("Новогодняяёлка");
+        book.setBrand("TestBrand");
+        book.setVendorCode("TestVendorCode");
+        book.setYear(2020);
+
+        bookRepository.saveAndFlush(book);
+
+        // Выполнение запроса и проверка результата
+        List<BookDto> withYo = bookService.searchBooks("яёлк", 0, 20);
+        List<BookDto> withYe = bookService.searchBooks("яелк", 0, 20);
+        assertEquals(1, withYo.size());
+        assertEquals(1, withYe.size());
+        assertEquals(book.getId(), withYo.get(0).getId());
+        assertEquals(book.getId(), withYe.get(0).getId());
+    }
+
+    @Test
+    @DisplayName("Массовое удаление по title=% - 400, а % внутри подстроки ищется буквально")
+    void deleteBooks_WhenTitleHasWildcards_ShouldNotWipeCatalog() {
+        //Подготовка тестовых данных
+        Book book = new Book();
+        book.setTitle("TestTitle");
+        book.setBrand("TestBrand");
+        book.setVendorCode("TestVendorCode");
+        book.setYear(2020);
+
+        Book discount = new Book();
+        discount.setTitle("Скидка 100%");
+        discount.setBrand("TestBrand");
+        discount.setVendorCode("TestVendorCode2");
+        discount.setYear(2020);
+
+        bookRepository.saveAllAndFlush(List.of(book, discount));
+
+        // Выполнение запроса и проверка результата
+        assertThrows(BadRequestException.class,
+                () -> bookService.deleteBooks(new BookFilterDto("%", null, null, null, null), false));
+        assertEquals(0, bookService.deleteBooks(new BookFilterDto("T_st", null, null, null, null), false).getAffected());
+        assertEquals(1, bookService.deleteBooks(new BookFilterDto("0%", null, null, null, null), false).getAffected());
+        assertEquals(List.of("TestTitle"), bookRepository.findAll().stream().map(Book::getTitle).toList());
+    }
+
+    @Test
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @DisplayName("ETag каталога меняется после коммита каждой вставки, изменения и удаления книги")
+    void catalogETag_ShouldChangeOnEveryWrite() {
+        //Подготовка тестовых данных
+        Book book = new Book();
+        book.setTitle("TestTitle");
+        book.setBrand("TestBrand");
+        book.setVendorCode("TestVendorCode");
+        book.setYear(2020);
+
+        // Выполнение запроса и проверка результата
+        // Тест без транзакции: каждая запись коммитится сразу
+        String initial = bookService.catalogETag();
+        book = bookRepository.saveAndFlush(book);
+        String afterInsert = bookService.catalogETag();
+        book.setYear(2021);
+        book = bookRepository.saveAndFlush(book);
+        String afterUpdate = bookService.catalogETag();
+        bookRepository.delete(book);
+        bookRepository.flush();
+        String afterDelete = bookService.catalogETag();
+
+        assertNotEquals(initial, afterInsert);
+        assertNotEquals(afterInsert, afterUpdate);
+        assertNotEquals(afterUpdate, afterDelete);
+        assertEquals(afterDelete, bookService.catalogETag());
+    }
+
+    @Test
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @DisplayName("Встречные пакеты списания по пересекающимся книгам выполняются без взаимной блокировки")
+    void decrementStocks_OverlappingBatchesConcurrently_ShouldNotDeadlock() throws Exception {
+        //Подготовка тестовых данных
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setTitle("TestTitle" + i);
+            book.setBrand("TestBrand");
+            book.setVendorCode("StockVendorCode" + i);
+            book.setYear(2020);
+            book.setStock(1000);
+            ids.add(bookRepository.saveAndFlush(book).getId());
+        }
+        int rounds = 50;
+
+        // Выполнение запроса и проверка результата
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                // Пакеты пересекаются по второй книге и стартуют одновременно
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<List<StockDecrementDto>> first = executor.submit(() -> {
+                    start.await();
+                    return bookService.decrementStocks(List.of(
+                            new StockDecrementDto(ids.get(0), 1), new StockDecrementDto(ids.get(1), 1)));
+                });
+                Future<List<StockDecrementDto>> second = executor.submit(() -> {
+                    start.await();
+                    return bookService.decrementStocks(List.of(
+                            new StockDecrementDto(ids.get(1), 1), new StockDecrementDto(ids.get(2), 1)));
+                });
+                first.get(30, TimeUnit.SECONDS);
+                second.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(1000 - rounds, 1000 - 2 * rounds, 1000 - rounds),
+                ids.stream().map(id -> bookRepository.findById(id).orElseThrow().getStock()).toList());
+        // Книги закоммичены: остальные тесты класса откатывают только свои изменения
+        bookRepository.deleteAllById(ids);
+    }
+
+    @Test
+    @DisplayName("Номера ленты изменений: NOT NULL, значения по умолчанию, рабочий индекс; тайм-аут простаивающих транзакций — у пула")
+    void changesMigration_ShouldLeaveColumnsNotNullAndIndexValid() {
+        assertEquals(List.of("NO", "NO"), jdbcTemplate.queryForList("SELECT is_nullable FROM information_schema.columns " +
+                "WHERE table_name = 'books' AND column_name IN ('change_xid', 'change_seq')", String.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(column_default) FROM information_schema.columns " +
+                "WHERE table_name = 'books' AND column_name IN ('change_xid', 'change_seq')", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM pg_constraint " +
+                "WHERE conname = 'books_change_not_null'", Integer.class));
+        assertTrue(jdbcTemplate.queryForObject("SELECT indisvalid FROM pg_index " +
+                "WHERE indexrelid = 'idx_books_change'::regclass", Boolean.class));
+        // Тайм-аут задает пул приложения, миграция настройки сервера не меняет
+        assertEquals("5min", jdbcTemplate.queryForObject("SELECT current_setting('idle_in_transaction_session_timeout')",
+                String.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM pg_db_role_setting " +
+                "WHERE setdatabase = (SELECT oid FROM pg_database WHERE datname = current_database())", Integer.class));
+    }
+
+    @Test
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    @DisplayName("Открытая пишущая транзакция видна в возрасте самой старой транзакции ленты изменений")
+    void changesMonitor_ShouldSeeOpenWriteTransaction() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            // Номер транзакции выдается при первой записи или по запросу
+            statement.execute("SELECT pg_current_xact_id()");
+            Thread.sleep(1100);
+
+            bookChangesMonitor.check();
+            assertTrue(bookChangesMonitor.getOldestTransactionAge() >= 1);
+
+            connection.rollback();
+        }
+        bookChangesMonitor.check();
+        assertTrue(bookChangesMonitor.getOldestTransactionAge() < 1);
+    }
+}
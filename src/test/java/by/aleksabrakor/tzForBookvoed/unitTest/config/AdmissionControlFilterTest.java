@@ -0,0 +1,99 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.config;
+
+import by.aleksabrakor.tzForBookvoed.config.AdmissionControlFilter;
+import by.aleksabrakor.tzForBookvoed.config.ThreadingConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new AdmissionControlFilter(1, Duration.ZERO, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Запрос сверх лимита получает 503, слот освобождается после обработки")
+    void doFilter_WhenLimitReached_ShouldRejectWith503() throws Exception {
+        MockHttpServletResponse nestedResponse = new MockHttpServletResponse();
+        // Пока первый запрос обрабатывается, второй не допускается
+        MockFilterChain holdingChain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                try {
+                    filter.doFilter(new MockHttpServletRequest("GET", "/api/books"), nestedResponse, new MockFilterChain());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/books"), response, holdingChain);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(503, nestedResponse.getStatus());
+        assertEquals("1", nestedResponse.getHeader("Retry-After"));
+        assertEquals(1.0, meterRegistry.get("books.admission.rejected").counter().count());
+        assertEquals(0.0, meterRegistry.get("books.admission.active").gauge().value());
+
+        // После завершения первого запроса слот снова свободен
+        MockHttpServletResponse next = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/books"), next, new MockFilterChain());
+        assertEquals(200, next.getStatus());
+    }
+
+    @Test
+    @DisplayName("Actuator не проходит через лимит допуска")
+    void doFilter_ForActuator_ShouldBypassLimit() throws Exception {
+        MockHttpServletResponse nestedResponse = new MockHttpServletResponse();
+        MockFilterChain holdingChain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                try {
+                    filter.doFilter(new MockHttpServletRequest("GET", "/actuator/prometheus"), nestedResponse,
+                            new MockFilterChain());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/books"), new MockHttpServletResponse(), holdingChain);
+
+        assertEquals(200, nestedResponse.getStatus());
+    }
+
+    @Test
+    @DisplayName("Лимит по умолчанию равен пулу соединений: запросы сверх пула получают 503, а не 500 от Hikari")
+    void admissionControlFilter_WhenLimitNotSet_ShouldUsePoolSize() {
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setMaximumPoolSize(7);
+            dataSource.setConnectionTimeout(5000);
+
+            AdmissionControlFilter byPool = new ThreadingConfig()
+                    .admissionControlFilter(0, Duration.ofSeconds(2), dataSource, meterRegistry).getFilter();
+            AdmissionControlFilter configured = new ThreadingConfig()
+                    .admissionControlFilter(3, Duration.ofSeconds(2), dataSource, new SimpleMeterRegistry()).getFilter();
+
+            assertEquals(7, byPool.getMaxConcurrent());
+            assertEquals(3, configured.getMaxConcurrent());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.config;
+
+import by.aleksabrakor.tzForBookvoed.config.ReadYourWritesTracker;
+import by.aleksabrakor.tzForBookvoed.config.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection firstReplicaConnection = mock(Connection.class);
+    private final Connection secondReplicaConnection = mock(Connection.class);
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReadYourWritesTracker readYourWrites;
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        readYourWrites = new ReadYourWritesTracker(Duration.ofMinutes(1));
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", dataSource(firstReplicaConnection));
+        replicas.put("replica-2", dataSource(secondReplicaConnection));
+        routing = new ReplicaRoutingDataSource(dataSource(primaryConnection), replicas, Duration.ofSeconds(10),
+                readYourWrites, meterRegistry);
+        routing.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Чтение распределяется по репликам по кругу")
+    void getConnection_ShouldRoundRobinAcrossReplicas() throws Exception {
+        assertSame(firstReplicaConnection, routing.getConnection());
+        assertSame(secondReplicaConnection, routing.getConnection());
+        assertSame(firstReplicaConnection, routing.getConnection());
+        assertEquals(2.0, meterRegistry.get("books.datasource.routed").tag("target", "replica-1").counter().count());
+    }
+
+    @Test
+    @DisplayName("Отстающая или недоступная реплика пропускается, без подходящих реплик чтение идет в primary")
+    void getConnection_WhenReplicaLags_ShouldSkipIt() throws Exception {
+        routing.updateLag("replica-1", 30);
+
+        assertSame(secondReplicaConnection, routing.getConnection());
+        assertSame(secondReplicaConnection, routing.getConnection());
+        assertEquals(30.0, meterRegistry.get("books.replica.lag").tag("replica", "replica-1").gauge().value());
+
+        routing.updateLag("replica-2", Double.NaN);
+        assertSame(primaryConnection, routing.getConnection());
+
+        routing.updateLag("replica-1", 0);
+        assertSame(firstReplicaConnection, routing.getConnection());
+    }
+
+    @Test
+    @DisplayName("После своей записи пользователь читает из primary, остальные — с реплик")
+    void getConnection_AfterOwnWrite_ShouldPinUserToPrimary() throws Exception {
+        authenticate("admin");
+        readYourWrites.afterCommit(transaction(false), null);
+
+        assertSame(primaryConnection, routing.getConnection());
+
+        authenticate("user");
+        assertSame(firstReplicaConnection, routing.getConnection());
+    }
+
+    @Test
+    @DisplayName("readOnly-транзакция и неудачный коммит не закрепляют пользователя за primary")
+    void afterCommit_WhenReadOnlyOrFailed_ShouldNotPin() throws Exception {
+        authenticate("admin");
+        readYourWrites.afterCommit(transaction(true), null);
+        readYourWrites.afterCommit(transaction(false), new IllegalStateException("commit failed"));
+
+        assertFalse(readYourWrites.isPinnedToPrimary());
+        assertSame(firstReplicaConnection, routing.getConnection());
+    }
+
+    @Test
+    @DisplayName("Чтение для кэша идет в primary даже при исправных репликах, после него — снова на реплики")
+    void readFromPrimary_ShouldRouteToPrimaryInsideScope() throws Exception {
+        // Вложенный вызов не снимает признак внешнего
+        Connection cached = ReplicaRoutingDataSource.readFromPrimary(() -> {
+            ReplicaRoutingDataSource.readFromPrimary(() -> null);
+            try {
+                return routing.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertSame(primaryConnection, cached);
+        assertSame(firstReplicaConnection, routing.getConnection());
+    }
+
+    private static DataSource dataSource(Connection connection) throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private static TransactionExecution transaction(boolean readOnly) {
+        TransactionExecution transaction = mock(TransactionExecution.class);
+        when(transaction.isNewTransaction()).thenReturn(true);
+        when(transaction.isReadOnly()).thenReturn(readOnly);
+        return transaction;
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                username, null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+    }
+}
@@ -0,0 +1,55 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.config;
+
+import by.aleksabrakor.tzForBookvoed.config.ViewRenderTimingInterceptor;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewRenderTimingInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ViewRenderTimingInterceptor interceptor;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new ViewRenderTimingInterceptor(meterRegistry);
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    @DisplayName("Время отрисовки шаблона записывается с именем представления")
+    void afterCompletion_ShouldRecordRenderTimeForView() {
+        interceptor.postHandle(request, response, null, new ModelAndView("books/list"));
+        interceptor.afterCompletion(request, response, null, null);
+
+        Timer timer = meterRegistry.find(ViewRenderTimingInterceptor.METRIC_NAME)
+                .tags("view", "books/list", "exception", "none")
+                .timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    @DisplayName("REST-ответы и редиректы не попадают в метрику отрисовки")
+    void afterCompletion_ShouldSkipRedirectsAndResponsesWithoutView() {
+        interceptor.postHandle(request, response, null, null);
+        interceptor.afterCompletion(request, response, null, null);
+
+        MockHttpServletRequest redirect = new MockHttpServletRequest();
+        interceptor.postHandle(redirect, response, null, new ModelAndView("redirect:/books"));
+        interceptor.afterCompletion(redirect, response, null, null);
+
+        assertNull(meterRegistry.find(ViewRenderTimingInterceptor.METRIC_NAME).timer());
+    }
+}
@@ -0,0 +1,73 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.controller;
+
+import by.aleksabrakor.tzForBookvoed.controller.BooksReactiveHandler;
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
+import by.aleksabrakor.tzForBookvoed.service.ReactiveBookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BooksReactiveHandlerTest {
+
+    @Mock
+    private ReactiveBookService reactiveBookService;
+
+    @InjectMocks
+    private BooksReactiveHandler booksReactiveHandler;
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToRouterFunction(booksReactiveHandler.routes()).build();
+    }
+
+    @Test
+    @DisplayName("GET /books v2 отдает книги потоком NDJSON")
+    void findBooks_ShouldStreamNdjson() {
+        when(reactiveBookService.findBooks("мир", null, 1869, null, 2L)).thenReturn(Flux.just(
+                BookDto.builder().id(1L).title("Война и мир").build(),
+                BookDto.builder().id(2L).title("Мир").build()));
+
+        webTestClient.get().uri("/books?title=мир&year=1869&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(BookDto.class).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Нечисловой параметр v2 — 400 без обращения к сервису")
+    void findBooks_WithInvalidYear_ShouldReturn400() {
+        webTestClient.get().uri("/books?year=abc")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.message").isEqualTo("Bad request: Параметр year должен быть числом");
+
+        verifyNoInteractions(reactiveBookService);
+    }
+
+    @Test
+    @DisplayName("GET /books/{id} v2 для несуществующей книги — 404")
+    void findBookById_WhenMissing_ShouldReturn404() {
+        when(reactiveBookService.findBookById(42L))
+                .thenReturn(Mono.error(new NotFoundException("Книга с id: 42 не найдена.")));
+
+        webTestClient.get().uri("/books/42")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.message").isEqualTo("Object was not found: Книга с id: 42 не найдена.");
+    }
+}
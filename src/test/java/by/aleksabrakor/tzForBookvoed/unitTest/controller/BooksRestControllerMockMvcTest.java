@@ -2,27 +2,57 @@ package by.aleksabrakor.tzForBookvoed.unitTest.controller;
 
 import by.aleksabrakor.tzForBookvoed.aspect.ExceptionHandlerAdvice;
 import by.aleksabrakor.tzForBookvoed.controller.BooksRestController;
+import by.aleksabrakor.tzForBookvoed.dto.BookBatchItemResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBatchResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkUpdateDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookChangeDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookChangesDto;
 import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.dto.CursorPageDto;
+import by.aleksabrakor.tzForBookvoed.exception.GoneException;
+import by.aleksabrakor.tzForBookvoed.exception.InsufficientStockException;
 import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
+import by.aleksabrakor.tzForBookvoed.exception.PreconditionFailedException;
 import by.aleksabrakor.tzForBookvoed.service.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
@@ -33,6 +63,9 @@ class BooksRestControllerMockMvcTest {
     @Mock
     private BookService bookService; // Мок сервиса
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private BooksRestController booksRestController; // Тестируемый контроллер с внедренным моком
 
@@ -75,6 +108,169 @@ class BooksRestControllerMockMvcTest {
         verify(bookService, times(1)).findAllBooks();
     }
 
+    @Test
+    @DisplayName("Потоковая выгрузка всех книг в формате NDJSON")
+    void streamAllBooks_ShouldWriteOneJsonObjectPerLine() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.catalogETag()).thenReturn("\"c-7\"");
+        doAnswer(invocation -> {
+            Consumer<BookDto> consumer = invocation.getArgument(0);
+            consumer.accept(BookDto.builder().id(1L).title("Book1").build());
+            consumer.accept(BookDto.builder().id(2L).title("Book2").build());
+            return null;
+        }).when(bookService).streamAllBooks(any());
+
+        // Выполнение запроса и проверка результата
+        MvcResult mvcResult = mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1L, objectMapper.readValue(lines[0], BookDto.class).getId());
+        assertEquals("Book2", objectMapper.readValue(lines[1], BookDto.class).getTitle());
+        verify(bookService, never()).findAllBooks();
+    }
+
+    @Test
+    @DisplayName("Потоковая выгрузка всех книг JSON-массивом")
+    void streamAllBooksAsArray_ShouldWriteJsonArray() throws Exception {
+        // Настройка mock-объекта
+        doAnswer(invocation -> {
+            Consumer<BookDto> consumer = invocation.getArgument(0);
+            consumer.accept(BookDto.builder().id(1L).title("Book1").build());
+            return null;
+        }).when(bookService).streamAllBooks(any());
+
+        // Выполнение запроса и проверка результата
+        MvcResult mvcResult = mockMvc.perform(get("/api/books/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
+                .andExpect(jsonPath("$[0].title").value("Book1"));
+    }
+
+    @Test
+    @DisplayName("Выгрузка CSV по фильтру: байты сервиса уходят в ответ как есть, при gzip — сжатыми")
+    void exportCsv_ShouldStreamCsvAndGzipOnRequest() throws Exception {
+        // Настройка mock-объекта
+        String csv = "id,vendor_code,title,brand,year,stock,price,updated_at\n1,b-1,Book1,Author 1,1984,5,10.00,\n";
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write(csv.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(bookService).exportCsv(eq(new BookFilterDto(null, "Author", null, null, null)), any());
+        when(bookService.catalogETag()).thenReturn("\"c-7\"");
+
+        // Выполнение запроса и проверка результата
+        MvcResult plain = mockMvc.perform(get("/api/books/export.csv").param("brand", "Author"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(plain))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv;charset=UTF-8"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"c-7\""))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string(csv));
+
+        MvcResult gzipped = mockMvc.perform(get("/api/books/export.csv").param("brand", "Author")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(gzipped))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"c-7-gzip\""))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(csv, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @DisplayName("Выгрузка CSV: gzip;q=0 — отказ от сжатия, If-None-Match сжатого представления не подходит к несжатому")
+    void exportCsv_WhenGzipNotAcceptable_ShouldSendIdentity() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.catalogETag()).thenReturn("\"c-7\"");
+
+        // Выполнение запроса и проверка результата
+        MvcResult refused = mockMvc.perform(get("/api/books/export.csv")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"c-7-gzip\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(refused))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"c-7\""));
+
+        mockMvc.perform(get("/api/books/export.csv")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "br, *;q=0.5")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"c-7-gzip\""))
+                .andExpect(status().isNotModified());
+        // Выгрузка шла только для первого запроса
+        verify(bookService, times(1)).exportCsv(any(), any());
+    }
+
+    @Test
+    @DisplayName("Keyset-пагинация: страница и курсор на следующую")
+    void findBooksAfter_ShouldReturnPageWithNextCursor() throws Exception {
+        // Настройка mock-объекта
+        CursorPageDto<BookDto> page = new CursorPageDto<>(
+                List.of(BookDto.builder().id(1L).title("Book1").build()), "next", true);
+        when(bookService.findBooksAfter("Book", null, null, "prev", 1)).thenReturn(page);
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(get("/api/books/page")
+                        .param("title", "Book")
+                        .param("after", "prev")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].title").value("Book1"))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.hasNext").value(true));
+        verify(bookService, times(1)).findBooksAfter("Book", null, null, "prev", 1);
+    }
+
+    @Test
+    @DisplayName("Список без подсчета total: признак следующей страницы и приблизительное число книг")
+    void findBooksSlice_ShouldReturnHasNextAndApproximateTotal() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.findBooksSlice(null, null, null, 0, 1)).thenReturn(new SliceImpl<>(
+                List.of(BookDto.builder().id(1L).title("Book1").build()), PageRequest.of(0, 1), true));
+        when(bookService.approximateBookCount(null, null, null)).thenReturn(400_000L);
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(get("/api/books/slice").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].title").value("Book1"))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.page").value(0))
+                .andExpect(jsonPath("$.approximateTotal").value(400_000));
+        verify(bookService, never()).findAllBooks(any(), any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Полнотекстовый поиск книг")
+    void searchBooks_ShouldReturnRankedBooks() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.searchBooks("мастер", 0, 20))
+                .thenReturn(List.of(BookDto.builder().id(3L).title("Мастер и Маргарита").build()));
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(get("/api/books/search").param("q", "мастер"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[0].title").value("Мастер и Маргарита"));
+        verify(bookService, times(1)).searchBooks("мастер", 0, 20);
+    }
+
     @Test
     @DisplayName("Поиск книги по существующему id")
     void findBookById_ShouldReturnBook_WhenBookExists() throws Exception {
@@ -100,6 +296,73 @@ class BooksRestControllerMockMvcTest {
         verify(bookService, times(1)).findBookById(id);
     }
 
+    @Test
+    @DisplayName("Вернет 304 без тела, если ETag книги совпадает с If-None-Match")
+    void findBookById_ShouldReturnNotModified_WhenETagMatches() throws Exception {
+        // Подготовка тестовых данных
+        Long id = 1L;
+        BookDto bookDto = new BookDto();
+        bookDto.setId(id);
+        bookDto.setTitle("Book");
+        bookDto.setVersion(3L);
+
+        // Настройка mock-объекта
+        when(bookService.findBookById(id)).thenReturn(bookDto);
+
+        // Первый запрос выдает ETag, повторный с If-None-Match получает 304
+        String eTag = mockMvc.perform(get("/api/books/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/books/{id}", id).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @DisplayName("Вернет 304 для списка книг без выборки, если версия каталога не изменилась")
+    void getAllBooks_ShouldReturnNotModified_WhenCatalogETagMatches() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.catalogETag()).thenReturn("\"c-1704110400.123456-0\"");
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(get("/api/books").header(HttpHeaders.IF_NONE_MATCH, "\"c-1704110400.123456-0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(bookService, never()).findAllBooks();
+    }
+
+    @Test
+    @DisplayName("JSON и NDJSON списка книг — разные представления: свои ETag и Vary: Accept")
+    void getAllBooks_ShouldSendRepresentationETagAndVaryAccept() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.catalogETag()).thenReturn("\"c-7\"");
+        when(bookService.findAllBooks()).thenReturn(List.of());
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"c-7\""))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)));
+        // Тег JSON-массива не подходит к NDJSON
+        MvcResult ndjson = mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_NDJSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"c-7\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"c-7-ndjson\""))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)));
+        mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_NDJSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"c-7-ndjson\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)));
+        mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"c-7-ndjson\""))
+                .andExpect(status().isOk());
+    }
+
     @Test
     @DisplayName("Вернет NotFound 404 при поиске книги, если id не существует")
     void findBookById_ShouldThrowNotFoundException_WhenBookNotExists_() throws Exception {
@@ -152,6 +415,73 @@ class BooksRestControllerMockMvcTest {
         verify(bookService, times(1)).saveBook(any(BookDto.class));
     }
 
+    @Test
+    @DisplayName("Списание остатка книги возвращает книгу с новым остатком и ETag")
+    void decrementStock_ShouldReturnUpdatedBook() throws Exception {
+        // Подготовка тестовых данных
+        BookDto book = BookDto.builder().id(1L).stock(7).version(4L).build();
+
+        // Настройка mock-объекта
+        when(bookService.decrementStock(1L, 3)).thenReturn(book);
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(post("/api/books/1/stock/decrement")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"quantity\": 3}"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.stock").value(7));
+    }
+
+    @Test
+    @DisplayName("Вернет 409 при нехватке остатка и 400 при неположительном количестве")
+    void decrementStock_ShouldReturnConflict_WhenStockIsInsufficient() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.decrementStock(1L, 3))
+                .thenThrow(new InsufficientStockException("Недостаточно на складе книги с id: 1"));
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(post("/api/books/1/stock/decrement")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"quantity\": 3}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Insufficient stock: Недостаточно на складе книги с id: 1"));
+        mockMvc.perform(post("/api/books/1/stock/decrement")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"quantity\": 0}"))
+                .andExpect(status().isBadRequest());
+        verify(bookService, times(1)).decrementStock(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Пакетное добавление книг")
+    void createBooks_ShouldReturnBatchReport() throws Exception {
+        // Подготовка тестовых данных
+        String booksJson = """
+                [
+                    {"vendorCode": "b-1", "title": "Book1", "brand": "Author 1", "year": 1984},
+                    {"vendorCode": "b-1", "title": "Book2", "brand": "Author 2", "year": 1985}
+                ]
+                """;
+        BookBatchResultDto report = new BookBatchResultDto(1, 1, List.of(
+                new BookBatchItemResultDto(0, "b-1", 1L, BookBatchItemResultDto.Status.CREATED, null),
+                new BookBatchItemResultDto(1, "b-1", null, BookBatchItemResultDto.Status.DUPLICATE, "VendorCode повторяется в запросе")));
+
+        // Настройка mock-объекта
+        when(bookService.saveBooks(anyList())).thenReturn(report);
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(post("/api/books/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(booksJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.items[1].status").value("DUPLICATE"));
+        verify(bookService, times(1)).saveBooks(anyList());
+    }
+
     @Test
     @DisplayName("Вернет BadRequest 400 при попытке сохранения юзера, с невалидными полями")
     void createBook_ShouldReturnBadRequest400_WhenInvalidInput() throws Exception {
@@ -194,7 +524,7 @@ class BooksRestControllerMockMvcTest {
         updatedBook.setYear(1984);
 
         // Настройка mock-объекта
-        when(bookService.updateBook(eq(bookId), any(BookDto.class))).thenReturn(updatedBook);
+        when(bookService.updateBook(eq(bookId), any(BookDto.class), isNull())).thenReturn(updatedBook);
 
         // Выполнение запроса и проверка результата
         mockMvc.perform(put("/api/books/{id}", bookId)
@@ -206,7 +536,7 @@ class BooksRestControllerMockMvcTest {
                 .andExpect(jsonPath("$.brand").value("update Author 1"))
                 .andExpect(jsonPath("$.year").value(1984))
         ;
-        verify(bookService, times(1)).updateBook(eq(bookId), any(BookDto.class));
+        verify(bookService, times(1)).updateBook(eq(bookId), any(BookDto.class), isNull());
     }
 
     @Test
@@ -223,7 +553,7 @@ class BooksRestControllerMockMvcTest {
                 """;
 
         // Настройка mock-объекта
-        when(bookService.updateBook(eq(bookId), any(BookDto.class))).thenThrow(new NotFoundException("Книга с id: " + bookId + " не найдена."));
+        when(bookService.updateBook(eq(bookId), any(BookDto.class), isNull())).thenThrow(new NotFoundException("Книга с id: " + bookId + " не найдена."));
 
         // Выполнение запроса и проверка результата
         mockMvc.perform(put("/api/books/{id}", bookId)
@@ -232,7 +562,111 @@ class BooksRestControllerMockMvcTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.message").value("Object was not found: Книга с id: " + bookId + " не найдена."))
         ;
-        verify(bookService, times(1)).updateBook(eq(bookId), any(BookDto.class));
+        verify(bookService, times(1)).updateBook(eq(bookId), any(BookDto.class), isNull());
+    }
+
+    @Test
+    @DisplayName("Вернет 412 при обновлении книги, если If-Match не совпадает с текущим ETag")
+    void updateBook_ShouldReturns412_WhenIfMatchFails() throws Exception {
+        // Подготовка тестовых данных
+        Long bookId = 1L;
+
+        // Настройка mock-объекта
+        when(bookService.updateBook(eq(bookId), any(BookDto.class), eq("\"1-0\"")))
+                .thenThrow(new PreconditionFailedException("Книга с id: " + bookId + " была изменена"));
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(put("/api/books/{id}", bookId)
+                        .header(HttpHeaders.IF_MATCH, "\"1-0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"update Book\"}"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.message").value("Precondition failed: Книга с id: " + bookId + " была изменена"));
+    }
+
+    @Test
+    @DisplayName("PATCH книги возвращает измененную книгу и ETag новой версии")
+    void patchBook_ShouldReturnPatchedBookWithETag() throws Exception {
+        // Настройка mock-объекта
+        BookDto patched = BookDto.builder().id(1L).title("Patched").version(5L).build();
+        when(bookService.patchBook(eq(1L), any(BookDto.class), eq("\"1-4\""))).thenReturn(patched);
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "\"1-4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Patched\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-5\""))
+                .andExpect(jsonPath("$.title").value("Patched"));
+    }
+
+    @Test
+    @DisplayName("Вернет 409, если книгу успели изменить параллельно")
+    void patchBook_ShouldReturnConflict_WhenVersionIsStale() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.patchBook(eq(1L), any(BookDto.class), isNull()))
+                .thenThrow(new OptimisticLockingFailureException("Книга с id: 1 была изменена другим пользователем"));
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Patched\", \"version\": 4}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Conflict: Книга с id: 1 была изменена другим пользователем"));
+    }
+
+    @Test
+    @DisplayName("Массовое изменение: фильтр берется из строки запроса, изменения — из тела")
+    void updateBooks_ShouldPassFilterAndChanges() throws Exception {
+        // Настройка mock-объекта
+        BookFilterDto filter = new BookFilterDto(null, "Толстой", null, null, 1899);
+        BookBulkUpdateDto changes = new BookBulkUpdateDto(new BigDecimal("5"), null);
+        when(bookService.updateBooks(filter, changes, true)).thenReturn(new BookBulkResultDto(42, true));
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(patch("/api/books")
+                        .param("brand", "Толстой")
+                        .param("yearTo", "1899")
+                        .param("dryRun", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"pricePercent\": 5}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(42))
+                .andExpect(jsonPath("$.dryRun").value(true));
+    }
+
+    @Test
+    @DisplayName("Массовое удаление по фильтру возвращает число удаленных книг")
+    void deleteBooks_ShouldReturnDeletedCount() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.deleteBooks(new BookFilterDto(null, null, 1900, null, null), false))
+                .thenReturn(new BookBulkResultDto(7, false));
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(delete("/api/books").param("year", "1900"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(7))
+                .andExpect(jsonPath("$.dryRun").value(false));
+    }
+
+    @Test
+    @DisplayName("Лента изменений отдает изменения и курсор, устаревший курсор — 410")
+    void findChanges_ShouldReturnChangesOrGone() throws Exception {
+        // Настройка mock-объекта
+        when(bookService.findChanges("MTo1", 2)).thenReturn(new BookChangesDto(
+                List.of(new BookChangeDto(BookChangeDto.Type.DELETED, 5L, "VC-5", null, null)), "MTo2", false));
+        when(bookService.findChanges("MTox", 500)).thenThrow(new GoneException("Курсор MTox старше срока хранения удалений"));
+
+        // Выполнение запроса и проверка результата
+        mockMvc.perform(get("/api/books/changes").param("since", "MTo1").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes[0].type").value("DELETED"))
+                .andExpect(jsonPath("$.changes[0].id").value(5))
+                .andExpect(jsonPath("$.cursor").value("MTo2"))
+                .andExpect(jsonPath("$.hasMore").value(false));
+        mockMvc.perform(get("/api/books/changes").param("since", "MTox"))
+                .andExpect(status().isGone());
     }
 
     @Test
@@ -243,13 +677,13 @@ class BooksRestControllerMockMvcTest {
         Long bookId = 1L;
 
         // Настройка mock-объекта
-        doNothing().when(bookService).deleteBook(bookId);
+        doNothing().when(bookService).deleteBook(bookId, null);
 
         // Выполнение запроса и проверка результата
         mockMvc.perform(delete("/api/books/{id}", bookId))
                 .andExpect(status().isOk())
         ;
-        verify(bookService, times(1)).deleteBook(bookId);
+        verify(bookService, times(1)).deleteBook(bookId, null);
     }
 
 
@@ -261,13 +695,13 @@ class BooksRestControllerMockMvcTest {
 
         // Настраиваем мок, чтобы при вызове deleteUser с несуществующим ID выбрасывалось исключение
         doThrow(new NotFoundException("Книга с id: " + bookId + " не найдена."))
-                .when(bookService).deleteBook(bookId);
+                .when(bookService).deleteBook(bookId, null);
 
         // Выполнение запроса и проверка результата
         mockMvc.perform(delete("/api/books/{id}", bookId))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.message").value("Object was not found: Книга с id: " + bookId + " не найдена."))
         ;
-        verify(bookService, times(1)).deleteBook(bookId);
+        verify(bookService, times(1)).deleteBook(bookId, null);
     }
 }
\ No newline at end of file
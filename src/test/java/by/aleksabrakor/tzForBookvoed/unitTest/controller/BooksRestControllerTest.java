@@ -12,7 +12,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.ServletWebRequest;
 
 
 import java.util.Arrays;
@@ -42,7 +45,8 @@ class BooksRestControllerTest {
         when(bookService.findAllBooks()).thenReturn(bookDtos);
 
         //Act
-        List<BookDto> resultList = booksRestController.getAllBooks();
+        List<BookDto> resultList = booksRestController.getAllBooks(
+                new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse()));
 
         //Assert
         assertEquals(bookDtos.size(), resultList.size());
@@ -151,27 +155,27 @@ class BooksRestControllerTest {
         updatedBook.setBrand("Author 1");
         updatedBook.setYear(1984);
 
-        when(bookService.updateBook(bookId, bookDto)).thenReturn(updatedBook);
+        when(bookService.updateBook(bookId, bookDto, null)).thenReturn(updatedBook);
 
         // Act
-        BookDto result = booksRestController.updateBook(bookId, bookDto);
+        ResponseEntity<BookDto> result = booksRestController.updateBook(bookId, bookDto, null);
 
         // Assert
-        assertEquals(updatedBook, result);
-        verify(bookService, times(1)).updateBook(bookId, bookDto);
+        assertEquals(updatedBook, result.getBody());
+        verify(bookService, times(1)).updateBook(bookId, bookDto, null);
     }
 
     @Test
     void deleteBook_shouldReturnOkStatus() {
         // Arrange
         Long bookId = 1L;
-        doNothing().when(bookService).deleteBook(bookId);
+        doNothing().when(bookService).deleteBook(bookId, null);
 
         // Act
-        ResponseEntity<?> response = booksRestController.deleteBook(bookId);
+        ResponseEntity<?> response = booksRestController.deleteBook(bookId, null);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(bookService, times(1)).deleteBook(bookId);
+        verify(bookService, times(1)).deleteBook(bookId, null);
     }
 }
\ No newline at end of file
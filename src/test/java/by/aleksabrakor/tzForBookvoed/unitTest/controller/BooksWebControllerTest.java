@@ -3,6 +3,8 @@ package by.aleksabrakor.tzForBookvoed.unitTest.controller;
 import by.aleksabrakor.tzForBookvoed.aspect.ExceptionHandlerAdvice;
 import by.aleksabrakor.tzForBookvoed.controller.BooksWebController;
 import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
+import by.aleksabrakor.tzForBookvoed.service.BookListFragmentCache;
 import by.aleksabrakor.tzForBookvoed.service.BookService;
 import by.aleksabrakor.tzForBookvoed.util.BookValidator;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,15 +13,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 
 import java.security.Principal;
 import java.util.Collections;
+import java.util.function.Supplier;
 
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.*;
@@ -38,6 +45,9 @@ class BooksWebControllerTest {
     @Mock
     private BookValidator bookValidator;
 
+    @Mock
+    private BookListFragmentCache bookListFragmentCache;
+
     @InjectMocks
     private BooksWebController booksWebController;
 
@@ -54,6 +64,10 @@ class BooksWebControllerTest {
         mockMvc = MockMvcBuilders.standaloneSetup(booksWebController)
                 .setControllerAdvice(new ExceptionHandlerAdvice())
                 .build();
+        // По умолчанию кэш фрагментов пуст: каждый запрос выбирает данные и рендерит фрагмент
+        lenient().when(bookListFragmentCache.get(any(), any()))
+                .thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
+        lenient().when(bookListFragmentCache.render(any(), any())).thenReturn("<table></table>");
     }
 
     @Test
@@ -78,6 +92,40 @@ class BooksWebControllerTest {
         verify(bookService).findAllBooks(any(), any(), any(), anyInt(), anyInt());
     }
 
+    @Test
+    void findAllBooks_whenFragmentCached_shouldNotQueryDatabase() throws Exception {
+        // Arrange
+        doReturn("<table>cached</table>").when(bookListFragmentCache).get(any(), any());
+
+        // Act & Assert
+        mockMvc.perform(get("/books").param("title", "").param("page", "2"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("books/list"))
+                .andExpect(model().attribute("booksFragment", "<table>cached</table>"))
+                .andExpect(model().attributeDoesNotExist("books"));
+        // Пустой фильтр из формы дает тот же ключ, что и запрос без фильтра
+        verify(bookListFragmentCache).get(argThat(key -> "ANONYMOUS".equals(key.viewer())
+                && key.title() == null && key.page() == 2), any());
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void findAllBooks_inSliceMode_shouldSkipCountQuery() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(booksWebController, "sliceMode", true);
+        when(bookService.findBooksSlice(any(), any(), any(), anyInt(), anyInt()))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(new BookDto()), PageRequest.of(0, 10), true));
+        when(bookService.approximateBookCount(any(), any(), any())).thenReturn(400_000L);
+
+        // Act & Assert
+        mockMvc.perform(get("/books").principal(principal))
+                .andExpect(status().isOk())
+                .andExpect(view().name("books/list"))
+                .andExpect(model().attribute("sliceMode", true))
+                .andExpect(model().attribute("approximateTotal", 400_000L));
+        verify(bookService, never()).findAllBooks(any(), any(), any(), anyInt(), anyInt());
+    }
+
     @Test
     void findAllBooks_withFilters_shouldReturnFilteredBooks() throws Exception {
         // Arrange
@@ -126,6 +174,29 @@ class BooksWebControllerTest {
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/books"));
         verify(bookService, times(1)).saveBook(any(BookDto.class));
+        verify(bookValidator, never()).validate(any(), any());
+    }
+
+    @Test
+    void saveBook_whenVendorCodeExists_shouldReturnFormViewWithVendorCodeError() throws Exception {
+        // Arrange
+        BookDto bookDto = new BookDto();
+        bookDto.setVendorCode("b-125");
+        bookDto.setTitle("test");
+        bookDto.setBrand("testBrand");
+        bookDto.setYear(2023);
+
+        when(bookService.saveBook(any(BookDto.class)))
+                .thenThrow(new NotCreatedException("Книга с таким VendorCode уже существует"));
+
+        // Act & Assert
+        mockMvc.perform(post("/books/save")
+                        .flashAttr("book", bookDto)
+                        .principal(principal))
+                .andExpect(status().isOk())
+                .andExpect(view().name("books/form"))
+                .andExpect(model().attributeHasFieldErrors("book", "vendorCode"));
+        verify(bookValidator, never()).validate(any(), any());
     }
 
     @Test
@@ -171,6 +242,23 @@ class BooksWebControllerTest {
         verify(bookService, times(1)).updateBook(any(Long.class), any(BookDto.class));
     }
 
+    @Test
+    void updateBook_whenBookChangedConcurrently_shouldReturnFormViewWithError() throws Exception {
+        // Arrange
+        BookDto bookDto = BookDto.builder().id(1L).version(2L).build();
+
+        when(bookService.updateBook(any(Long.class), any(BookDto.class)))
+                .thenThrow(new OptimisticLockingFailureException("Книга с id: 1 была изменена другим пользователем"));
+
+        // Act & Assert
+        mockMvc.perform(post("/books/update/1")
+                        .flashAttr("book", bookDto)
+                        .principal(principal))
+                .andExpect(status().isOk())
+                .andExpect(view().name("books/form"))
+                .andExpect(model().attributeHasErrors("book"));
+    }
+
     @Test
     void updateBook_withInvalidData_shouldReturnFormView() throws Exception {
         // Arrange
@@ -0,0 +1,68 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.security;
+
+import by.aleksabrakor.tzForBookvoed.dto.TokenResponseDto;
+import by.aleksabrakor.tzForBookvoed.security.SecurityConfig;
+import by.aleksabrakor.tzForBookvoed.security.TokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+
+    private static final String SECRET = "test-secret-for-hs256-signature-0123456789";
+
+    private final SecurityConfig securityConfig = new SecurityConfig();
+    private TokenService tokenService;
+    private JwtDecoder jwtDecoder;
+
+    @BeforeEach
+    void setUp() {
+        SecretKey key = securityConfig.jwtSecretKey(SECRET);
+        tokenService = new TokenService(securityConfig.jwtEncoder(key), Duration.ofMinutes(30));
+        jwtDecoder = securityConfig.jwtDecoder(key);
+    }
+
+    @Test
+    @DisplayName("Токен содержит логин, роли без префикса ROLE_ и срок действия")
+    void issueToken_ShouldSignSubjectRolesAndExpiry() {
+        TokenResponseDto response = tokenService.issueToken(UsernamePasswordAuthenticationToken.authenticated(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+
+        Jwt jwt = jwtDecoder.decode(response.getAccessToken());
+
+        assertEquals("Bearer", response.getTokenType());
+        assertEquals(1800, response.getExpiresIn());
+        assertEquals("admin", jwt.getSubject());
+        assertEquals(List.of("ADMIN"), jwt.getClaimAsStringList(TokenService.ROLES_CLAIM));
+        assertEquals(Duration.ofMinutes(30), Duration.between(jwt.getIssuedAt(), jwt.getExpiresAt()));
+    }
+
+    @Test
+    @DisplayName("Токен, подписанный другим ключом, отклоняется")
+    void decode_WithForeignSignature_ShouldFail() {
+        SecretKey otherKey = securityConfig.jwtSecretKey("another-secret-for-hs256-signature-9876543210");
+        String foreignToken = new TokenService(securityConfig.jwtEncoder(otherKey), Duration.ofMinutes(30))
+                .issueToken(UsernamePasswordAuthenticationToken.authenticated(
+                        "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")))
+                .getAccessToken();
+
+        assertThrows(JwtException.class, () -> jwtDecoder.decode(foreignToken));
+    }
+
+    @Test
+    @DisplayName("Секрет короче 256 бит не принимается")
+    void jwtSecretKey_WhenTooShort_ShouldFail() {
+        assertThrows(IllegalStateException.class, () -> securityConfig.jwtSecretKey("short"));
+    }
+}
@@ -0,0 +1,48 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.service;
+
+import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.service.BookChangesMonitor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookChangesMonitorTest {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BookChangesMonitor monitor = new BookChangesMonitor(bookRepository, Duration.ofMinutes(1), meterRegistry);
+
+    @Test
+    @DisplayName("Возраст самой старой пишущей транзакции публикуется метрикой")
+    void check_ShouldPublishOldestTransactionAge() {
+        when(bookRepository.findOldestWriteTransactionAge()).thenReturn(125.5);
+
+        monitor.check();
+
+        assertEquals(125.5, meterRegistry.get("books.changes.oldest_transaction_age").gauge().value());
+
+        when(bookRepository.findOldestWriteTransactionAge()).thenReturn(0.0);
+        monitor.check();
+
+        assertEquals(0.0, meterRegistry.get("books.changes.oldest_transaction_age").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Ошибка запроса не сбрасывает последнее значение метрики")
+    void check_WhenQueryFails_ShouldKeepLastValue() {
+        when(bookRepository.findOldestWriteTransactionAge()).thenReturn(90.0)
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+        monitor.check();
+        monitor.check();
+
+        assertEquals(90.0, monitor.getOldestTransactionAge());
+    }
+}
@@ -0,0 +1,261 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.service;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.service.BookColumnStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.math.BigDecimal;
+import java.text.Collator;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class BookColumnStoreTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2026, 1, 15, 10, 30, 0, 123_456_000);
+
+    //Правило сравнения «базы» в тесте — не по кодам символов: латиница раньше кириллицы, регистр и ё — второстепенные отличия
+    private static final Collator COLLATOR = Collator.getInstance(Locale.forLanguageTag("ru"));
+    private static final Comparator<String> DATABASE_ORDER =
+            Comparator.<String, String>comparing(title -> title, COLLATOR).thenComparing(Comparator.naturalOrder());
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private SimpleMeterRegistry meterRegistry;
+    private BookColumnStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(bookRepository.isTitleCollationDeterministic()).thenReturn(true);
+        when(bookRepository.countTitlesBefore(anyList(), anyString())).thenAnswer(invocation -> {
+            List<String> titles = invocation.getArgument(0);
+            String title = invocation.getArgument(1);
+            return (int) titles.stream().filter(probe -> DATABASE_ORDER.compare(probe, title) < 0).count();
+        });
+        load(book(1L, "Война и мир", "Лев Толстой", 1869),
+                book(2L, "Анна Каренина", "Лев Толстой", 1877),
+                book(3L, "Мастер и Маргарита", "Михаил Булгаков", 1967),
+                book(4L, "Анна Каренина", "Лев Толстой", 1878),
+                book(5L, "Белая гвардия", "Михаил Булгаков", 1925));
+    }
+
+    @Test
+    @DisplayName("Страница из памяти: порядок (title, id), фильтры как ILIKE и точный год, число книг")
+    void findPage_ShouldFilterAndOrderLikeDatabase() {
+        Page<BookDto> all = store.findPage(null, null, null, PageRequest.of(0, 3)).orElseThrow();
+        assertEquals(List.of(2L, 4L, 5L), ids(all.getContent()));
+        assertEquals(5, all.getTotalElements());
+
+        Page<BookDto> filtered = store.findPage("КАРЕН", "толст", 1878, PageRequest.of(0, 10)).orElseThrow();
+        assertEquals(List.of(4L), ids(filtered.getContent()));
+        assertEquals(1, filtered.getTotalElements());
+
+        BookDto book = filtered.getContent().get(0);
+        assertEquals("Лев Толстой", book.getBrand());
+        assertEquals(new BigDecimal("499.90"), book.getPrice());
+        assertEquals(UPDATED_AT, book.getUpdatedAt());
+        assertNull(book.getStock());
+
+        Slice<BookDto> second = store.findSlice(null, "булгаков", null, PageRequest.of(1, 1)).orElseThrow();
+        assertEquals(List.of(3L), ids(second.getContent()));
+        assertFalse(second.hasNext());
+
+        assertEquals(List.of(5L, 1L), ids(store.findAfter(null, null, null, "Анна Каренина", 4L, 2).orElseThrow()));
+        // Курсор с названием, которого у книги уже нет, — в базу
+        assertTrue(store.findAfter(null, null, null, "Анна", 4L, 2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Записи после загрузки: известное название видно сразу, новое — после догона, до него отвечает база")
+    void bookSaved_ShouldOverlaySnapshot() {
+        BookDto restocked = book(3L, "Мастер и Маргарита", "Михаил Булгаков", 1967);
+        restocked.setStock(7);
+        restocked.setVersion(1L);
+        store.bookSaved(restocked);
+        assertEquals(7, store.findPage(null, null, 1967, PageRequest.of(0, 10)).orElseThrow().getContent().get(0).getStock());
+
+        BookDto renamed = book(1L, "Анна на шее", "Антон Чехов", 1895);
+        renamed.setVersion(1L);
+        store.bookSaved(renamed);
+        store.bookSaved(book(6L, "Бесы", "Федор Достоевский", 1872));
+        store.bookDeleted(5L);
+        // Догон прочитал строку до переименования: версия 0 старше уже примененной
+        store.bookSaved(book(1L, "Война и мир", "Лев Толстой", 1869));
+
+        assertTrue(store.findPage(null, null, null, PageRequest.of(0, 10)).isEmpty());
+
+        store.refresh();
+
+        Page<BookDto> page = store.findPage(null, null, null, PageRequest.of(0, 10)).orElseThrow();
+        assertEquals(List.of(2L, 4L, 1L, 6L, 3L), ids(page.getContent()));
+        assertEquals(5, page.getTotalElements());
+        assertEquals(List.of(1L), ids(store.findPage(null, "ЧЕХОВ", null, PageRequest.of(0, 10)).orElseThrow().getContent()));
+        assertEquals(List.of(6L, 3L), ids(store.findAfter(null, null, null, "Анна на шее", 1L, 10).orElseThrow()));
+        verify(bookRepository, atLeastOnce()).countTitlesBefore(anyList(), eq("Анна на шее"));
+    }
+
+    @Test
+    @DisplayName("Пакет строк из RETURNING применяется без чтения из базы, дельта остается в порядке (title, id)")
+    void booksSaved_ShouldApplyReturnedRowsWithoutQuery() {
+        assertTrue(store.isActive());
+        assertFalse(new BookColumnStore(bookRepository, true, Duration.ofMinutes(1), 10_000, meterRegistry).isActive());
+
+        List<BookDto> restocked = List.of(book(1L, "Война и мир", "Лев Толстой", 1869),
+                book(2L, "Анна Каренина", "Лев Толстой", 1877),
+                book(3L, "Мастер и Маргарита", "Михаил Булгаков", 1967),
+                book(4L, "Анна Каренина", "Лев Толстой", 1878),
+                book(5L, "Белая гвардия", "Михаил Булгаков", 1925));
+        restocked.forEach(book -> {
+            book.setStock(book.getId().intValue());
+            book.setVersion(1L);
+        });
+        store.booksSaved(restocked.subList(0, 3));
+        store.booksSaved(restocked.subList(3, 5));
+        store.booksDeleted(List.of(2L));
+
+        Page<BookDto> page = store.findPage(null, null, null, PageRequest.of(0, 10)).orElseThrow();
+        assertEquals(List.of(4L, 5L, 1L, 3L), ids(page.getContent()));
+        assertEquals(List.of(4, 5, 1, 3), page.getContent().stream().map(BookDto::getStock).toList());
+        verify(bookRepository, never()).forEachBookDto(any(), any());
+    }
+
+    @Test
+    @DisplayName("Запись, пришедшая после удаления книги, ее не возвращает")
+    void bookSaved_AfterDelete_ShouldNotResurrectBook() {
+        BookDto late = book(5L, "Белая гвардия", "Михаил Булгаков", 1925);
+        late.setVersion(1L);
+
+        store.bookDeleted(5L);
+        store.bookSaved(late);
+        store.refresh();
+
+        assertEquals(List.of(2L, 4L, 1L, 3L),
+                ids(store.findPage(null, null, null, PageRequest.of(0, 10)).orElseThrow().getContent()));
+    }
+
+    @Test
+    @DisplayName("Порядок задает правило сравнения базы, а не коды символов; новые названия встают между соседями")
+    void refresh_ShouldPlaceNewTitlesByDatabaseCollation() {
+        load(book(1L, "ёлка", "A", 2000),
+                book(2L, "Яблоко", "A", 2000),
+                book(3L, "apple", "A", 2000),
+                book(4L, "Zebra", "A", 2000));
+        List<String> titles = new ArrayList<>(List.of("ёлка", "Яблоко", "apple", "Zebra"));
+        // Сто названий подряд в один промежуток: свободные ранги кончаются, снимок перестраивается
+        for (int i = 0; i < 100; i++) {
+            String title = "Ель " + (100 + i);
+            store.bookSaved(book(10L + i, title, "A", 2000));
+            titles.add(title);
+        }
+        store.bookSaved(book(200L, "ель", "A", 2000));
+        titles.add("ель");
+        store.refresh();
+
+        List<String> expected = titles.stream().sorted(DATABASE_ORDER).toList();
+        List<String> actual = store.findPage(null, null, null, PageRequest.of(0, 200)).orElseThrow().getContent()
+                .stream().map(BookDto::getTitle).toList();
+        assertEquals(expected, actual);
+        assertNotEquals(titles.stream().sorted().toList(), actual);
+    }
+
+    @Test
+    @DisplayName("Догон удаляет книги из books_deletions и дочитывает измененные; шаблоны ILIKE остаются базе")
+    void refresh_ShouldCatchUpWithDatabase() {
+        deletions(UPDATED_AT.minusMinutes(1), 4L);
+        BookDto changed = book(3L, "Мастер и Маргарита", "Михаил Булгаков", 1966);
+        changed.setVersion(1L);
+        changes(UPDATED_AT.minusMinutes(1), changed);
+
+        store.refresh();
+
+        assertEquals(List.of(2L, 5L, 1L, 3L),
+                ids(store.findPage(null, null, null, PageRequest.of(0, 10)).orElseThrow().getContent()));
+        assertEquals(List.of(3L), ids(store.findPage(null, null, 1966, PageRequest.of(0, 10)).orElseThrow().getContent()));
+        assertTrue(store.findPage("100%", null, null, PageRequest.of(0, 10)).isEmpty());
+        assertEquals(1.0, meterRegistry.get("books.columnar.queries").tag("source", "database").counter().count());
+    }
+
+    @Test
+    @DisplayName("При недетерминированном правиле сравнения title каталог в памяти не загружается")
+    void refresh_WhenCollationNondeterministic_ShouldStayInDatabase() {
+        BookColumnStore other = new BookColumnStore(bookRepository, true, Duration.ofMinutes(1), 10_000,
+                new SimpleMeterRegistry());
+        when(bookRepository.isTitleCollationDeterministic()).thenReturn(false);
+        clearInvocations(bookRepository);
+
+        other.refresh();
+        other.refresh();
+
+        assertTrue(other.findPage(null, null, null, PageRequest.of(0, 10)).isEmpty());
+        verify(bookRepository, times(1)).isTitleCollationDeterministic();
+        verify(bookRepository, never()).forEachBookDtoInListOrder(any());
+    }
+
+    //Каталог приходит, как из базы, в порядке ORDER BY title, id
+    @SuppressWarnings("unchecked")
+    private void load(BookDto... books) {
+        BookDto[] ordered = Arrays.stream(books)
+                .sorted(Comparator.comparing(BookDto::getTitle, DATABASE_ORDER).thenComparing(BookDto::getId))
+                .toArray(BookDto[]::new);
+        doAnswer(invocation -> {
+            Consumer<BookDto> action = invocation.getArgument(0);
+            for (BookDto book : ordered) {
+                action.accept(book);
+            }
+            return null;
+        }).when(bookRepository).forEachBookDtoInListOrder(any(Consumer.class));
+        meterRegistry = new SimpleMeterRegistry();
+        store = new BookColumnStore(bookRepository, true, Duration.ofMinutes(1), 10_000, meterRegistry);
+        store.refresh();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void changes(LocalDateTime changedSince, BookDto... books) {
+        doAnswer(invocation -> {
+            Consumer<BookDto> action = invocation.getArgument(1);
+            for (BookDto book : books) {
+                action.accept(book);
+            }
+            return null;
+        }).when(bookRepository).forEachBookDto(changedSince == null ? isNull() : eq(changedSince), any(Consumer.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deletions(LocalDateTime deletedSince, Long... ids) {
+        doAnswer(invocation -> {
+            BiConsumer<Long, LocalDateTime> action = invocation.getArgument(1);
+            for (Long id : ids) {
+                action.accept(id, UPDATED_AT);
+            }
+            return null;
+        }).when(bookRepository).forEachDeletion(eq(deletedSince), any(BiConsumer.class));
+    }
+
+    private static BookDto book(Long id, String title, String brand, int year) {
+        return new BookDto(id, "VC-" + id, title, brand, year, null, new BigDecimal("499.90"), UPDATED_AT, 0L);
+    }
+
+    private static List<Long> ids(List<BookDto> books) {
+        return books.stream().map(BookDto::getId).toList();
+    }
+}
@@ -0,0 +1,50 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.service;
+
+import by.aleksabrakor.tzForBookvoed.config.CacheConfig;
+import by.aleksabrakor.tzForBookvoed.service.BookListFragmentCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookListFragmentCacheTest {
+
+    private static final BookListFragmentCache.Key KEY =
+            new BookListFragmentCache.Key("ANONYMOUS", Locale.ENGLISH, null, null, null, 0, 10);
+
+    private CacheManager cacheManager;
+    private BookListFragmentCache fragmentCache;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new CacheConfig().cacheManager("maximumSize=10", "maximumSize=10");
+        fragmentCache = new BookListFragmentCache(cacheManager, new SpringTemplateEngine(), new MockServletContext());
+    }
+
+    @Test
+    @DisplayName("Повторный запрос тех же фильтров берет фрагмент из кэша")
+    void get_WhenCached_ShouldNotRenderAgain() {
+        assertEquals("v1", fragmentCache.get(KEY, () -> "v1"));
+        assertEquals("v1", fragmentCache.get(KEY, () -> "v2"));
+    }
+
+    @Test
+    @DisplayName("Фрагмент, отрисованный до сброса кэша, не отдается после него")
+    void get_WhenClearedWhileRendering_ShouldNotServeStaleFragment() {
+        // Запись в каталог коммитится и сбрасывает кэш, пока идет выборка старых данных
+        String stale = fragmentCache.get(KEY, () -> {
+            cacheManager.getCache(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE).clear();
+            return "old";
+        });
+
+        assertEquals("old", stale);
+        assertEquals("new", fragmentCache.get(KEY, () -> "new"));
+        assertEquals("new", fragmentCache.get(KEY, () -> "newer"));
+    }
+}
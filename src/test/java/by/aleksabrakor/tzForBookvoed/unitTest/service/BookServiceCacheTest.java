@@ -0,0 +1,176 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.service;
+
+import by.aleksabrakor.tzForBookvoed.config.CacheConfig;
+import by.aleksabrakor.tzForBookvoed.config.ReadYourWritesTracker;
+import by.aleksabrakor.tzForBookvoed.config.ReplicaRoutingDataSource;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkUpdateDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.dto.StockDecrementDto;
+import by.aleksabrakor.tzForBookvoed.entity.Book;
+import by.aleksabrakor.tzForBookvoed.mapper.BookMapper;
+import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
+import by.aleksabrakor.tzForBookvoed.service.BookService;
+import by.aleksabrakor.tzForBookvoed.service.BookColumnStore;
+import by.aleksabrakor.tzForBookvoed.service.BookSuggestIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig(classes = {CacheConfig.class, BookService.class})
+@TestPropertySource(properties = "books.cache.books-spec=maximumSize=100,recordStats")
+class BookServiceCacheTest {
+
+    @MockitoBean
+    private BookRepository bookRepository;
+
+    @MockitoBean
+    private BookMapper bookMapper;
+
+    @MockitoBean
+    private Validator validator;
+
+    @MockitoBean
+    private BookSuggestIndex bookSuggestIndex;
+
+    @MockitoBean
+    private BookColumnStore bookColumnStore;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final Long bookId = 1L;
+    private final Book mockBook = new Book();
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.BOOKS_CACHE).clear();
+        mockBook.setId(bookId);
+        mockBook.setVendorCode("VendorCode");
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(mockBook));
+        when(bookMapper.entityToDto(mockBook)).thenAnswer(invocation ->
+                BookDto.builder().id(bookId).vendorCode(mockBook.getVendorCode()).title(mockBook.getTitle()).build());
+    }
+
+    @Test
+    @DisplayName("Повторное чтение книги по id обслуживается из кэша без обращения к репозиторию")
+    void findBookById_WhenCalledTwice_ShouldHitRepositoryOnce() {
+        BookDto first = bookService.findBookById(bookId);
+        BookDto second = bookService.findBookById(bookId);
+
+        assertEquals(first, second);
+        verify(bookRepository, times(1)).findById(bookId);
+    }
+
+    @Test
+    @DisplayName("Обновление книги заменяет значение в кэше")
+    void updateBook_ShouldPutUpdatedBookIntoCache() {
+        bookService.findBookById(bookId);
+
+        bookService.updateBook(bookId, BookDto.builder().title("Updated Title").build());
+        BookDto cached = bookService.findBookById(bookId);
+
+        assertEquals("Updated Title", cached.getTitle());
+        verify(bookRepository, times(2)).findById(bookId);
+    }
+
+    @Test
+    @DisplayName("Удаление книги вытесняет ее из кэша")
+    void deleteBook_ShouldEvictBookFromCache() {
+        bookService.findBookById(bookId);
+
+        bookService.deleteBook(bookId);
+
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS_CACHE).get(bookId));
+    }
+
+    @Test
+    @DisplayName("Изменение книги очищает кэш отрисованных страниц списка")
+    void updateBook_ShouldClearListFragmentsCache() {
+        Cache fragments = cacheManager.getCache(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE);
+        fragments.put("page-0", "<table></table>");
+
+        bookService.updateBook(bookId, BookDto.builder().title("Updated Title").build());
+
+        assertNull(fragments.get("page-0"));
+    }
+
+    @Test
+    @DisplayName("Пакетное списание остатков вытесняет книги из кэша и очищает кэш страниц списка")
+    void decrementStocks_ShouldEvictBooksAndListFragments() {
+        bookService.findBookById(bookId);
+        Cache fragments = cacheManager.getCache(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE);
+        fragments.put("page-0", "<table></table>");
+        when(bookRepository.decrementStocks(any())).thenReturn(List.of(mockBook));
+
+        bookService.decrementStocks(List.of(new StockDecrementDto(bookId, 1)));
+
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS_CACHE).get(bookId));
+        assertNull(fragments.get("page-0"));
+    }
+
+    @Test
+    @DisplayName("Массовое изменение очищает кэш книг, пробный прогон (dryRun) кэш не трогает")
+    void updateBooks_ShouldClearBooksCacheUnlessDryRun() {
+        bookService.findBookById(bookId);
+        BookFilterDto filter = new BookFilterDto(null, "Brand", null, null, null);
+        BookBulkUpdateDto changes = new BookBulkUpdateDto(null, 0);
+
+        bookService.updateBooks(filter, changes, true);
+        assertNotNull(cacheManager.getCache(CacheConfig.BOOKS_CACHE).get(bookId));
+
+        bookService.updateBooks(filter, changes, false);
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS_CACHE).get(bookId));
+    }
+
+    @Test
+    @DisplayName("Запись, сброс кэша и чтение при отстающей реплике: в кэш попадает книга из primary")
+    void findBookById_AfterWriteAndEvict_ShouldCacheBookFromPrimary() throws Exception {
+        // Реплика еще не получила запись и отдает прежнее название
+        Connection primaryConnection = mock(Connection.class);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(dataSource(primaryConnection),
+                Map.of("replica-1", dataSource(mock(Connection.class))), Duration.ofSeconds(10),
+                new ReadYourWritesTracker(Duration.ofSeconds(5)), new SimpleMeterRegistry());
+        routing.afterPropertiesSet();
+        when(bookRepository.findById(bookId)).thenAnswer(invocation -> {
+            mockBook.setTitle(routing.getConnection() == primaryConnection ? "New Title" : "Old Title");
+            return Optional.of(mockBook);
+        });
+        when(bookRepository.updateByFilter(any(), any(), any(), any())).thenReturn(1);
+
+        bookService.updateBooks(new BookFilterDto(null, "Brand", null, null, null), new BookBulkUpdateDto(null, 0), false);
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS_CACHE).get(bookId));
+
+        assertEquals("New Title", bookService.findBookById(bookId).getTitle());
+        assertEquals("New Title", bookService.findBookById(bookId).getTitle());
+        verify(bookRepository, times(1)).findById(bookId);
+    }
+
+    private static DataSource dataSource(Connection connection) throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}
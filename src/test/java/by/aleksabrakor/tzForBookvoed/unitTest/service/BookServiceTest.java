@@ -1,13 +1,36 @@
 package by.aleksabrakor.tzForBookvoed.unitTest.service;
 
+import by.aleksabrakor.tzForBookvoed.dto.BookBatchItemResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBatchResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkResultDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookBulkUpdateDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookChangeDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookChangesDto;
 import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFacetsDto;
+import by.aleksabrakor.tzForBookvoed.dto.BookFilterDto;
+import by.aleksabrakor.tzForBookvoed.dto.CursorPageDto;
+import by.aleksabrakor.tzForBookvoed.dto.FacetCountDto;
+import by.aleksabrakor.tzForBookvoed.dto.StockDecrementDto;
 import by.aleksabrakor.tzForBookvoed.entity.Book;
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
+import by.aleksabrakor.tzForBookvoed.exception.GoneException;
+import by.aleksabrakor.tzForBookvoed.exception.InsufficientStockException;
 import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
 import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
+import by.aleksabrakor.tzForBookvoed.exception.PreconditionFailedException;
 import by.aleksabrakor.tzForBookvoed.mapper.BookMapper;
 
 import by.aleksabrakor.tzForBookvoed.repositiry.BookRepository;
 import by.aleksabrakor.tzForBookvoed.service.BookService;
+import by.aleksabrakor.tzForBookvoed.service.BookColumnStore;
+import by.aleksabrakor.tzForBookvoed.service.BookSuggestIndex;
+import by.aleksabrakor.tzForBookvoed.util.BookChangeCursor;
+import by.aleksabrakor.tzForBookvoed.util.BookCursor;
+import by.aleksabrakor.tzForBookvoed.util.BookETag;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Path;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,15 +38,30 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.data.domain.*;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +73,18 @@ class BookServiceTest {
     @Mock
     private BookMapper bookMapper;
 
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private BookSuggestIndex bookSuggestIndex;
+
+    @Mock
+    private BookColumnStore bookColumnStore;
+
     @InjectMocks
     private BookService bookService;
 
@@ -86,23 +136,44 @@ class BookServiceTest {
     @Test
     @DisplayName("Поиск списка всех книг без заданных фильтров")
     void findAllBooks_ShouldReturnListOfBookDtos() {
-        Book mockBook1 = new Book();
-        Book mockBook2 = new Book();
-        List<Book> mockBooks = Arrays.asList(mockBook1, mockBook2);
-
         BookDto mockBookDto1 = new BookDto();
         BookDto mockBookDto2 = new BookDto();
         List<BookDto> mockBookDtos = Arrays.asList(mockBookDto1, mockBookDto2);
 
-        when(bookRepository.findAll()).thenReturn(mockBooks);
-        when(bookMapper.toDtoList(mockBooks)).thenReturn(mockBookDtos);
+        when(bookRepository.findAllDtos()).thenReturn(mockBookDtos);
 
         List<BookDto> resultBookDtos = bookService.findAllBooks();
 
         assertNotNull(resultBookDtos);
-        assertEquals(mockBooks.size(), resultBookDtos.size());
-        verify(bookRepository).findAll();
-        verify(bookMapper).toDtoList(mockBooks);
+        assertEquals(mockBookDtos.size(), resultBookDtos.size());
+        verify(bookRepository).findAllDtos();
+        verify(bookRepository, never()).findAll();
+        verifyNoInteractions(bookMapper);
+    }
+
+    @Test
+    @DisplayName("Потоковая выгрузка каталога - каждая книга маппится и передается потребителю")
+    void streamAllBooks_ShouldMapEachBookAndPassToConsumer() {
+        Book mockBook1 = new Book();
+        Book mockBook2 = new Book();
+        BookDto mockBookDto1 = new BookDto();
+        BookDto mockBookDto2 = new BookDto();
+
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(1);
+            action.accept(mockBook1);
+            action.accept(mockBook2);
+            return null;
+        }).when(bookRepository).forEachBook(anyInt(), any());
+        when(bookMapper.entityToDto(mockBook1)).thenReturn(mockBookDto1);
+        when(bookMapper.entityToDto(mockBook2)).thenReturn(mockBookDto2);
+
+        List<BookDto> result = new ArrayList<>();
+        bookService.streamAllBooks(result::add);
+
+        assertEquals(List.of(mockBookDto1, mockBookDto2), result);
+        verify(bookRepository).forEachBook(anyInt(), any());
+        verify(bookMapper, never()).toDtoList(any());
     }
 
     @Test
@@ -114,28 +185,131 @@ class BookServiceTest {
         int page = 0;
         int size = 10;
 
-        Book mockBook1 = new Book();
-        Book mockBook2 = new Book();
-        List<Book> mockBooks = Arrays.asList(mockBook1, mockBook2);
-
         BookDto mockBookDto1 = new BookDto();
         BookDto mockBookDto2 = new BookDto();
         List<BookDto> mockBookDtos = Arrays.asList(mockBookDto1, mockBookDto2);
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("title"));
 
-        Page<Book> bookPage = new PageImpl<>(mockBooks, pageable, 1);
         Page<BookDto> bookDtoPage = new PageImpl<>(mockBookDtos, pageable, 1);
 
-        when(bookRepository.findByFilters(title, brand, year, pageable)).thenReturn(bookPage);
-        when(bookMapper.toDtoPage(bookPage)).thenReturn(bookDtoPage);
+        when(bookRepository.findDtoByFilters(title, brand, year, pageable)).thenReturn(bookDtoPage);
 
         Page<BookDto> result = bookService.findAllBooks(title, brand, year, page, size);
 
         assertNotNull(result);
         assertEquals(2, result.getTotalElements());
-        verify(bookRepository).findByFilters(title, brand, year, pageable);
-        verify(bookMapper).toDtoPage(bookPage);
+        verify(bookRepository).findDtoByFilters(title, brand, year, pageable);
+        verify(bookRepository, never()).findByFilters(any(), any(), any(), any());
+        verifyNoInteractions(bookMapper);
+    }
+
+    @Test
+    @DisplayName("Список в режиме Slice - один запрос без count(*)")
+    void findBooksSlice_ShouldReturnSliceWithoutCount() {
+        Pageable pageable = PageRequest.of(1, 2, Sort.by("title"));
+        Slice<BookDto> slice = new SliceImpl<>(List.of(new BookDto(), new BookDto()), pageable, true);
+
+        when(bookRepository.findDtoSliceByFilters("Test", null, null, pageable)).thenReturn(slice);
+
+        Slice<BookDto> result = bookService.findBooksSlice("Test", null, null, 1, 2);
+
+        assertTrue(result.hasNext());
+        assertEquals(2, result.getNumberOfElements());
+        verify(bookRepository, never()).findDtoByFilters(any(), any(), any(), any());
+        assertThrows(BadRequestException.class, () -> bookService.findBooksSlice(null, null, null, -1, 10));
+    }
+
+    @Test
+    @DisplayName("Приблизительное число книг берется из статистики только для списка без фильтров")
+    void approximateBookCount_ShouldUseEstimateOnlyWithoutFilters() {
+        when(bookRepository.estimateBookCount()).thenReturn(400_000L, -1L);
+
+        assertEquals(400_000L, bookService.approximateBookCount(null, "", null));
+        // Таблица еще не анализировалась - оценки нет
+        assertNull(bookService.approximateBookCount(null, null, null));
+        assertNull(bookService.approximateBookCount("Test", null, null));
+        assertNull(bookService.approximateBookCount(null, null, 2023));
+        verify(bookRepository, times(2)).estimateBookCount();
+    }
+
+    @Test
+    @DisplayName("Keyset-пагинация: первая страница возвращает курсор на последнюю книгу")
+    void findBooksAfter_FirstPage_ShouldReturnCursorOfLastBook() {
+        BookDto mockBookDto1 = BookDto.builder().id(5L).title("Анна Каренина").build();
+        BookDto mockBookDto2 = BookDto.builder().id(2L).title("Война и мир").build();
+        BookDto mockBookDto3 = BookDto.builder().id(1L).title("Лолита").build();
+
+        when(bookRepository.findFirstByFilters(null, null, null, Limit.of(3)))
+                .thenReturn(List.of(mockBookDto1, mockBookDto2, mockBookDto3));
+
+        CursorPageDto<BookDto> result = bookService.findBooksAfter(null, null, null, null, 2);
+
+        assertTrue(result.isHasNext());
+        assertEquals(List.of(mockBookDto1, mockBookDto2), result.getContent());
+        assertEquals(new BookCursor("Война и мир", 2L), BookCursor.decode(result.getNextCursor()));
+        verify(bookRepository, never()).findByFilters(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Keyset-пагинация: следующая страница продолжается с позиции курсора")
+    void findBooksAfter_WithCursor_ShouldSeekFromCursorPosition() {
+        String after = new BookCursor("Война и мир", 2L).encode();
+        BookDto mockBookDto = BookDto.builder().id(1L).title("Лолита").build();
+
+        when(bookRepository.findByFiltersAfter("мир", null, 1869, "Война и мир", 2L, Limit.of(3)))
+                .thenReturn(List.of(mockBookDto));
+
+        CursorPageDto<BookDto> result = bookService.findBooksAfter("мир", null, 1869, after, 2);
+
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+        assertEquals(1, result.getContent().size());
+    }
+
+    @Test
+    @DisplayName("Keyset-пагинация: некорректный курсор или размер страницы - BadRequestException")
+    void findBooksAfter_WhenCursorOrSizeInvalid_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () -> bookService.findBooksAfter(null, null, null, "not-a-cursor", 10));
+        assertThrows(BadRequestException.class, () -> bookService.findBooksAfter(null, null, null, null, 0));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    @DisplayName("Полнотекстовый поиск - запрос передается в репозиторий со смещением страницы")
+    void searchBooks_ShouldQueryRepositoryWithLimitAndOffset() {
+        Book mockBook = new Book();
+        List<BookDto> mockBookDtos = List.of(new BookDto());
+
+        when(bookRepository.search("толстой", "%толстой%", 20, 40L)).thenReturn(List.of(mockBook));
+        when(bookMapper.toDtoList(List.of(mockBook))).thenReturn(mockBookDtos);
+
+        List<BookDto> result = bookService.searchBooks("  толстой ", 2, 20);
+
+        assertEquals(mockBookDtos, result);
+        verify(bookRepository).search("толстой", "%толстой%", 20, 40L);
+    }
+
+    @Test
+    @DisplayName("Полнотекстовый поиск с ё - и запрос, и шаблон подстроки передаются с е")
+    void searchBooks_WhenQueryHasYo_ShouldFoldBothParameters() {
+        Book mockBook = new Book();
+        List<BookDto> mockBookDtos = List.of(new BookDto());
+
+        when(bookRepository.search("Елка", "%Елка%", 20, 0L)).thenReturn(List.of(mockBook));
+        when(bookMapper.toDtoList(List.of(mockBook))).thenReturn(mockBookDtos);
+
+        List<BookDto> result = bookService.searchBooks("Ёлка", 0, 20);
+
+        assertEquals(mockBookDtos, result);
+        verify(bookRepository).search("Елка", "%Елка%", 20, 0L);
+    }
+
+    @Test
+    @DisplayName("Полнотекстовый поиск с пустым запросом - BadRequestException")
+    void searchBooks_WhenQueryBlank_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () -> bookService.searchBooks(" ", 0, 20));
+        verifyNoInteractions(bookRepository);
     }
 
     @Test
@@ -159,9 +333,8 @@ class BookServiceTest {
         mockBookDtoAfterSave.setBrand("TestBrand");
 
 
-        when(bookRepository.findByVendorCode(mockBookDto.getVendorCode())).thenReturn(Optional.empty());
         when(bookMapper.dtoToEntity(mockBookDto)).thenReturn(mockBook);
-        when(bookRepository.save(mockBook)).thenReturn(mockBook);
+        when(bookRepository.insertIfAbsent(mockBook)).thenReturn(Optional.of(mockBook));
         when(bookMapper.entityToDto(mockBook)).thenReturn(mockBookDtoAfterSave);
 
 
@@ -169,10 +342,11 @@ class BookServiceTest {
 
         assertNotNull(result);
         assertEquals(1L, result.getId());
-        verify(bookRepository).findByVendorCode(mockBook.getVendorCode());
         verify(bookMapper).dtoToEntity(mockBookDto);
-        verify(bookRepository).save(mockBook);
+        verify(bookRepository).insertIfAbsent(mockBook);
         verify(bookMapper).entityToDto(mockBook);
+        verify(bookRepository, never()).findByVendorCode(any());
+        verify(bookRepository, never()).save(any());
     }
 
     @Test
@@ -183,10 +357,53 @@ class BookServiceTest {
         mockBookDto.setTitle("Book Title");
         mockBookDto.setBrand("TestBrand");
 
-        when(bookRepository.findByVendorCode(mockBookDto.getVendorCode())).thenReturn(Optional.of(new Book()));
+        Book mockBook = new Book();
+        when(bookMapper.dtoToEntity(mockBookDto)).thenReturn(mockBook);
+        when(bookRepository.insertIfAbsent(mockBook)).thenReturn(Optional.empty());
 
         assertThrows(NotCreatedException.class, () -> bookService.saveBook(mockBookDto));
-        verify(bookRepository).findByVendorCode(mockBookDto.getVendorCode());
+        verify(bookRepository).insertIfAbsent(mockBook);
+        verify(bookRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Пакетное сохранение - отчет по каждой книге: создана, дубликат, невалидна")
+    @SuppressWarnings("unchecked")
+    void saveBooks_ShouldReportResultForEachItem() {
+        BookDto newBook = BookDto.builder().vendorCode("NEW-1").title("New").brand("Brand").year(2024).build();
+        BookDto existingBook = BookDto.builder().vendorCode("BK-001").title("Old").brand("Brand").year(2024).build();
+        BookDto repeatedBook = BookDto.builder().vendorCode("NEW-1").title("Copy").brand("Brand").year(2024).build();
+        BookDto invalidBook = BookDto.builder().vendorCode("BAD-1").build();
+
+        Book newEntity = new Book();
+        Book existingEntity = new Book();
+        Book inserted = new Book();
+        inserted.setId(10L);
+        inserted.setVendorCode("NEW-1");
+        ConstraintViolation<BookDto> violation = mock(ConstraintViolation.class);
+        Path path = mock(Path.class);
+        when(path.toString()).thenReturn("title");
+        when(violation.getPropertyPath()).thenReturn(path);
+        when(violation.getMessage()).thenReturn("Поле title не должно быть пустым");
+        when(validator.validate(any(BookDto.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0) == invalidBook ? Set.of(violation) : Set.of());
+        when(bookMapper.dtoToEntity(newBook)).thenReturn(newEntity);
+        when(bookMapper.dtoToEntity(existingBook)).thenReturn(existingEntity);
+        when(bookRepository.insertIgnoringDuplicates(List.of(newEntity, existingEntity)))
+                .thenReturn(List.of(inserted));
+
+        BookBatchResultDto result = bookService.saveBooks(List.of(newBook, existingBook, repeatedBook, invalidBook));
+
+        assertEquals(1, result.getCreated());
+        assertEquals(3, result.getRejected());
+        List<BookBatchItemResultDto> items = result.getItems();
+        assertEquals(BookBatchItemResultDto.Status.CREATED, items.get(0).getStatus());
+        assertEquals(10L, items.get(0).getId());
+        assertEquals(BookBatchItemResultDto.Status.DUPLICATE, items.get(1).getStatus());
+        assertEquals(BookBatchItemResultDto.Status.DUPLICATE, items.get(2).getStatus());
+        assertEquals(BookBatchItemResultDto.Status.INVALID, items.get(3).getStatus());
+        assertEquals("title: Поле title не должно быть пустым", items.get(3).getMessage());
+        verify(bookRepository, never()).findByVendorCode(any());
         verify(bookRepository, never()).save(any());
     }
 
@@ -214,7 +431,6 @@ class BookServiceTest {
         updatedDto.setPrice(BigDecimal.valueOf(150.00));
 
         when(bookRepository.findById(id)).thenReturn(Optional.of(mockBook));
-        when(bookRepository.findByVendorCodeAndIdNot("NEW-VENDOR", id)).thenReturn(Optional.empty());
         when(bookMapper.entityToDto(mockBook)).thenReturn(updatedDto);
 
         BookDto result = bookService.updateBook(id, updatedDto);
@@ -223,7 +439,11 @@ class BookServiceTest {
         assertEquals("Updated Title", result.getTitle());
         assertEquals("NEW-VENDOR", result.getVendorCode());
         verify(bookRepository).findById(id);
-        verify(bookRepository).findByVendorCodeAndIdNot("NEW-VENDOR", id);
+        // Уникальность VendorCode проверяет UPDATE при flush, без отдельного запроса
+        verify(bookRepository, never()).findByVendorCodeAndIdNot(any(), any());
+        verify(bookRepository).flush();
+        // Вне транзакции индекс подсказок обновляется сразу: старые title и brand заменяются новыми
+        verify(bookSuggestIndex).bookChanged("TestTitle", "TestBrand", "Updated Title", "Updated Brand");
     }
 
     @Test
@@ -239,12 +459,68 @@ class BookServiceTest {
         updatedDto.setVendorCode("EXISTING-VENDOR");
 
         when(bookRepository.findById(id)).thenReturn(Optional.of(mockBook));
-        when(bookRepository.findByVendorCodeAndIdNot("EXISTING-VENDOR", id))
-                .thenReturn(Optional.of(new Book()));
+        doThrow(new DataIntegrityViolationException("duplicate key",
+                new SQLException("duplicate key value violates unique constraint", "23505")))
+                .when(bookRepository).flush();
 
         assertThrows(NotCreatedException.class, () -> bookService.updateBook(id, updatedDto));
         verify(bookRepository).findById(id);
-        verify(bookRepository).findByVendorCodeAndIdNot("EXISTING-VENDOR", id);
+    }
+
+    @Test
+    @DisplayName("Обновление книги с устаревшей версией в теле запроса отклоняется с конфликтом")
+    void updateBook_WhenVersionIsStale_ShouldThrowOptimisticLockingFailure() {
+        Long id = 1L;
+        Book existingBook = new Book();
+        existingBook.setId(id);
+        existingBook.setTitle("Old Title");
+        existingBook.setVersion(5L);
+        BookDto updatedDto = BookDto.builder().title("New Title").version(4L).build();
+
+        when(bookRepository.findById(id)).thenReturn(Optional.of(existingBook));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> bookService.updateBook(id, updatedDto));
+        assertEquals("Old Title", existingBook.getTitle());
+        verify(bookRepository, never()).flush();
+    }
+
+    @Test
+    @DisplayName("PATCH одним UPDATE без чтения книги, версия из If-Match уходит в условие")
+    void patchBook_ShouldUpdateWithoutSelect() {
+        Long id = 1L;
+        BookDto patchDto = BookDto.builder().title("New Title").build();
+        Book changes = new Book();
+        changes.setTitle("New Title");
+        Book patched = new Book();
+        patched.setId(id);
+        patched.setVersion(6L);
+        BookDto patchedDto = BookDto.builder().id(id).title("New Title").version(6L).build();
+
+        when(bookMapper.dtoToEntity(patchDto)).thenReturn(changes);
+        when(bookRepository.patch(id, changes, List.of(5L))).thenReturn(Optional.of(patched));
+        when(bookMapper.entityToDto(patched)).thenReturn(patchedDto);
+
+        assertEquals(patchedDto, bookService.patchBook(id, patchDto, BookETag.of(id, 5L)));
+        verify(bookRepository, never()).findById(any());
+        verify(bookRepository, never()).findVersionById(any());
+    }
+
+    @Test
+    @DisplayName("PATCH: устаревший If-Match — 412, устаревшая версия в теле — 409, нет книги — 404")
+    void patchBook_WhenNotUpdated_ShouldReportCause() {
+        Long id = 1L;
+        when(bookRepository.patch(eq(id), any(), any())).thenReturn(Optional.empty());
+        when(bookRepository.findVersionById(id)).thenReturn(Optional.of(7L));
+        when(bookRepository.findVersionById(2L)).thenReturn(Optional.empty());
+        when(bookRepository.patch(eq(2L), any(), any())).thenReturn(Optional.empty());
+
+        assertThrows(PreconditionFailedException.class,
+                () -> bookService.patchBook(id, BookDto.builder().stock(1).build(), BookETag.of(id, 6L)));
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> bookService.patchBook(id, BookDto.builder().stock(1).version(6L).build(), null));
+        assertThrows(NotFoundException.class,
+                () -> bookService.patchBook(2L, BookDto.builder().stock(1).build(), null));
+        assertThrows(BadRequestException.class, () -> bookService.patchBook(id, new BookDto(), null));
     }
 
     @Test
@@ -276,6 +552,41 @@ class BookServiceTest {
         verify(bookRepository).delete(mockBook);
     }
 
+    @Test
+    @DisplayName("Обновление книги с устаревшим If-Match отклоняется без изменений")
+    void updateBook_WhenIfMatchIsStale_ShouldThrowPreconditionFailedException() {
+        Long id = 1L;
+        Book existingBook = new Book();
+        existingBook.setId(id);
+        existingBook.setTitle("Old Title");
+        existingBook.setVersion(3L);
+        BookDto updatedDto = new BookDto();
+        updatedDto.setTitle("New Title");
+        String staleETag = BookETag.of(id, 2L);
+
+        when(bookRepository.findById(id)).thenReturn(Optional.of(existingBook));
+
+        assertThrows(PreconditionFailedException.class, () -> bookService.updateBook(id, updatedDto, staleETag));
+        assertEquals("Old Title", existingBook.getTitle());
+        verify(bookRepository, never()).findByVendorCodeAndIdNot(any(), any());
+        verify(bookRepository, never()).flush();
+    }
+
+    @Test
+    @DisplayName("Удаление книги с актуальным If-Match")
+    void deleteBook_WhenIfMatchIsCurrent_ShouldDeleteBook() {
+        Long id = 1L;
+        Book mockBook = new Book();
+        mockBook.setId(id);
+        mockBook.setVersion(3L);
+
+        when(bookRepository.findById(id)).thenReturn(Optional.of(mockBook));
+
+        // Один из перечисленных в If-Match тегов совпадает с текущей версией
+        bookService.deleteBook(id, BookETag.of(id, 2L) + ", " + BookETag.of(id, 3L));
+        verify(bookRepository).delete(mockBook);
+    }
+
     @Test
     @DisplayName("Удаление книги, если книга не найдена")
     void deleteBook_WhenBookNotExists_ShouldThrowNotFoundException() {
@@ -287,6 +598,222 @@ class BookServiceTest {
         verify(bookRepository, never()).delete(any());
     }
 
+    @Test
+    @DisplayName("Списание остатка одним UPDATE без чтения книги")
+    void decrementStock_WhenStockIsEnough_ShouldReturnUpdatedBook() {
+        Long id = 1L;
+        Book updated = new Book();
+        updated.setId(id);
+        updated.setStock(7);
+        BookDto updatedDto = BookDto.builder().id(id).stock(7).build();
+
+        when(bookRepository.decrementStock(id, 3)).thenReturn(Optional.of(updated));
+        when(bookMapper.entityToDto(updated)).thenReturn(updatedDto);
+
+        assertEquals(updatedDto, bookService.decrementStock(id, 3));
+        verify(bookRepository, never()).findById(any());
+        verify(bookRepository, never()).existsById(any());
+    }
+
+    @Test
+    @DisplayName("Списание остатка: нехватка на складе и отсутствующая книга различаются")
+    void decrementStock_WhenNotUpdated_ShouldReportInsufficientStockOrNotFound() {
+        when(bookRepository.decrementStock(anyLong(), anyInt())).thenReturn(Optional.empty());
+        when(bookRepository.existsById(1L)).thenReturn(true);
+        when(bookRepository.existsById(2L)).thenReturn(false);
+
+        assertThrows(InsufficientStockException.class, () -> bookService.decrementStock(1L, 5));
+        assertThrows(NotFoundException.class, () -> bookService.decrementStock(2L, 5));
+        assertThrows(BadRequestException.class, () -> bookService.decrementStock(1L, 0));
+    }
+
+    @Test
+    @DisplayName("Пакетное списание: повторы книги складываются, позиции идут по возрастанию id")
+    void decrementStocks_ShouldMergeQuantitiesAndRejectWholeBatch() {
+        Book second = new Book();
+        second.setId(2L);
+        Book fifth = new Book();
+        fifth.setId(5L);
+        when(bookRepository.decrementStocks(any())).thenReturn(List.of(second, fifth));
+
+        List<StockDecrementDto> result = bookService.decrementStocks(List.of(
+                new StockDecrementDto(5L, 1), new StockDecrementDto(2L, 2), new StockDecrementDto(5L, 3)));
+
+        assertEquals(List.of(new StockDecrementDto(2L, 2), new StockDecrementDto(5L, 4)), result);
+        verify(bookRepository).decrementStocks(new TreeMap<>(Map.of(2L, 2, 5L, 4)));
+
+        when(bookRepository.decrementStocks(any())).thenReturn(List.of());
+        InsufficientStockException e = assertThrows(InsufficientStockException.class, () ->
+                bookService.decrementStocks(List.of(new StockDecrementDto(2L, 100))));
+        assertTrue(e.getMessage().contains("[2]"));
+    }
+
+    @Test
+    @DisplayName("Массовое изменение по фильтру одним UPDATE; dryRun только считает книги")
+    void updateBooks_ShouldUpdateByFilterOrCountOnDryRun() {
+        BookFilterDto filter = new BookFilterDto(null, "Толстой", null, null, null);
+        BookBulkUpdateDto changes = new BookBulkUpdateDto(BigDecimal.valueOf(5), null);
+
+        when(bookRepository.countByFilter(filter)).thenReturn(12L);
+        when(bookRepository.updateByFilter(filter, BigDecimal.valueOf(5), null, null)).thenReturn(12);
+
+        assertEquals(new BookBulkResultDto(12, true), bookService.updateBooks(filter, changes, true));
+        verify(bookRepository, never()).updateByFilter(any(), any(), any(), any());
+
+        // Каталог в памяти не загружен: строки из RETURNING не запрашиваются
+        assertEquals(new BookBulkResultDto(12, false), bookService.updateBooks(filter, changes, false));
+        verify(bookRepository).updateByFilter(filter, BigDecimal.valueOf(5), null, null);
+        verify(bookColumnStore, never()).booksSaved(any());
+    }
+
+    @Test
+    @DisplayName("Массовые операции передают каталогу в памяти строки, которые вернула сама запись")
+    void updateAndDeleteBooks_WhenColumnStoreIsActive_ShouldApplyReturnedRows() {
+        BookFilterDto filter = new BookFilterDto(null, "Толстой", null, null, null);
+        Book updated = new Book();
+        updated.setId(7L);
+        BookDto updatedDto = BookDto.builder().id(7L).build();
+        when(bookColumnStore.isActive()).thenReturn(true);
+        when(bookMapper.entityToDto(updated)).thenReturn(updatedDto);
+        when(bookRepository.updateByFilter(eq(filter), any(), any(), notNull())).thenAnswer(invocation -> {
+            invocation.<Consumer<Book>>getArgument(3).accept(updated);
+            return 1;
+        });
+        when(bookRepository.deleteByFilter(eq(filter), notNull())).thenAnswer(invocation -> {
+            invocation.<Consumer<Long>>getArgument(1).accept(7L);
+            return 1;
+        });
+
+        bookService.updateBooks(filter, new BookBulkUpdateDto(null, 0), false);
+        bookService.deleteBooks(filter, false);
+
+        // Вне транзакции действие после коммита выполняется сразу
+        verify(bookColumnStore).booksSaved(List.of(updatedDto));
+        verify(bookColumnStore).booksDeleted(List.of(7L));
+    }
+
+    @Test
+    @DisplayName("Массовые операции без фильтра и без изменений отклоняются")
+    void updateBooks_WhenFilterOrChangesAreEmpty_ShouldThrowBadRequestException() {
+        BookFilterDto emptyFilter = new BookFilterDto("", null, null, null, null);
+        BookFilterDto filter = new BookFilterDto(null, null, null, null, 1899);
+
+        assertThrows(BadRequestException.class,
+                () -> bookService.updateBooks(emptyFilter, new BookBulkUpdateDto(null, 0), false));
+        assertThrows(BadRequestException.class, () -> bookService.deleteBooks(emptyFilter, false));
+        assertThrows(BadRequestException.class,
+                () -> bookService.updateBooks(filter, new BookBulkUpdateDto(null, null), false));
+        assertThrows(BadRequestException.class,
+                () -> bookService.updateBooks(filter, new BookBulkUpdateDto(BigDecimal.valueOf(-100), null), false));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    @DisplayName("Массовые операции с фильтром из одних % и пробелов отклоняются")
+    void deleteBooks_WhenFilterIsWildcardOnly_ShouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class,
+                () -> bookService.deleteBooks(new BookFilterDto("%", null, null, null, null), false));
+        assertThrows(BadRequestException.class,
+                () -> bookService.deleteBooks(new BookFilterDto(null, " _ ", null, null, null), true));
+        assertThrows(BadRequestException.class,
+                () -> bookService.updateBooks(new BookFilterDto("%%", null, null, null, null),
+                        new BookBulkUpdateDto(null, 0), false));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    @DisplayName("Массовое удаление по фильтру одним DELETE")
+    void deleteBooks_ShouldDeleteByFilter() {
+        BookFilterDto filter = new BookFilterDto(null, null, null, null, 1899);
+        when(bookRepository.deleteByFilter(filter, null)).thenReturn(3);
+
+        assertEquals(new BookBulkResultDto(3, false), bookService.deleteBooks(filter, false));
+        verify(bookRepository, never()).countByFilter(any());
+    }
+
+    @Test
+    @DisplayName("Фасеты берутся из репозитория, недопустимое число значений отклоняется")
+    void findFacets_ShouldDelegateToRepositoryAndCheckLimit() {
+        BookFilterDto filter = new BookFilterDto(null, "Толстой", null, null, null);
+        BookFacetsDto facets = new BookFacetsDto(List.of(new FacetCountDto<>("Лев Толстой", 12L)),
+                List.of(new FacetCountDto<>(1869, 3L)), false);
+        ReflectionTestUtils.setField(bookService, "facetsTitleSampleSize", 10_000);
+        when(bookRepository.findFacets(filter, 10, 10_000)).thenReturn(facets);
+
+        assertEquals(facets, bookService.findFacets(filter, 10));
+        assertThrows(BadRequestException.class, () -> bookService.findFacets(filter, 0));
+        assertThrows(BadRequestException.class, () -> bookService.findFacets(filter, BookService.MAX_FACET_LIMIT + 1));
+    }
+
+    @Test
+    @DisplayName("Ошибка SQL фасетов не подменяется пустым ответом, неудачный пересчет витрины повторяется")
+    void findFacets_WhenQueryFails_ShouldPropagateErrorAndRetryRefresh() {
+        BookFilterDto filter = new BookFilterDto(null, null, null, null, null);
+        BadSqlGrammarException missingView = new BadSqlGrammarException("facets", "SELECT ... FROM books_facets",
+                new SQLException("relation \"books_facets\" does not exist", "42P01"));
+        when(bookRepository.findFacets(any(), anyInt(), anyInt())).thenThrow(missingView);
+        when(bookRepository.findCatalogVersion()).thenReturn("100-1");
+        doThrow(missingView).doNothing().when(bookRepository).refreshFacets();
+
+        assertThrows(BadSqlGrammarException.class, () -> bookService.findFacets(filter, 10));
+        assertThrows(BadSqlGrammarException.class, () -> bookService.refreshFacets());
+        bookService.refreshFacets();
+        bookService.refreshFacets();
+        verify(bookRepository, times(2)).refreshFacets();
+    }
+
+    @Test
+    @DisplayName("Витрина фасетов пересчитывается, только если каталог изменился")
+    void refreshFacets_WhenCatalogUnchanged_ShouldSkipRefresh() {
+        when(bookRepository.findCatalogVersion()).thenReturn("100-1", "100-1", "200-1");
+
+        bookService.refreshFacets();
+        bookService.refreshFacets();
+        bookService.refreshFacets();
+
+        verify(bookRepository, times(2)).refreshFacets();
+    }
+
+    @Test
+    @DisplayName("Лента изменений: курсор на последнем отданном изменении, без изменений возвращается переданный")
+    void findChanges_ShouldReturnCursorOfLastChange() {
+        BookChangeCursor since = new BookChangeCursor(700, 41);
+        BookChangeDto created = new BookChangeDto(BookChangeDto.Type.CREATED, 1L, "VC-1", new BookDto(), null);
+        BookChangeDto deleted = new BookChangeDto(BookChangeDto.Type.DELETED, 2L, "VC-2", null, null);
+        BookChangeDto updated = new BookChangeDto(BookChangeDto.Type.UPDATED, 3L, "VC-3", new BookDto(), null);
+        doAnswer(invocation -> {
+            BiConsumer<BookChangeCursor, BookChangeDto> action = invocation.getArgument(2);
+            action.accept(new BookChangeCursor(700, 42), created);
+            action.accept(new BookChangeCursor(701, 43), deleted);
+            action.accept(new BookChangeCursor(701, 44), updated);
+            return null;
+        }).when(bookRepository).forEachChange(eq(since), eq(3), any());
+        when(bookRepository.findChangesHorizon()).thenReturn(new BookChangeCursor(600, 10));
+
+        BookChangesDto changes = bookService.findChanges(since.encode(), 2);
+
+        assertEquals(List.of(created, deleted), changes.getChanges());
+        assertEquals(new BookChangeCursor(701, 43), BookChangeCursor.decode(changes.getCursor()));
+        assertTrue(changes.isHasMore());
+
+        BookChangesDto empty = bookService.findChanges(changes.getCursor(), 10);
+        assertTrue(empty.getChanges().isEmpty());
+        assertEquals(changes.getCursor(), empty.getCursor());
+        assertFalse(empty.isHasMore());
+        assertThrows(BadRequestException.class, () -> bookService.findChanges(null, BookService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    @DisplayName("Курсор старше удаленных по сроку записей об удалении — 410, без since лента читается с начала")
+    void findChanges_WhenCursorBeforeHorizon_ShouldThrowGoneException() {
+        when(bookRepository.findChangesHorizon()).thenReturn(new BookChangeCursor(700, 42));
+
+        assertThrows(GoneException.class, () -> bookService.findChanges(new BookChangeCursor(700, 41).encode(), 10));
+        assertTrue(bookService.findChanges(new BookChangeCursor(700, 42).encode(), 10).getChanges().isEmpty());
+        assertEquals(BookChangeCursor.START.encode(), bookService.findChanges(null, 10).getCursor());
+        verify(bookRepository).forEachChange(eq(BookChangeCursor.START), eq(11), any());
+    }
+
     @Test
     @DisplayName("Проверка, если VendorCode уже существует (не уникальный)")
     void findByVendorCode_ShouldReturnOptionalOfBook() {
@@ -0,0 +1,150 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.service;
+
+import by.aleksabrakor.tzForBookvoed.config.CacheConfig;
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.entity.BookRow;
+import by.aleksabrakor.tzForBookvoed.exception.BadRequestException;
+import by.aleksabrakor.tzForBookvoed.exception.NotCreatedException;
+import by.aleksabrakor.tzForBookvoed.exception.NotFoundException;
+import by.aleksabrakor.tzForBookvoed.mapper.BookMapper;
+import by.aleksabrakor.tzForBookvoed.repositiry.ReactiveBookRepository;
+import by.aleksabrakor.tzForBookvoed.service.BookColumnStore;
+import by.aleksabrakor.tzForBookvoed.service.BookSuggestIndex;
+import by.aleksabrakor.tzForBookvoed.service.ReactiveBookService;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveBookServiceTest {
+
+    @Mock
+    private ReactiveBookRepository reactiveBookRepository;
+
+    @Mock
+    private BookMapper bookMapper;
+
+    @Mock
+    private BookSuggestIndex bookSuggestIndex;
+
+    @Mock
+    private BookColumnStore bookColumnStore;
+
+    private ValidatorFactory validatorFactory;
+    private CacheManager cacheManager;
+    private ReactiveBookService reactiveBookService;
+
+    @BeforeEach
+    void setUp() {
+        // Настоящий валидатор: правила те же, что у BookDto в api/books
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        cacheManager = new ConcurrentMapCacheManager(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE);
+        reactiveBookService = new ReactiveBookService(reactiveBookRepository, bookMapper, validatorFactory.getValidator(),
+                cacheManager, bookSuggestIndex, bookColumnStore);
+        ReflectionTestUtils.setField(reactiveBookService, "streamFetchSize", 500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    @DisplayName("Выгрузка v2 читает строки по мере спроса подписчика")
+    void findBooks_ShouldRespectSubscriberDemand() {
+        Flux<BookRow> rows = Flux.fromStream(LongStream.rangeClosed(1, 1000).mapToObj(ReactiveBookServiceTest::row));
+        when(reactiveBookRepository.findByFilters(null, "Толстой", null, 0L, null, 500)).thenReturn(rows);
+        when(bookMapper.rowToDto(any(BookRow.class)))
+                .thenAnswer(invocation -> BookDto.builder().id(((BookRow) invocation.getArgument(0)).getId()).build());
+
+        StepVerifier.create(reactiveBookService.findBooks(null, "Толстой", null, null, null), 2)
+                .expectNextMatches(book -> book.getId() == 1L)
+                .expectNextMatches(book -> book.getId() == 2L)
+                .thenCancel()
+                .verify();
+
+        verify(bookMapper, times(2)).rowToDto(any(BookRow.class));
+    }
+
+    @Test
+    @DisplayName("Неположительный limit в выгрузке v2 отклоняется")
+    void findBooks_WithNonPositiveLimit_ShouldThrowBadRequest() {
+        assertThrows(BadRequestException.class, () -> reactiveBookService.findBooks(null, null, null, null, 0L));
+        verifyNoInteractions(reactiveBookRepository);
+    }
+
+    @Test
+    @DisplayName("Книга v2 не найдена — NotFoundException")
+    void findBookById_WhenMissing_ShouldEmitNotFound() {
+        when(reactiveBookRepository.findById(42L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactiveBookService.findBookById(42L))
+                .expectError(NotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Книга v2 с нарушением правил BookDto не сохраняется")
+    void saveBook_WithInvalidDto_ShouldEmitBadRequest() {
+        BookDto invalid = BookDto.builder().vendorCode("").title("Книга").brand("Автор").build();
+
+        StepVerifier.create(reactiveBookService.saveBook(invalid))
+                .expectErrorSatisfies(e -> {
+                    assertInstanceOf(BadRequestException.class, e);
+                    assertTrue(e.getMessage().contains("vendorCode: Поле vendorCode не должно быть пустым"));
+                    assertTrue(e.getMessage().contains("year:"));
+                })
+                .verify();
+        verifyNoInteractions(reactiveBookRepository);
+    }
+
+    @Test
+    @DisplayName("Книга v2 с занятым vendorCode — NotCreatedException")
+    void saveBook_WhenVendorCodeTaken_ShouldEmitNotCreated() {
+        BookDto bookDto = BookDto.builder().vendorCode("V2-1").title("Книга").brand("Автор").year(2000).build();
+        when(reactiveBookRepository.insertIfAbsent("V2-1", "Книга", "Автор", 2000, null, null)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactiveBookService.saveBook(bookDto))
+                .expectError(NotCreatedException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Добавленная через v2 книга очищает кэш отрисованных страниц списка")
+    void saveBook_WhenInserted_ShouldClearListFragmentsCache() {
+        cacheManager.getCache(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE).put("page-0", "<table></table>");
+        BookDto bookDto = BookDto.builder().vendorCode("V2-2").title("Книга").brand("Автор").year(2000).build();
+        BookRow inserted = row(7L);
+        when(reactiveBookRepository.insertIfAbsent("V2-2", "Книга", "Автор", 2000, null, null)).thenReturn(Mono.just(inserted));
+        when(bookMapper.rowToDto(inserted)).thenReturn(BookDto.builder().id(7L).build());
+
+        StepVerifier.create(reactiveBookService.saveBook(bookDto))
+                .expectNextMatches(book -> book.getId() == 7L)
+                .verifyComplete();
+        assertNull(cacheManager.getCache(CacheConfig.BOOK_LIST_FRAGMENTS_CACHE).get("page-0"));
+    }
+
+    private static BookRow row(long id) {
+        BookRow row = new BookRow();
+        row.setId(id);
+        return row;
+    }
+}
@@ -0,0 +1,93 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.util;
+
+import by.aleksabrakor.tzForBookvoed.dto.BookDto;
+import by.aleksabrakor.tzForBookvoed.util.BookColumns;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookColumnsTest {
+
+    @Test
+    @DisplayName("Порядок по рангу названия и id; ранги раздаются заново через RANK_STEP")
+    void build_ShouldSortByRankAndIdAndRespaceRanks() {
+        BookColumns columns = BookColumns.builder()
+                .add(book(1, "ёлка", "A", 2000), 30)
+                .add(book(2, "яблоко", "A", 2000), 41)
+                .add(book(3, "Яблоко", "A", 2000), 40)
+                .add(book(4, "Zebra", "A", 2000), 20)
+                .add(book(5, "apple", "A", 2000), 10)
+                .add(book(0, "Яблоко", "A", 2000), 40)
+                .build();
+
+        long[] order = IntStream.range(0, columns.size()).mapToLong(columns::id).toArray();
+        assertArrayEquals(new long[]{5, 4, 1, 0, 3, 2}, order);
+        long[] ranks = IntStream.range(0, columns.size()).mapToLong(columns::rank).toArray();
+        long step = BookColumns.RANK_STEP;
+        assertArrayEquals(new long[]{step, 2 * step, 3 * step, 4 * step, 4 * step, 5 * step}, ranks);
+        assertEquals(3, columns.position(0));
+        assertEquals(-1, columns.position(42));
+        assertEquals(4, columns.positionAfter(4 * step, 0));
+        assertTrue(columns.hasTitle(3, "Яблоко"));
+        assertFalse(columns.hasTitle(3, "яблоко"));
+        assertEquals("ёлка", columns.title(2));
+    }
+
+    @Test
+    @DisplayName("Фильтр и подсчет на большом снимке дают тот же результат, что и перебор по строкам")
+    void collect_ShouldMatchSequentialScanAcrossChunks() {
+        BookColumns.Builder builder = BookColumns.builder();
+        for (int i = 0; i < 100_000; i++) {
+            builder.add(book(i, "Книга " + i, "Автор " + (i % 7), 1900 + i % 100), i);
+        }
+        BookColumns columns = builder.build();
+        BitSet excluded = new BitSet();
+        excluded.set(0, 10);
+
+        // Подстрока названия ищется по всему тексту, автор и год — по колонкам кусками
+        for (BookColumns.Filter filter : List.of(columns.filter("КНИГА 1", "автор 3", null),
+                columns.filter("99", null, null), columns.filter(null, "АВТОР 5", 1950))) {
+            long expected = IntStream.range(0, columns.size())
+                    .filter(position -> !excluded.get(position) && filter.matches(columns.row(position)))
+                    .count();
+            int[] positions = columns.collect(0, filter, excluded, Integer.MAX_VALUE);
+
+            assertTrue(expected > 0);
+            assertEquals(expected, columns.count(filter, excluded));
+            assertEquals(expected, positions.length);
+            assertTrue(IntStream.range(1, positions.length).allMatch(i -> positions[i - 1] < positions[i]));
+            assertArrayEquals(IntStream.of(positions).limit(5).toArray(), columns.collect(0, filter, excluded, 5));
+            assertArrayEquals(IntStream.of(positions).filter(position -> position >= 50_000).toArray(),
+                    columns.collect(50_000, filter, excluded, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    @DisplayName("Символы шаблона ILIKE не поддерживаются, пустой фильтр не ограничивает, стык названий не совпадение")
+    void supports_ShouldRejectLikeWildcards() {
+        assertTrue(BookColumns.supports(null));
+        assertTrue(BookColumns.supports("Война"));
+        assertFalse(BookColumns.supports("100%"));
+        assertFalse(BookColumns.supports("a_b"));
+        assertFalse(BookColumns.supports("a\\b"));
+
+        BookColumns columns = BookColumns.builder()
+                .add(book(1, "Война", "Толстой", 1869), 1)
+                .add(book(2, "Мир", "Толстой", 1869), 2)
+                .build();
+        assertTrue(columns.filter("", "", null).isEmpty());
+        assertEquals(2, columns.count(columns.filter("", "", null), new BitSet()));
+        // Названия лежат подряд, но вхождение на их стыке («аМ») не считается
+        assertEquals(0, columns.count(columns.filter("ам", null, null), new BitSet()));
+    }
+
+    private static BookDto book(long id, String title, String brand, int year) {
+        return new BookDto(id, "VC-" + id, title, brand, year, 1, new BigDecimal("10.00"), null, 0L);
+    }
+}
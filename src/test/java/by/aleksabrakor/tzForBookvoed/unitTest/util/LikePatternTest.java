@@ -0,0 +1,33 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.util;
+
+import by.aleksabrakor.tzForBookvoed.util.LikePattern;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikePatternTest {
+
+    @Test
+    @DisplayName("Экранирование - %, _ и \\ ищутся как обычные символы")
+    void escape_ShouldEscapeWildcardsAndBackslash() {
+        assertEquals("100\\% \\_ C:\\\\", LikePattern.escape("100% _ C:\\"));
+    }
+
+    @Test
+    @DisplayName("Поиск подстроки - шаблон из одного % не совпадает со всем каталогом")
+    void contains_ShouldWrapEscapedText() {
+        assertEquals("%толстой%", LikePattern.contains("толстой"));
+        assertEquals("%\\%%", LikePattern.contains("%"));
+    }
+
+    @Test
+    @DisplayName("Фильтр из одних пробелов и символов шаблона распознается")
+    void isWildcardOnly_ShouldDetectPatternsWithoutText() {
+        assertTrue(LikePattern.isWildcardOnly("%"));
+        assertTrue(LikePattern.isWildcardOnly(" %_ "));
+        assertFalse(LikePattern.isWildcardOnly("100%"));
+        assertFalse(LikePattern.isWildcardOnly(""));
+        assertFalse(LikePattern.isWildcardOnly(null));
+    }
+}
@@ -0,0 +1,80 @@
+package by.aleksabrakor.tzForBookvoed.unitTest.util;
+
+import by.aleksabrakor.tzForBookvoed.util.PrefixIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixIndexTest {
+
+    @Test
+    @DisplayName("Префикс ищется без учета регистра и различия ё/е, написание в подсказке исходное")
+    void suggest_ShouldFoldCaseAndYo() {
+        PrefixIndex index = index(1000, 10, "Ёжик в тумане", "Елка", "еда", "Евгений Онегин", "Мастер и Маргарита");
+
+        assertEquals(List.of("Ёжик в тумане"), index.suggest("ЕЖ", 10));
+        assertEquals(List.of("Ёжик в тумане"), index.suggest("  ёж", 10));
+        assertEquals(List.of("Евгений Онегин", "еда", "Ёжик в тумане", "Елка"), index.suggest("е", 10));
+        assertEquals(List.of("Евгений Онегин", "еда"), index.suggest("Е", 2));
+        assertEquals(List.of(), index.suggest("Я", 10));
+    }
+
+    @Test
+    @DisplayName("Варианты одного значения сливаются, остается самое частое написание")
+    void build_ShouldMergeCaseVariants() {
+        PrefixIndex.Builder builder = PrefixIndex.builder();
+        builder.add("война и мир", 1);
+        builder.add("Война и мир", 3);
+        builder.add("Война и Мир ", 1);
+        PrefixIndex index = builder.build(1000, 10);
+
+        assertEquals(1, index.size());
+        assertEquals(List.of("Война и мир"), index.suggest("вой", 10));
+    }
+
+    @Test
+    @DisplayName("Добавления и удаления после построения видны в подсказках сразу")
+    void suggest_ShouldMergeDelta() {
+        PrefixIndex.Builder builder = PrefixIndex.builder();
+        builder.add("Анна Каренина", 2);
+        builder.add("Ася", 1);
+        PrefixIndex index = builder.build(1000, 10);
+
+        assertTrue(index.add("Архипелаг ГУЛАГ"));
+        assertTrue(index.remove("Ася"));
+        assertTrue(index.remove("Анна Каренина"));
+
+        // У «Анны Карениной» осталась одна книга из двух, «Ася» удалена
+        assertEquals(List.of("Анна Каренина", "Архипелаг ГУЛАГ"), index.suggest("а", 10));
+        assertEquals(List.of("Анна Каренина"), index.suggest("а", 1));
+    }
+
+    @Test
+    @DisplayName("Сверх лимита памяти остаются самые частые строки, переполненная дельта отклоняет изменения")
+    void build_WhenOverMemoryLimit_ShouldKeepMostFrequent() {
+        PrefixIndex.Builder builder = PrefixIndex.builder();
+        builder.add("Толстой", 100);
+        builder.add("Тургенев", 1);
+        builder.add("Тютчев", 50);
+        // Строка из n символов занимает 2n + 8 байт: в 50 байт помещаются две самые частые
+        PrefixIndex index = builder.build(50, 1);
+
+        assertEquals(List.of("Толстой", "Тютчев"), index.suggest("т", 10));
+        assertTrue(index.memoryBytes() <= 50 + 4);
+
+        assertTrue(index.add("Тэффи"));
+        assertFalse(index.add("Твардовский"));
+        assertTrue(index.add("Тэффи"));
+    }
+
+    private static PrefixIndex index(long maxBytes, int maxDeltaEntries, String... values) {
+        PrefixIndex.Builder builder = PrefixIndex.builder();
+        for (String value : values) {
+            builder.add(value, 1);
+        }
+        return builder.build(maxBytes, maxDeltaEntries);
+    }
+}